@@ -10,6 +10,8 @@ import software.amazon.cloudwatchlogs.emf.environment.Environment;
 import software.amazon.cloudwatchlogs.emf.environment.EnvironmentProvider;
 import software.amazon.cloudwatchlogs.emf.logger.MetricsLogger;
 import software.amazon.cloudwatchlogs.emf.model.DimensionSet;
+import software.amazon.cloudwatchlogs.emf.model.MetricHandle;
+import software.amazon.cloudwatchlogs.emf.model.Unit;
 import software.amazon.cloudwatchlogs.emf.sinks.SinkShunt;
 
 @State(Scope.Benchmark)
@@ -19,6 +21,8 @@ import software.amazon.cloudwatchlogs.emf.sinks.SinkShunt;
 @OutputTimeUnit(TimeUnit.MILLISECONDS)
 @Fork(value = 1)
 public class MetricsLoggerBenchmark {
+    private static final MetricHandle HANDLE = MetricHandle.of("Metric", Unit.MILLISECONDS);
+
     private MetricsLogger logger;
     private EnvironmentProvider envProvider;
     private SinkShunt sink;
@@ -50,6 +54,26 @@ public class MetricsLoggerBenchmark {
         }
     }
 
+    /** Publishing 10000 values of one metric by name with single thread. */
+    @Benchmark
+    public void measurePutSameMetric() {
+        logger = new MetricsLogger(envProvider);
+
+        for (int i = 0; i < 10000; i++) {
+            logger.putMetric("Metric", i, Unit.MILLISECONDS);
+        }
+    }
+
+    /** Publishing 10000 values of one metric through a pre-registered handle with single thread. */
+    @Benchmark
+    public void measurePutSameMetricWithHandle() {
+        logger = new MetricsLogger(envProvider);
+
+        for (int i = 0; i < 10000; i++) {
+            logger.putMetric(HANDLE, i);
+        }
+    }
+
     /** Flush with single thread. no lock: 0.148 ms/op; RW lock: 0.148 ms/op; S lock: 0.147 ms/op */
     @Benchmark
     public void measureFlush() {
@@ -136,6 +160,48 @@ public class MetricsLoggerBenchmark {
         measurePutMetricWithNThreads(500);
     }
 
+    /**
+     * Each thread publishes 1000 values of the same metric, 10 threads in total.
+     *
+     * @throws InterruptedException
+     */
+    @Benchmark
+    public void measurePutSameMetricWith10Threads() throws InterruptedException {
+        measurePutSameMetricWithNThreads(10);
+    }
+
+    /**
+     * Each thread publishes 1000 values of the same metric, 50 threads in total.
+     *
+     * @throws InterruptedException
+     */
+    @Benchmark
+    public void measurePutSameMetricWith50Threads() throws InterruptedException {
+        measurePutSameMetricWithNThreads(50);
+    }
+
+    /**
+     * Each thread publishes 1000 values of the same metric, 200 threads in total.
+     *
+     * @throws InterruptedException
+     */
+    @Benchmark
+    public void measurePutSameMetricWith200Threads() throws InterruptedException {
+        measurePutSameMetricWithNThreads(200);
+    }
+
+    /**
+     * Each thread publishes 1000 values of the same metric, 500 threads in total.
+     *
+     * @throws InterruptedException
+     */
+    @Benchmark
+    @Warmup(time = 10)
+    @Measurement(time = 10)
+    public void measurePutSameMetricWith500Threads() throws InterruptedException {
+        measurePutSameMetricWithNThreads(500);
+    }
+
     /**
      * Each thread flushes 100 times, 10 threads in total. no lock: 12.900 ms/op; RW lock: 25.015
      * ms/op; S lock: 24.778 ms/op
@@ -193,6 +259,41 @@ public class MetricsLoggerBenchmark {
         measureFlushWithNThreads(500);
     }
 
+    /**
+     * Each thread puts 100 values of the same metric between flushes and flushes 100 times, 10
+     * threads in total. Flushes wait for the writers of the swapped out context.
+     *
+     * @throws InterruptedException
+     */
+    @Benchmark
+    public void measurePutAndFlushWith10Threads() throws InterruptedException {
+        measurePutAndFlushWithNThreads(10);
+    }
+
+    /**
+     * Each thread puts 100 values of the same metric between flushes and flushes 100 times, 50
+     * threads in total.
+     *
+     * @throws InterruptedException
+     */
+    @Benchmark
+    public void measurePutAndFlushWith50Threads() throws InterruptedException {
+        measurePutAndFlushWithNThreads(50);
+    }
+
+    /**
+     * Each thread puts 100 values of the same metric between flushes and flushes 100 times, 200
+     * threads in total.
+     *
+     * @throws InterruptedException
+     */
+    @Benchmark
+    @Warmup(time = 10)
+    @Measurement(time = 10)
+    public void measurePutAndFlushWith200Threads() throws InterruptedException {
+        measurePutAndFlushWithNThreads(200);
+    }
+
     /**
      * Each thread executes all methods 100 times, 10 threads in total. no lock (need to sync
      * getAllDimensions() & getAllDimensionKeys() in MetricsDirective): 7.215 ms/op; RW lock:
@@ -293,6 +394,27 @@ public class MetricsLoggerBenchmark {
         }
     }
 
+    private void measurePutSameMetricWithNThreads(int n) throws InterruptedException {
+        logger = new MetricsLogger(envProvider);
+        Thread[] threads = new Thread[n];
+        int batchSize = 1000;
+
+        for (int i = 0; i < n; i++) {
+            threads[i] =
+                    new Thread(
+                            () -> {
+                                for (int j = 0; j < batchSize; j++) {
+                                    logger.putMetric("Latency", j);
+                                }
+                            });
+            threads[i].start();
+        }
+
+        for (Thread t : threads) {
+            t.join();
+        }
+    }
+
     private void measureFlushWithNThreads(int n) throws InterruptedException {
         logger = new MetricsLogger(envProvider);
         Thread[] threads = new Thread[n];
@@ -317,6 +439,32 @@ public class MetricsLoggerBenchmark {
         sink.shutdown();
     }
 
+    private void measurePutAndFlushWithNThreads(int n) throws InterruptedException {
+        logger = new MetricsLogger(envProvider);
+        Thread[] threads = new Thread[n];
+        int batchSize = 100;
+
+        for (int i = 0; i < n; i++) {
+            threads[i] =
+                    new Thread(
+                            () -> {
+                                for (int j = 0; j < batchSize; j++) {
+                                    for (int k = 0; k < batchSize; k++) {
+                                        logger.putMetric(HANDLE, k);
+                                    }
+                                    logger.flush();
+                                }
+                            });
+            threads[i].start();
+        }
+
+        for (Thread t : threads) {
+            t.join();
+        }
+
+        sink.shutdown();
+    }
+
     private void measureAllMethodsWithNThreads(int n) throws InterruptedException {
         logger = new MetricsLogger(envProvider);
         Thread[] threads = new Thread[n];
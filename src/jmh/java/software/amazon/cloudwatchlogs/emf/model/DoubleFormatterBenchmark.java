@@ -0,0 +1,116 @@
+/*
+ *   Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package software.amazon.cloudwatchlogs.emf.model;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures the nanoseconds per value of {@link DoubleFormatter} against {@link
+ * Double#toString(double)}, and the nanoseconds and bytes per event of each serializer. The bytes
+ * per event are printed once per trial, as they do not depend on timing.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 3, time = 5)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(value = 1)
+public class DoubleFormatterBenchmark {
+    private static final int VALUES = 1024;
+
+    @State(Scope.Benchmark)
+    public static class Values {
+        @Param({"Counts", "Timings"})
+        private String kind;
+
+        private final char[] chars = new char[DoubleFormatter.MAX_LENGTH];
+        private double[] values;
+
+        @Setup
+        public void setUp() {
+            values = createValues(kind, VALUES);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Event {
+        @Param({"Jackson", "EMF"})
+        private String serializer;
+
+        @Param({"Counts", "Timings"})
+        private String kind;
+
+        private MetricsContext context;
+
+        @Setup
+        public void setUp() throws JsonProcessingException {
+            context = new MetricsContext();
+            context.setEventSerializer(EventSerializer.forName(serializer));
+            context.putDimension(DimensionSet.of("Operation", "GetItem"));
+            double[] values = createValues(kind, 100);
+            for (int i = 0; i < values.length; i++) {
+                context.putMetric("Metric-" + i % 10, values[i], Unit.MILLISECONDS);
+            }
+
+            int bytes = 0;
+            List<ByteBuffer> events = context.serializeToUtf8();
+            for (ByteBuffer event : events) {
+                bytes += event.remaining();
+            }
+            System.out.println("Bytes per event: " + bytes / events.size());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public int measureFormat(Values values) {
+        int length = 0;
+        for (double value : values.values) {
+            length += DoubleFormatter.format(value, values.chars, 0);
+        }
+        return length;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public int measureDoubleToString(Values values) {
+        int length = 0;
+        for (double value : values.values) {
+            length += Double.toString(value).length();
+        }
+        return length;
+    }
+
+    @Benchmark
+    public List<ByteBuffer> measureSerializeEvent(Event event) throws JsonProcessingException {
+        return event.context.serializeToUtf8();
+    }
+
+    private static double[] createValues(String kind, int count) {
+        Random random = new Random(42);
+        double[] values = new double[count];
+        for (int i = 0; i < count; i++) {
+            values[i] =
+                    "Counts".equals(kind) ? random.nextInt(1000) : random.nextDouble() * 1000;
+        }
+        return values;
+    }
+}
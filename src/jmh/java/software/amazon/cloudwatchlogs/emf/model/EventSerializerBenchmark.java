@@ -0,0 +1,76 @@
+/*
+ *   Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package software.amazon.cloudwatchlogs.emf.model;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Compares the throughput of the Jackson and the dependency-free EMF serializers. Run with {@code
+ * -prof gc} to compare allocations. First-call latency is measured by {@link
+ * EventSerializerColdStartBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 3, time = 5)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1)
+public class EventSerializerBenchmark {
+
+    @Param({"Jackson", "EMF"})
+    private String serializer;
+
+    @Param({"1", "10", "100"})
+    private int metrics;
+
+    private MetricsContext context;
+
+    @Setup
+    public void setUp() {
+        context = createContext(metrics);
+        context.setEventSerializer(EventSerializer.forName(serializer));
+    }
+
+    @Benchmark
+    public List<String> measureSerialize() throws JsonProcessingException {
+        return context.serialize();
+    }
+
+    @Benchmark
+    public List<ByteBuffer> measureSerializeToUtf8() throws JsonProcessingException {
+        return context.serializeToUtf8();
+    }
+
+    static MetricsContext createContext(int metrics) {
+        MetricsContext context = new MetricsContext();
+        context.setDefaultDimensions(DimensionSet.of("Service", "Api"));
+        context.putDimension(DimensionSet.of("Operation", "GetItem", "Region", "us-east-1"));
+        context.putProperty("RequestId", "0f1e2d3c-4b5a-6978-8796-a5b4c3d2e1f0");
+        context.putProperty("StatusCode", 200);
+        for (int i = 0; i < metrics; i++) {
+            for (int j = 0; j < 5; j++) {
+                context.putMetric("Metric-" + i, i * 10 + j, Unit.MILLISECONDS);
+            }
+        }
+        return context;
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ *   Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package software.amazon.cloudwatchlogs.emf.model;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures the latency of the first serialization in a fresh JVM, which includes loading and
+ * initializing the serializer classes, as on a Lambda cold start. Each fork serializes once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 20)
+public class EventSerializerColdStartBenchmark {
+
+    @Param({"Jackson", "EMF"})
+    private String serializer;
+
+    private MetricsContext context;
+
+    @Setup
+    public void setUp() {
+        context = EventSerializerBenchmark.createContext(10);
+        context.setEventSerializer(EventSerializer.forName(serializer));
+    }
+
+    @Benchmark
+    public List<String> measureFirstSerialize() throws JsonProcessingException {
+        return context.serialize();
+    }
+}
@@ -0,0 +1,70 @@
+package software.amazon.cloudwatchlogs.emf.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares recording datapoints into the primitive storage of {@link MetricDefinition} against the
+ * boxed {@code ArrayList<Double>} it replaced. Run with {@code -prof gc} to see the allocation
+ * difference.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 3, time = 5)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1)
+public class MetricDefinitionBenchmark {
+
+    @Param({"1", "10", "100", "1000"})
+    private int datapoints;
+
+    @Benchmark
+    public void measureAddValuePrimitive(Blackhole bh) {
+        MetricDefinition metric =
+                new MetricDefinition("Latency", Unit.MILLISECONDS, StorageResolution.STANDARD, 0);
+        for (int i = 1; i < datapoints; i++) {
+            metric.addValue(i);
+        }
+        bh.consume(metric);
+    }
+
+    @Benchmark
+    public void measureAddValueBoxedList(Blackhole bh) {
+        List<Double> values = new ArrayList<>();
+        values.add(0d);
+        for (int i = 1; i < datapoints; i++) {
+            values.add((double) i);
+        }
+        bh.consume(values);
+    }
+
+    @Benchmark
+    public double measureReadPrimitive() {
+        MetricDefinition metric = new MetricDefinition("Latency");
+        for (int i = 0; i < datapoints; i++) {
+            metric.addValue(i);
+        }
+        double sum = 0;
+        for (int i = 0; i < metric.getValueCount(); i++) {
+            sum += metric.getValue(i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double measureReadBoxedList() {
+        List<Double> values = new ArrayList<>();
+        for (int i = 0; i < datapoints; i++) {
+            values.add((double) i);
+        }
+        double sum = 0;
+        for (Double value : values) {
+            sum += value;
+        }
+        return sum;
+    }
+}
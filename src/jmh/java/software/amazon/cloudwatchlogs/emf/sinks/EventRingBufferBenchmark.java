@@ -0,0 +1,147 @@
+/*
+ *   Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package software.amazon.cloudwatchlogs.emf.sinks;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the nanoseconds a producer spends handing an event to the sender thread, for the {@link
+ * EventRingBuffer} of {@link AgentSink} against the single-threaded executor with a bounded queue
+ * that it replaced, under 1, 8 and 64 producer threads. Both are drained by a consumer thread that
+ * discards the events.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 3, time = 5)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(value = 1)
+public class EventRingBufferBenchmark {
+    private static final ByteBuffer EVENT =
+            ByteBuffer.wrap("{\"_aws\":{}}\n".getBytes(StandardCharsets.UTF_8));
+
+    @State(Scope.Benchmark)
+    public static class Ring {
+        @Param({"100", "10000"})
+        private int depth;
+
+        @Param({"BLOCKING", "YIELDING"})
+        private String waitStrategy;
+
+        private EventRingBuffer ring;
+        private Thread consumer;
+        private volatile boolean stopped;
+
+        @Setup
+        public void setUp() {
+            ring = new EventRingBuffer(depth, WaitStrategy.valueOf(waitStrategy));
+            consumer =
+                    new Thread(
+                            () -> {
+                                try {
+                                    while (!stopped) {
+                                        ByteBuffer event = ring.poll(100, TimeUnit.MILLISECONDS);
+                                        if (event != null) {
+                                            Blackhole.consumeCPU(event.remaining());
+                                        }
+                                    }
+                                } catch (InterruptedException e) {
+                                    Thread.currentThread().interrupt();
+                                }
+                            });
+            consumer.start();
+        }
+
+        @TearDown
+        public void tearDown() throws InterruptedException {
+            stopped = true;
+            consumer.join();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Executor {
+        @Param({"100", "10000"})
+        private int depth;
+
+        private ThreadPoolExecutor executor;
+
+        @Setup
+        public void setUp() {
+            executor =
+                    new ThreadPoolExecutor(
+                            1,
+                            1,
+                            0L,
+                            TimeUnit.MILLISECONDS,
+                            new LinkedBlockingQueue<>(depth),
+                            new ThreadPoolExecutor.DiscardOldestPolicy());
+        }
+
+        @TearDown
+        public void tearDown() throws InterruptedException {
+            executor.shutdownNow();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void ringOneProducer(Ring state) {
+        state.ring.offer(EVENT);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void ringEightProducers(Ring state) {
+        state.ring.offer(EVENT);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public void ringSixtyFourProducers(Ring state) {
+        state.ring.offer(EVENT);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void executorOneProducer(Executor state) {
+        submit(state.executor);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void executorEightProducers(Executor state) {
+        submit(state.executor);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public void executorSixtyFourProducers(Executor state) {
+        submit(state.executor);
+    }
+
+    private static void submit(ThreadPoolExecutor executor) {
+        ByteBuffer event = EVENT;
+        executor.execute(() -> Blackhole.consumeCPU(event.remaining()));
+    }
+}
@@ -36,12 +36,64 @@ public class Constants {
 
     public static final int MAX_DATAPOINTS_PER_METRIC = 100;
 
+    /**
+     * The default max size in bytes of a serialized log event. CloudWatch Logs accepts events of up
+     * to 256 KB, including 26 bytes of overhead per event.
+     */
+    public static final int DEFAULT_MAX_EVENT_SIZE = 256 * 1024 - 26;
+
+    /**
+     * The default estimated size in bytes from which split events are written in parallel, when
+     * parallel serialization is enabled. It is about four full events, below which the scheduling
+     * overhead outweighs the gain.
+     */
+    public static final int DEFAULT_PARALLEL_SERIALIZATION_THRESHOLD = 4 * DEFAULT_MAX_EVENT_SIZE;
+
+    /** Default maximum relative error of the values reported for histogram buckets. */
+    public static final double DEFAULT_HISTOGRAM_RELATIVE_ERROR = 0.01;
+
+    /**
+     * The max number of buckets a histogram metric keeps. When a histogram would exceed it, its
+     * precision is reduced until the buckets fit, and once no precision is left its lowest buckets
+     * are merged, so memory and output size stay bounded. This is more than {@link
+     * #MAX_DATAPOINTS_PER_METRIC}, so a histogram with the max number of buckets is written across
+     * up to 5 events.
+     */
+    public static final int MAX_HISTOGRAM_BUCKETS = 500;
+
+    /**
+     * The default number of dimension names, dimension values and metric names remembered as
+     * already validated, so repeated validations of the same strings are a single lookup.
+     */
+    public static final int DEFAULT_VALIDATION_CACHE_SIZE = 1024;
+
     /**
      * The max number of messages to hold in memory in case of transient socket errors. The maximum
      * message size is 256 KB meaning the maximum size of this buffer would be 25.6 MB
      */
     public static final int DEFAULT_ASYNC_BUFFER_SIZE = 100;
 
+    /**
+     * The default time in millis the agent sink waits for more events before writing a batch that
+     * is not full, when batching is enabled.
+     */
+    public static final int DEFAULT_AGENT_BATCH_LINGER_MILLIS = 5;
+
+    /** The default max time in millis the agent sink blocks for room in a full queue. */
+    public static final int DEFAULT_AGENT_OVERFLOW_TIMEOUT_MILLIS = 1000;
+
+    /** By default the agent sink keeps one in this many new events while its queue is full. */
+    public static final int DEFAULT_AGENT_OVERFLOW_SAMPLE_RATE = 10;
+
+    /** The default max total size in bytes of the segment files of the agent spill queue. */
+    public static final int DEFAULT_AGENT_SPILL_MAX_BYTES = 64 * 1024 * 1024;
+
+    /**
+     * The default size in bytes of a segment file of the agent spill queue. Segments are made
+     * larger when a batch or an event may not fit into one.
+     */
+    public static final int DEFAULT_AGENT_SPILL_SEGMENT_BYTES = 1024 * 1024;
+
     /**
      * How many times to retry an individual message. We eventually give up vs. retrying
      * indefinitely in case there is something inherent to the message that is causing the failures.
@@ -17,12 +17,17 @@
 package software.amazon.cloudwatchlogs.emf.config;
 
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import software.amazon.cloudwatchlogs.emf.Constants;
 import software.amazon.cloudwatchlogs.emf.environment.Environments;
+import software.amazon.cloudwatchlogs.emf.model.EventSerializer;
+import software.amazon.cloudwatchlogs.emf.model.SplitStrategy;
+import software.amazon.cloudwatchlogs.emf.sinks.OverflowPolicy;
+import software.amazon.cloudwatchlogs.emf.sinks.WaitStrategy;
 import software.amazon.cloudwatchlogs.emf.util.StringUtils;
 
 /** Configuration for EMF logger. */
@@ -61,6 +66,86 @@ public class Configuration {
 
     @Setter private boolean shouldWriteToStdout;
 
+    /**
+     * The max size in bytes of a batch of events written to a TCP agent in a single call. 0, the
+     * default, writes each event on its own.
+     */
+    @Setter @Getter int agentBatchMaxBytes;
+
+    /** How long in millis to wait for more events before writing a batch that is not full. */
+    @Setter @Getter int agentBatchLingerMillis = Constants.DEFAULT_AGENT_BATCH_LINGER_MILLIS;
+
+    /**
+     * How the agent sender thread waits for events. Valid values are BUSY_SPIN, YIELDING, SLEEPING
+     * and BLOCKING, the default, see {@link WaitStrategy}.
+     */
+    @Setter WaitStrategy agentWaitStrategy;
+
+    /**
+     * What the agent sink does with new events while its queue is full. Valid values are
+     * DROP_OLDEST, the default, DROP_NEWEST, BLOCK and SAMPLE, see {@link OverflowPolicy}.
+     */
+    @Setter OverflowPolicy.Action agentOverflowAction;
+
+    /** The max time in millis to block for room in a full queue with the BLOCK policy. */
+    @Setter @Getter
+    int agentOverflowTimeoutMillis = Constants.DEFAULT_AGENT_OVERFLOW_TIMEOUT_MILLIS;
+
+    /** Keep one in this many new events while the queue is full with the SAMPLE policy. */
+    @Setter @Getter int agentOverflowSampleRate = Constants.DEFAULT_AGENT_OVERFLOW_SAMPLE_RATE;
+
+    /**
+     * The directory to spill events to while the agent can not be reached, replaying them once it
+     * can. Spilling is disabled if no directory is set.
+     */
+    @Setter private String agentSpillDirectory;
+
+    /** The max total size in bytes of the events spilled to disk. */
+    @Setter @Getter int agentSpillMaxBytes = Constants.DEFAULT_AGENT_SPILL_MAX_BYTES;
+
+    /**
+     * Whether TCP agent endpoints are written to through a non-blocking socket channel with
+     * gathering writes, see NioTCPClient, instead of a blocking socket.
+     */
+    @Setter private boolean agentNioClient;
+
+    /** The size in bytes of the socket send buffer of the NIO client, or 0 for the default. */
+    @Setter @Getter int agentSendBufferSize;
+
+    /**
+     * The max size in bytes of a serialized log event. Contexts that would serialize to larger
+     * events are split into multiple events.
+     */
+    @Setter @Getter int maxEventSize = Constants.DEFAULT_MAX_EVENT_SIZE;
+
+    /**
+     * How log events are written. Valid names are Jackson and EMF, the dependency-free writer.
+     * Other implementations of {@link EventSerializer} can be set directly.
+     */
+    @Setter EventSerializer eventSerializer;
+
+    /**
+     * Which properties are written to each event when a context is split into multiple events.
+     * Valid values are REPEAT_PROPERTIES and PROPERTIES_IN_FIRST_EVENT, see {@link SplitStrategy}.
+     */
+    @Setter SplitStrategy splitStrategy;
+
+    /**
+     * Whether the events of large contexts are written in parallel on the common fork/join pool.
+     * Other pools can be set with MetricsContext.setSerializationPool.
+     */
+    @Setter private boolean parallelSerialization;
+
+    /** The estimated size in bytes from which split events are written in parallel. */
+    @Setter @Getter
+    int parallelSerializationThreshold = Constants.DEFAULT_PARALLEL_SERIALIZATION_THRESHOLD;
+
+    /**
+     * The number of validated dimension names, dimension values and metric names to remember, or
+     * 0 to validate every time. Read once, when the validation cache is first used.
+     */
+    @Setter @Getter int validationCacheSize = Constants.DEFAULT_VALIDATION_CACHE_SIZE;
+
     public Optional<String> getServiceName() {
         return getStringOptional(serviceName);
     }
@@ -81,6 +166,51 @@ public class Configuration {
         return getStringOptional(agentEndpoint);
     }
 
+    public Optional<String> getAgentSpillDirectory() {
+        return getStringOptional(agentSpillDirectory);
+    }
+
+    public EventSerializer getEventSerializer() {
+        if (eventSerializer == null) {
+            return EventSerializer.JACKSON;
+        }
+        return eventSerializer;
+    }
+
+    public SplitStrategy getSplitStrategy() {
+        if (splitStrategy == null) {
+            return SplitStrategy.REPEAT_PROPERTIES;
+        }
+        return splitStrategy;
+    }
+
+    public WaitStrategy getAgentWaitStrategy() {
+        if (agentWaitStrategy == null) {
+            return WaitStrategy.BLOCKING;
+        }
+        return agentWaitStrategy;
+    }
+
+    public OverflowPolicy getAgentOverflowPolicy() {
+        if (agentOverflowAction == null) {
+            return OverflowPolicy.dropOldest();
+        }
+        switch (agentOverflowAction) {
+            case DROP_NEWEST:
+                return OverflowPolicy.dropNewest();
+            case BLOCK:
+                return OverflowPolicy.block(
+                        Math.max(0, agentOverflowTimeoutMillis), TimeUnit.MILLISECONDS);
+            case SAMPLE:
+                return OverflowPolicy.sample(
+                        agentOverflowSampleRate > 0
+                                ? agentOverflowSampleRate
+                                : Constants.DEFAULT_AGENT_OVERFLOW_SAMPLE_RATE);
+            default:
+                return OverflowPolicy.dropOldest();
+        }
+    }
+
     public Environments getEnvironmentOverride() {
         if (environmentOverride == null) {
             return Environments.Unknown;
@@ -98,4 +228,12 @@ public class Configuration {
     public boolean shouldWriteToStdout() {
         return shouldWriteToStdout;
     }
+
+    public boolean shouldUseAgentNioClient() {
+        return agentNioClient;
+    }
+
+    public boolean shouldSerializeInParallel() {
+        return parallelSerialization;
+    }
 }
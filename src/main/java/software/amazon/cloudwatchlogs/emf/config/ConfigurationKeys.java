@@ -29,4 +29,21 @@ public class ConfigurationKeys {
     public static final String ENVIRONMENT_OVERRIDE = "ENVIRONMENT";
     public static final String ASYNC_BUFFER_SIZE = "ASYNC_BUFFER_SIZE";
     public static final String WRITE_TO_STDOUT = "WRITE_TO_STDOUT";
+    public static final String AGENT_BATCH_MAX_BYTES = "AGENT_BATCH_MAX_BYTES";
+    public static final String AGENT_BATCH_LINGER_MILLIS = "AGENT_BATCH_LINGER_MILLIS";
+    public static final String AGENT_WAIT_STRATEGY = "AGENT_WAIT_STRATEGY";
+    public static final String AGENT_OVERFLOW_POLICY = "AGENT_OVERFLOW_POLICY";
+    public static final String AGENT_OVERFLOW_TIMEOUT_MILLIS = "AGENT_OVERFLOW_TIMEOUT_MILLIS";
+    public static final String AGENT_OVERFLOW_SAMPLE_RATE = "AGENT_OVERFLOW_SAMPLE_RATE";
+    public static final String AGENT_SPILL_DIRECTORY = "AGENT_SPILL_DIRECTORY";
+    public static final String AGENT_SPILL_MAX_BYTES = "AGENT_SPILL_MAX_BYTES";
+    public static final String AGENT_NIO_CLIENT = "AGENT_NIO_CLIENT";
+    public static final String AGENT_SEND_BUFFER_SIZE = "AGENT_SEND_BUFFER_SIZE";
+    public static final String MAX_EVENT_SIZE = "MAX_EVENT_SIZE";
+    public static final String SERIALIZER = "SERIALIZER";
+    public static final String SPLIT_STRATEGY = "SPLIT_STRATEGY";
+    public static final String PARALLEL_SERIALIZATION = "PARALLEL_SERIALIZATION";
+    public static final String PARALLEL_SERIALIZATION_THRESHOLD =
+            "PARALLEL_SERIALIZATION_THRESHOLD";
+    public static final String VALIDATION_CACHE_SIZE = "VALIDATION_CACHE_SIZE";
 }
@@ -18,6 +18,10 @@ package software.amazon.cloudwatchlogs.emf.config;
 
 import software.amazon.cloudwatchlogs.emf.Constants;
 import software.amazon.cloudwatchlogs.emf.environment.Environments;
+import software.amazon.cloudwatchlogs.emf.model.EventSerializer;
+import software.amazon.cloudwatchlogs.emf.model.SplitStrategy;
+import software.amazon.cloudwatchlogs.emf.sinks.OverflowPolicy;
+import software.amazon.cloudwatchlogs.emf.sinks.WaitStrategy;
 import software.amazon.cloudwatchlogs.emf.util.StringUtils;
 
 /** Loads configuration from environment variables. */
@@ -43,7 +47,75 @@ public class EnvironmentConfigurationProvider {
                 getEnvironmentOverride(),
                 getIntOrDefault(
                         ConfigurationKeys.ASYNC_BUFFER_SIZE, Constants.DEFAULT_ASYNC_BUFFER_SIZE),
-                Boolean.parseBoolean(getEnvVar(ConfigurationKeys.WRITE_TO_STDOUT)));
+                Boolean.parseBoolean(getEnvVar(ConfigurationKeys.WRITE_TO_STDOUT)),
+                getIntOrDefault(ConfigurationKeys.AGENT_BATCH_MAX_BYTES, 0),
+                getIntOrDefault(
+                        ConfigurationKeys.AGENT_BATCH_LINGER_MILLIS,
+                        Constants.DEFAULT_AGENT_BATCH_LINGER_MILLIS),
+                getAgentWaitStrategy(),
+                getAgentOverflowAction(),
+                getIntOrDefault(
+                        ConfigurationKeys.AGENT_OVERFLOW_TIMEOUT_MILLIS,
+                        Constants.DEFAULT_AGENT_OVERFLOW_TIMEOUT_MILLIS),
+                getIntOrDefault(
+                        ConfigurationKeys.AGENT_OVERFLOW_SAMPLE_RATE,
+                        Constants.DEFAULT_AGENT_OVERFLOW_SAMPLE_RATE),
+                getEnvVar(ConfigurationKeys.AGENT_SPILL_DIRECTORY),
+                getIntOrDefault(
+                        ConfigurationKeys.AGENT_SPILL_MAX_BYTES,
+                        Constants.DEFAULT_AGENT_SPILL_MAX_BYTES),
+                Boolean.parseBoolean(getEnvVar(ConfigurationKeys.AGENT_NIO_CLIENT)),
+                getIntOrDefault(ConfigurationKeys.AGENT_SEND_BUFFER_SIZE, 0),
+                getIntOrDefault(
+                        ConfigurationKeys.MAX_EVENT_SIZE, Constants.DEFAULT_MAX_EVENT_SIZE),
+                EventSerializer.forName(getEnvVar(ConfigurationKeys.SERIALIZER)),
+                getSplitStrategy(),
+                Boolean.parseBoolean(getEnvVar(ConfigurationKeys.PARALLEL_SERIALIZATION)),
+                getIntOrDefault(
+                        ConfigurationKeys.PARALLEL_SERIALIZATION_THRESHOLD,
+                        Constants.DEFAULT_PARALLEL_SERIALIZATION_THRESHOLD),
+                getIntOrDefault(
+                        ConfigurationKeys.VALIDATION_CACHE_SIZE,
+                        Constants.DEFAULT_VALIDATION_CACHE_SIZE));
+    }
+
+    private static SplitStrategy getSplitStrategy() {
+        String strategyName = getEnvVar(ConfigurationKeys.SPLIT_STRATEGY);
+        if (StringUtils.isNullOrEmpty(strategyName)) {
+            return SplitStrategy.REPEAT_PROPERTIES;
+        }
+
+        try {
+            return SplitStrategy.valueOf(strategyName);
+        } catch (IllegalArgumentException e) {
+            return SplitStrategy.REPEAT_PROPERTIES;
+        }
+    }
+
+    private static WaitStrategy getAgentWaitStrategy() {
+        String strategyName = getEnvVar(ConfigurationKeys.AGENT_WAIT_STRATEGY);
+        if (StringUtils.isNullOrEmpty(strategyName)) {
+            return WaitStrategy.BLOCKING;
+        }
+
+        try {
+            return WaitStrategy.valueOf(strategyName);
+        } catch (IllegalArgumentException e) {
+            return WaitStrategy.BLOCKING;
+        }
+    }
+
+    private static OverflowPolicy.Action getAgentOverflowAction() {
+        String actionName = getEnvVar(ConfigurationKeys.AGENT_OVERFLOW_POLICY);
+        if (StringUtils.isNullOrEmpty(actionName)) {
+            return OverflowPolicy.Action.DROP_OLDEST;
+        }
+
+        try {
+            return OverflowPolicy.Action.valueOf(actionName);
+        } catch (IllegalArgumentException e) {
+            return OverflowPolicy.Action.DROP_OLDEST;
+        }
     }
 
     private static Environments getEnvironmentOverride() {
@@ -16,6 +16,8 @@
 
 package software.amazon.cloudwatchlogs.emf.environment;
 
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.Optional;
 import lombok.extern.slf4j.Slf4j;
 import software.amazon.cloudwatchlogs.emf.Constants;
@@ -25,6 +27,7 @@ import software.amazon.cloudwatchlogs.emf.sinks.ConsoleSink;
 import software.amazon.cloudwatchlogs.emf.sinks.Endpoint;
 import software.amazon.cloudwatchlogs.emf.sinks.ISink;
 import software.amazon.cloudwatchlogs.emf.sinks.SocketClientFactory;
+import software.amazon.cloudwatchlogs.emf.sinks.SpillQueue;
 import software.amazon.cloudwatchlogs.emf.sinks.retry.FibonacciRetryStrategy;
 
 @Slf4j
@@ -85,15 +88,43 @@ public abstract class AgentBasedEnvironment implements Environment {
                                 getLogGroupName(),
                                 getLogStreamName(),
                                 endpoint,
-                                new SocketClientFactory(),
+                                new SocketClientFactory(
+                                        config.shouldUseAgentNioClient(),
+                                        config.getAgentSendBufferSize()),
                                 config.getAsyncBufferSize(),
                                 () ->
                                         new FibonacciRetryStrategy(
                                                 Constants.MIN_BACKOFF_MILLIS,
                                                 Constants.MAX_BACKOFF_MILLIS,
-                                                Constants.MAX_BACKOFF_JITTER));
+                                                Constants.MAX_BACKOFF_JITTER),
+                                config.getAgentBatchMaxBytes(),
+                                config.getAgentBatchLingerMillis(),
+                                config.getAgentWaitStrategy(),
+                                config.getAgentOverflowPolicy(),
+                                createSpillQueue());
             }
         }
         return sink;
     }
+
+    private SpillQueue createSpillQueue() {
+        if (!config.getAgentSpillDirectory().isPresent()) {
+            return null;
+        }
+        String directory = config.getAgentSpillDirectory().get();
+        // A segment holds at least one full batch or event
+        int segmentBytes =
+                Math.max(
+                        Constants.DEFAULT_AGENT_SPILL_SEGMENT_BYTES,
+                        Math.max(config.getAgentBatchMaxBytes(), config.getMaxEventSize()) + 8);
+        try {
+            return new SpillQueue(
+                    Paths.get(directory),
+                    Math.max(config.getAgentSpillMaxBytes(), segmentBytes),
+                    segmentBytes);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to open the spill queue in {}. Spilling is disabled.", directory, e);
+            return null;
+        }
+    }
 }
@@ -18,8 +18,11 @@ package software.amazon.cloudwatchlogs.emf.logger;
 
 import java.time.Instant;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
-import java.util.function.Supplier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
@@ -30,7 +33,9 @@ import software.amazon.cloudwatchlogs.emf.exception.InvalidDimensionException;
 import software.amazon.cloudwatchlogs.emf.exception.InvalidMetricException;
 import software.amazon.cloudwatchlogs.emf.exception.InvalidNamespaceException;
 import software.amazon.cloudwatchlogs.emf.exception.InvalidTimestampException;
+import software.amazon.cloudwatchlogs.emf.model.AggregationMode;
 import software.amazon.cloudwatchlogs.emf.model.DimensionSet;
+import software.amazon.cloudwatchlogs.emf.model.MetricHandle;
 import software.amazon.cloudwatchlogs.emf.model.MetricsContext;
 import software.amazon.cloudwatchlogs.emf.model.StorageResolution;
 import software.amazon.cloudwatchlogs.emf.model.Unit;
@@ -42,16 +47,26 @@ import software.amazon.cloudwatchlogs.emf.sinks.ISink;
  */
 @Slf4j
 public class MetricsLogger {
-    private MetricsContext context;
-    private CompletableFuture<Environment> environmentFuture;
-    private EnvironmentProvider environmentProvider;
     /**
-     * This lock is used to create an internal sync context for flush() method in multi-threaded
-     * situations. Flush() acquires write lock, other methods (accessing mutable shared data with
-     * flush()) acquires read lock. This makes sure flush() is executed exclusively, while other
-     * methods can be executed concurrently.
+     * The context currently receiving writes. Flush() swaps in a fresh copy of the context and only
+     * then serializes the old one, once the writers that were still publishing into it have left.
+     * This way putMetric() and putProperty() never wait for serialization or the sink.
+     */
+    private volatile ContextEpoch epoch;
+    /**
+     * Serializes flush() with the methods changing state that is carried over to the next context
+     * (dimensions, namespace, aggregation settings), so such changes are never lost by a swap.
      */
-    private final ReentrantReadWriteLock rwl = new ReentrantReadWriteLock();
+    private final Object swapLock = new Object();
+    /**
+     * Writer counters of a flushed epoch, handed to the next epoch once its writers have left, so
+     * a logger alternates between two counter arrays instead of allocating one per flush. A writer
+     * that finds its epoch already swapped out only touches the counters until it retries.
+     */
+    private final AtomicReference<AtomicIntegerArray> spareWriters = new AtomicReference<>();
+
+    private CompletableFuture<Environment> environmentFuture;
+    private EnvironmentProvider environmentProvider;
 
     @Getter @Setter private boolean flushPreserveDimensions = true;
 
@@ -60,7 +75,7 @@ public class MetricsLogger {
     }
 
     public MetricsLogger(Environment environment) {
-        context = new MetricsContext();
+        epoch = new ContextEpoch(new MetricsContext());
         environmentFuture = CompletableFuture.completedFuture(environment);
         environmentProvider = null; // TODO: should do some refactoring here
     }
@@ -70,7 +85,7 @@ public class MetricsLogger {
     }
 
     public MetricsLogger(EnvironmentProvider environmentProvider, MetricsContext metricsContext) {
-        context = metricsContext;
+        epoch = new ContextEpoch(metricsContext);
         environmentFuture = environmentProvider.resolveEnvironment();
         this.environmentProvider = environmentProvider;
     }
@@ -87,15 +102,25 @@ public class MetricsLogger {
             environment = environmentProvider.getDefaultEnvironment();
         }
 
-        rwl.writeLock().lock();
-        try {
-            ISink sink = environment.getSink();
-            configureContextForEnvironment(context, environment);
-            sink.accept(context);
-            context = context.createCopyWithContext(flushPreserveDimensions);
-        } finally {
-            rwl.writeLock().unlock();
+        ContextEpoch flushed;
+        synchronized (swapLock) {
+            flushed = epoch;
+            // The copy only reads state guarded by swapLock, which writers still publishing into
+            // the flushed context don't change
+            MetricsContext next = flushed.context.createCopyWithContext(flushPreserveDimensions);
+            epoch = new ContextEpoch(next, spareWriters.getAndSet(null));
         }
+        flushed.awaitWriters();
+        spareWriters.set(flushed.writers);
+
+        configureContextForEnvironment(flushed.context, environment);
+        synchronized (swapLock) {
+            MetricsContext next = epoch.context;
+            if (!next.hasDefaultDimensions()) {
+                next.setDefaultDimensions(flushed.context.getDefaultDimensions());
+            }
+        }
+        environment.getSink().accept(flushed.context);
     }
 
     /**
@@ -108,11 +133,7 @@ public class MetricsLogger {
      * @return the current logger
      */
     public MetricsLogger putProperty(String key, Object value) {
-        return applyReadLock(
-                () -> {
-                    this.context.putProperty(key, value);
-                    return this;
-                });
+        return applyToCurrentContext(context -> context.putProperty(key, value));
     }
 
     /**
@@ -120,18 +141,15 @@ public class MetricsLogger {
      * metric identity. CloudWatch treats each unique combination of dimensions as a separate
      * metric, even if the metrics have the same metric name.
      *
-     * @param dimensions the DimensionSet to add
+     * @param dimensions the DimensionSet to add. A mutable set is copied, so changing it
+     *     afterwards does not change the dimensions of this logger.
      * @see <a
      *     href="https://docs.aws.amazon.com/AmazonCloudWatch/latest/monitoring/cloudwatch_concepts.html#Dimension">CloudWatch
      *     Dimensions</a>
      * @return the current logger
      */
     public MetricsLogger putDimensions(DimensionSet dimensions) {
-        return applyReadLock(
-                () -> {
-                    context.putDimension(dimensions);
-                    return this;
-                });
+        return applyToContextUnderSwapLock(context -> context.putDimension(dimensions));
     }
 
     /**
@@ -144,11 +162,7 @@ public class MetricsLogger {
      * @return the current logger
      */
     public MetricsLogger setDimensions(DimensionSet... dimensionSets) {
-        return applyReadLock(
-                () -> {
-                    context.setDimensions(dimensionSets);
-                    return this;
-                });
+        return applyToContextUnderSwapLock(context -> context.setDimensions(dimensionSets));
     }
 
     /**
@@ -160,11 +174,8 @@ public class MetricsLogger {
      * @return the current logger
      */
     public MetricsLogger setDimensions(boolean useDefault, DimensionSet... dimensionSets) {
-        return applyReadLock(
-                () -> {
-                    context.setDimensions(useDefault, dimensionSets);
-                    return this;
-                });
+        return applyToContextUnderSwapLock(
+                context -> context.setDimensions(useDefault, dimensionSets));
     }
 
     /**
@@ -175,11 +186,7 @@ public class MetricsLogger {
      * @return the current logger
      */
     public MetricsLogger resetDimensions(boolean useDefault) {
-        return applyReadLock(
-                () -> {
-                    context.resetDimensions(useDefault);
-                    return this;
-                });
+        return applyToContextUnderSwapLock(context -> context.resetDimensions(useDefault));
     }
 
     /**
@@ -200,15 +207,105 @@ public class MetricsLogger {
     public MetricsLogger putMetric(
             String key, double value, Unit unit, StorageResolution storageResolution)
             throws InvalidMetricException {
-        rwl.readLock().lock();
+        ContextEpoch current = enterCurrentEpoch();
         try {
-            this.context.putMetric(key, value, unit, storageResolution);
+            current.context.putMetric(key, value, unit, storageResolution);
             return this;
         } finally {
-            rwl.readLock().unlock();
+            current.exit();
         }
     }
 
+    /**
+     * Put a metric value with an aggregation mode for this metric. The mode takes effect when the
+     * metric is first put after a flush; later values for the same key accumulate into the same
+     * metric. Use {@link AggregationMode#STATISTIC_SET} for high-volume metrics where individual
+     * datapoints are not needed.
+     *
+     * @param key is the name of the metric
+     * @param value is the value of the metric
+     * @param unit is the unit of the metric value
+     * @param storageResolution is the resolution of the metric
+     * @param aggregationMode is how values of the metric are accumulated until the next flush
+     * @return the current logger
+     * @throws InvalidMetricException if the metric is invalid
+     */
+    public MetricsLogger putMetric(
+            String key,
+            double value,
+            Unit unit,
+            StorageResolution storageResolution,
+            AggregationMode aggregationMode)
+            throws InvalidMetricException {
+        ContextEpoch current = enterCurrentEpoch();
+        try {
+            current.context.putMetric(key, value, unit, storageResolution, aggregationMode);
+            return this;
+        } finally {
+            current.exit();
+        }
+    }
+
+    /**
+     * Put a metric value through a handle returned by {@link #registerMetric}. The metric name,
+     * unit and resolution are not validated again, and the metric is not looked up by name, which
+     * makes this the cheapest way to record a metric that is put often.
+     *
+     * @param handle is the handle of the metric
+     * @param value is the value of the metric
+     * @return the current logger
+     * @throws InvalidMetricException if the value is invalid
+     */
+    public MetricsLogger putMetric(MetricHandle handle, double value)
+            throws InvalidMetricException {
+        ContextEpoch current = enterCurrentEpoch();
+        try {
+            current.context.putMetric(handle, value);
+            return this;
+        } finally {
+            current.exit();
+        }
+    }
+
+    /**
+     * Register a metric to be recorded with {@link #putMetric(MetricHandle, double)}. The returned
+     * handle is validated once and can be kept, e.g. in a constant, and shared between threads and
+     * loggers. Handles are not tied to this logger: this is the same as {@link
+     * MetricHandle#of(String, Unit, StorageResolution)}, and every handle takes one of the ids
+     * shared by the whole process, so register a metric once rather than per use.
+     *
+     * @param key is the name of the metric
+     * @param unit is the unit of the metric value
+     * @param storageResolution is the resolution of the metric
+     * @return the handle of the metric
+     * @throws InvalidMetricException if the metric is invalid
+     */
+    public MetricHandle registerMetric(String key, Unit unit, StorageResolution storageResolution)
+            throws InvalidMetricException {
+        return MetricHandle.of(key, unit, storageResolution);
+    }
+
+    /**
+     * Register a metric with its own aggregation mode to be recorded with {@link
+     * #putMetric(MetricHandle, double)}. Like {@link #registerMetric(String, Unit,
+     * StorageResolution)}, the handle is not tied to this logger.
+     *
+     * @param key is the name of the metric
+     * @param unit is the unit of the metric value
+     * @param storageResolution is the resolution of the metric
+     * @param aggregationMode is how values of the metric are accumulated until the next flush
+     * @return the handle of the metric
+     * @throws InvalidMetricException if the metric is invalid
+     */
+    public MetricHandle registerMetric(
+            String key,
+            Unit unit,
+            StorageResolution storageResolution,
+            AggregationMode aggregationMode)
+            throws InvalidMetricException {
+        return MetricHandle.of(key, unit, storageResolution, aggregationMode);
+    }
+
     /**
      * Put a metric value. This value will be emitted to CloudWatch Metrics asynchronously and does
      * not contribute to your account TPS limits. The value will also be available in your
@@ -261,6 +358,36 @@ public class MetricsLogger {
         return this;
     }
 
+    /**
+     * Set how metrics accumulate their values before being flushed. With {@link
+     * AggregationMode#VALUES_AND_COUNTS}, repeated values of a metric are stored and emitted once
+     * together with their number of occurrences, which bounds the size of the emitted event by the
+     * number of distinct values. With {@link AggregationMode#STATISTIC_SET}, only Min/Max/Sum and
+     * SampleCount are kept. The mode applies to metrics created after this call and is kept across
+     * flushes.
+     *
+     * @param aggregationMode the aggregation mode
+     * @return the current logger
+     */
+    public MetricsLogger setAggregationMode(AggregationMode aggregationMode) {
+        return applyToContextUnderSwapLock(context -> context.setAggregationMode(aggregationMode));
+    }
+
+    /**
+     * Set the maximum relative error of the values reported for {@link AggregationMode#HISTOGRAM}
+     * metrics. Recording into a histogram keeps one count per bucket, so memory and event size are
+     * bounded no matter how many values are put. The setting is kept across flushes.
+     *
+     * @param relativeError the relative error, greater than 0 and at most 0.5
+     * @return the current logger
+     * @throws InvalidMetricException if the relative error is out of range
+     */
+    public MetricsLogger setHistogramRelativeError(double relativeError)
+            throws InvalidMetricException {
+        return applyToContextUnderSwapLock(
+                context -> context.setHistogramRelativeError(relativeError));
+    }
+
     /**
      * Add a custom key-value pair to the Metadata object.
      *
@@ -272,11 +399,7 @@ public class MetricsLogger {
      * @return the current logger
      */
     public MetricsLogger putMetadata(String key, Object value) {
-        return applyReadLock(
-                () -> {
-                    this.context.putMetadata(key, value);
-                    return this;
-                });
+        return applyToCurrentContext(context -> context.putMetadata(key, value));
     }
 
     /**
@@ -287,8 +410,7 @@ public class MetricsLogger {
      * @throws InvalidNamespaceException if the namespace is invalid
      */
     public MetricsLogger setNamespace(String namespace) throws InvalidNamespaceException {
-        this.context.setNamespace(namespace);
-        return this;
+        return applyToContextUnderSwapLock(context -> context.setNamespace(namespace));
     }
 
     /**
@@ -299,8 +421,7 @@ public class MetricsLogger {
      * @throws InvalidTimestampException if the timestamp is invalid
      */
     public MetricsLogger setTimestamp(Instant timestamp) throws InvalidTimestampException {
-        this.context.setTimestamp(timestamp);
-        return this;
+        return applyToCurrentContext(context -> context.setTimestamp(timestamp));
     }
 
     private void configureContextForEnvironment(MetricsContext context, Environment environment) {
@@ -322,12 +443,110 @@ public class MetricsLogger {
         }
     }
 
-    private MetricsLogger applyReadLock(Supplier<MetricsLogger> any) {
-        rwl.readLock().lock();
+    /**
+     * Runs the operation on the context currently receiving writes. If a flush swaps the context
+     * before the operation is registered as in flight, the operation is retried on the new one.
+     */
+    private MetricsLogger applyToCurrentContext(Consumer<MetricsContext> operation) {
+        ContextEpoch current = enterCurrentEpoch();
         try {
-            return any.get();
+            operation.accept(current.context);
+            return this;
         } finally {
-            rwl.readLock().unlock();
+            current.exit();
+        }
+    }
+
+    /**
+     * Registers the calling thread as a writer of the epoch currently receiving writes. The caller
+     * must {@link ContextEpoch#exit() exit} the returned epoch once it is done writing.
+     */
+    private ContextEpoch enterCurrentEpoch() {
+        while (true) {
+            ContextEpoch current = epoch;
+            current.enter();
+            if (current == epoch) {
+                return current;
+            }
+            // Swapped out before the writer was registered, so flush() may not wait for it
+            current.exit();
+        }
+    }
+
+    private MetricsLogger applyToContextUnderSwapLock(Consumer<MetricsContext> operation) {
+        synchronized (swapLock) {
+            operation.accept(epoch.context);
+            return this;
+        }
+    }
+
+    /**
+     * A context together with the number of writers currently publishing into it. The counter is
+     * striped by thread so that concurrent writers do not contend on a single cache line.
+     */
+    private static final class ContextEpoch {
+        private static final int STRIPES =
+                Math.min(
+                        64,
+                        Integer.highestOneBit(
+                                        Math.max(1, Runtime.getRuntime().availableProcessors()) * 4
+                                                - 1));
+        // 16 ints apart keeps each stripe on its own 64-byte cache line
+        private static final int PADDING = 16;
+        private static final int SPINS = 100;
+        private static final long MIN_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(1);
+        private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+        private final MetricsContext context;
+        private final AtomicIntegerArray writers;
+
+        /**
+         * @param writers the counters of an epoch whose writers have all left, or null to allocate
+         *     new ones
+         */
+        private ContextEpoch(MetricsContext context, AtomicIntegerArray writers) {
+            this.context = context;
+            this.writers = writers != null ? writers : new AtomicIntegerArray(STRIPES * PADDING);
+        }
+
+        private ContextEpoch(MetricsContext context) {
+            this(context, null);
+        }
+
+        private void enter() {
+            writers.incrementAndGet(slot());
+        }
+
+        private void exit() {
+            writers.decrementAndGet(slot());
+        }
+
+        /** Spreads sequential thread ids over the stripes. */
+        private static int slot() {
+            long mixed = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+            return ((int) (mixed >>> 32) & (STRIPES - 1)) * PADDING;
+        }
+
+        /**
+         * Waits for the writers that entered this epoch before it was swapped out. Writers only
+         * stay for the duration of a put, so the wait is short; it yields for a while and then
+         * parks with a growing timeout so a descheduled writer doesn't keep the flushing thread
+         * spinning.
+         */
+        private void awaitWriters() {
+            for (int i = 0; i < STRIPES; i++) {
+                int spins = 0;
+                long parkNanos = MIN_PARK_NANOS;
+                while (writers.get(i * PADDING) != 0) {
+                    if (spins < SPINS) {
+                        spins++;
+                        Thread.yield();
+                    } else {
+                        LockSupport.parkNanos(parkNanos);
+                        parkNanos = Math.min(parkNanos * 2, MAX_PARK_NANOS);
+                    }
+                }
+            }
         }
     }
 }
@@ -0,0 +1,47 @@
+/*
+ *   Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package software.amazon.cloudwatchlogs.emf.model;
+
+/**
+ * Controls how the datapoints of a metric are accumulated in memory and emitted. Modes are declared
+ * from the most to the least detailed.
+ */
+public enum AggregationMode {
+    /** Every datapoint is kept and emitted as a single value or an array of values. */
+    NONE,
+
+    /**
+     * Distinct values are kept together with the number of times they were recorded and emitted
+     * in the EMF {@code Values}/{@code Counts} form. The size of the emitted metric is bounded by
+     * the number of distinct values rather than the number of datapoints.
+     */
+    VALUES_AND_COUNTS,
+
+    /**
+     * Values are counted in log-linear histogram buckets with a configurable relative error and
+     * emitted in the EMF {@code Values}/{@code Counts} form, one entry per bucket. The number of
+     * buckets is capped, so memory and output size are bounded for any number of datapoints.
+     */
+    HISTOGRAM,
+
+    /**
+     * Values are folded into running Min/Max/Sum/SampleCount statistics and emitted as an EMF
+     * statistic set. Memory and output size are constant per metric, independent of the number of
+     * datapoints.
+     */
+    STATISTIC_SET
+}
@@ -0,0 +1,51 @@
+/*
+ *   Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package software.amazon.cloudwatchlogs.emf.model;
+
+import java.util.Set;
+
+/**
+ * The dimension names of a dimension set, used to index dimension sets. The hash is computed once,
+ * so looking up a set of up to 30 names costs a single comparison in the common case.
+ */
+final class DimensionKeys {
+    private final Set<String> keys;
+    private final int hash;
+
+    /** @param keys the dimension names, which must not change afterwards */
+    DimensionKeys(Set<String> keys) {
+        this.keys = keys;
+        this.hash = keys.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof DimensionKeys)) {
+            return false;
+        }
+        DimensionKeys other = (DimensionKeys) o;
+        return hash == other.hash && keys.equals(other.keys);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
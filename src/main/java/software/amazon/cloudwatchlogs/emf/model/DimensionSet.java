@@ -16,6 +16,8 @@
 
 package software.amazon.cloudwatchlogs.emf.model;
 
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
@@ -27,11 +29,31 @@ import software.amazon.cloudwatchlogs.emf.exception.DimensionSetExceededExceptio
 import software.amazon.cloudwatchlogs.emf.exception.InvalidDimensionException;
 import software.amazon.cloudwatchlogs.emf.util.Validator;
 
-/** A combination of dimension values. */
+/**
+ * A combination of dimension values. A dimension set can be frozen with {@link #freeze()} into an
+ * immutable set, which can be shared between threads and contexts without copying.
+ */
 public class DimensionSet {
 
     @Getter(AccessLevel.PACKAGE)
-    private final Map<String, String> dimensionRecords = new LinkedHashMap<>();
+    private final Map<String, String> dimensionRecords;
+
+    /** The dimension names of a frozen set, or null if the set can still change. */
+    private final DimensionKeys frozenKeys;
+
+    /** Incremented on every change, so cached results derived from this set can be checked. */
+    @Getter(AccessLevel.PACKAGE)
+    private int modificationCount;
+
+    public DimensionSet() {
+        dimensionRecords = new LinkedHashMap<>();
+        frozenKeys = null;
+    }
+
+    private DimensionSet(Map<String, String> dimensionRecords) {
+        this.dimensionRecords = Collections.unmodifiableMap(new LinkedHashMap<>(dimensionRecords));
+        this.frozenKeys = new DimensionKeys(this.dimensionRecords.keySet());
+    }
 
     /**
      * Return a dimension set that contains a single pair of key-value.
@@ -155,9 +177,13 @@ public class DimensionSet {
      * @param value Value of the dimension
      * @throws InvalidDimensionException if the dimension name or value is invalid
      * @throws DimensionSetExceededException if the number of dimensions exceeds the limit
+     * @throws UnsupportedOperationException if this set is frozen
      */
     public void addDimension(String dimension, String value)
             throws InvalidDimensionException, DimensionSetExceededException {
+        if (isFrozen()) {
+            throw new UnsupportedOperationException("Cannot add a dimension to a frozen set");
+        }
         Validator.validateDimensionSet(dimension, value);
 
         if (this.getDimensionKeys().size() >= Constants.MAX_DIMENSION_SET_SIZE) {
@@ -165,6 +191,7 @@ public class DimensionSet {
         }
 
         this.getDimensionRecords().put(dimension, value);
+        modificationCount++;
     }
 
     /**
@@ -188,6 +215,29 @@ public class DimensionSet {
         return mergedDimensionSet;
     }
 
+    /**
+     * Return an immutable copy of this dimension set. The copy can be shared between threads and
+     * contexts, and is added to a context without comparing its dimension names one by one.
+     *
+     * @return this set if it is already frozen, otherwise a frozen copy of it
+     */
+    public DimensionSet freeze() {
+        return isFrozen() ? this : new DimensionSet(dimensionRecords);
+    }
+
+    /** @return true if this set is immutable. */
+    public boolean isFrozen() {
+        return frozenKeys != null;
+    }
+
+    /** @return the dimension names of this set, as a key that does not change with the set. */
+    DimensionKeys getKeys() {
+        if (frozenKeys != null) {
+            return frozenKeys;
+        }
+        return new DimensionKeys(new HashSet<>(dimensionRecords.keySet()));
+    }
+
     /** @return all the dimension names in the dimension set. */
     public Set<String> getDimensionKeys() {
         return dimensionRecords.keySet();
@@ -0,0 +1,159 @@
+/*
+ *   Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package software.amazon.cloudwatchlogs.emf.model;
+
+import com.fasterxml.jackson.core.io.SerializedString;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+/**
+ * The pre-rendered JSON of a {@link MetricDirective}: its namespace, dimension key arrays and
+ * metric definitions. For a long-lived logger these are the same on every flush, so the directive
+ * is rendered once and the rendered bytes are written as is until the namespace, the dimensions or
+ * the metric definitions change. The timestamp and the metric values live outside of the directive
+ * and are written on every flush.
+ *
+ * <p>A template is immutable. It remembers what it was rendered from and is checked against the
+ * directive before each use, so changes made through any path invalidate it. Outside of this
+ * package it is only handed to a {@link JsonOutput}, which writes its {@link #getJson() JSON}.
+ */
+public final class DirectiveTemplate {
+    private final String namespace;
+    private final String[][] dimensionKeys;
+    private final String[] metricNames;
+    private final Unit[] units;
+    private final StorageResolution[] storageResolutions;
+
+    /** The rendered directive object. */
+    @Getter private final String json;
+
+    /** The rendered directive object, encoded as UTF-8. */
+    @Getter(AccessLevel.PACKAGE)
+    private final byte[] utf8Json;
+
+    /**
+     * The rendered directive object for Jackson generators, created on first use. It is typed as
+     * the class rather than its interface, so linking this class doesn't load Jackson.
+     */
+    private volatile SerializedString serializedJson;
+
+    private DirectiveTemplate(
+            String namespace,
+            List<DimensionSet> dimensionSets,
+            List<MetricDefinition> metrics,
+            String json) {
+        this.namespace = namespace;
+        this.dimensionKeys = new String[dimensionSets.size()][];
+        for (int i = 0; i < dimensionKeys.length; i++) {
+            dimensionKeys[i] = dimensionSets.get(i).getDimensionKeys().toArray(new String[0]);
+        }
+        this.metricNames = new String[metrics.size()];
+        this.units = new Unit[metrics.size()];
+        this.storageResolutions = new StorageResolution[metrics.size()];
+        for (int i = 0; i < metricNames.length; i++) {
+            MetricDefinition metric = metrics.get(i);
+            metricNames[i] = metric.getName();
+            units[i] = metric.getUnit();
+            storageResolutions[i] = metric.getStorageResolution();
+        }
+        this.json = json;
+        this.utf8Json = json.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** @return the rendered directive object, with its encodings cached by Jackson. */
+    SerializedString getSerializedJson() {
+        SerializedString serialized = serializedJson;
+        if (serialized == null) {
+            serialized = new SerializedString(json);
+            serializedJson = serialized;
+        }
+        return serialized;
+    }
+
+    /**
+     * Get the template of a directive, rendering and caching a new one if the cached template is
+     * missing or out of date.
+     *
+     * @param directive the directive
+     * @return a template matching the current state of the directive
+     * @throws IOException if rendering fails
+     */
+    static DirectiveTemplate of(MetricDirective directive) throws IOException {
+        DirectiveTemplate template = directive.getTemplate();
+        if (template == null || !template.matches(directive)) {
+            template = render(directive);
+            directive.setTemplate(template);
+        }
+        return template;
+    }
+
+    private static DirectiveTemplate render(MetricDirective directive) throws IOException {
+        String namespace = directive.getNamespace();
+        List<DimensionSet> dimensionSets = directive.getAllDimensions();
+        List<MetricDefinition> metrics = new ArrayList<>(directive.getMetrics().values());
+        StringWriter writer = new StringWriter();
+        try (JsonOutput out = EmfJsonWriter.of(writer)) {
+            RootNodeSerializer.writeMetricDirective(namespace, dimensionSets, metrics, out);
+        }
+        return new DirectiveTemplate(namespace, dimensionSets, metrics, writer.toString());
+    }
+
+    /** @return true if this template was rendered from the current state of the directive. */
+    boolean matches(MetricDirective directive) {
+        if (!Objects.equals(namespace, directive.getNamespace())) {
+            return false;
+        }
+        List<DimensionSet> dimensionSets = directive.getAllDimensions();
+        if (dimensionSets.size() != dimensionKeys.length) {
+            return false;
+        }
+        for (int i = 0; i < dimensionKeys.length; i++) {
+            Set<String> keys = dimensionSets.get(i).getDimensionKeys();
+            if (keys.size() != dimensionKeys[i].length) {
+                return false;
+            }
+            int j = 0;
+            for (String key : keys) {
+                if (!key.equals(dimensionKeys[i][j++])) {
+                    return false;
+                }
+            }
+        }
+        if (directive.getMetrics().size() != metricNames.length) {
+            return false;
+        }
+        int i = 0;
+        for (MetricDefinition metric : directive.getMetrics().values()) {
+            if (i == metricNames.length
+                    || !metric.getName().equals(metricNames[i])
+                    || metric.getUnit() != units[i]
+                    || metric.getStorageResolution() != storageResolutions[i]) {
+                return false;
+            }
+            i++;
+        }
+        return i == metricNames.length;
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ *   Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package software.amazon.cloudwatchlogs.emf.model;
+
+import java.io.OutputStream;
+import java.io.Writer;
+
+/**
+ * An {@link EventSerializer} writing with the dependency-free EMF writer, which doesn't load
+ * Jackson unless a property value has a type it can't write itself.
+ */
+public final class EmfEventSerializer implements EventSerializer {
+
+    @Override
+    public JsonOutput createOutput(Writer out) {
+        return EmfJsonWriter.of(out);
+    }
+
+    @Override
+    public JsonOutput createOutput(OutputStream out) {
+        return EmfJsonWriter.of(out);
+    }
+
+    @Override
+    public String toString() {
+        return "EMF";
+    }
+}
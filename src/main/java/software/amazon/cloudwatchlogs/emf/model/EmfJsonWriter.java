@@ -0,0 +1,505 @@
+/*
+ *   Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package software.amazon.cloudwatchlogs.emf.model;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+
+/**
+ * A {@link JsonOutput} without any dependency, writing the same text as a Jackson generator with
+ * default settings except for doubles: strings escape quotes, backslashes and control characters
+ * only, and non-finite numbers are quoted. Finite doubles are written by {@link DoubleFormatter}
+ * as the shortest decimal that reads back as the same double, so integer values have no
+ * fractional part.
+ *
+ * <p>Property values of other types are written the way databind writes the common JDK types:
+ * numbers, characters, enums by name, byte arrays as base64, other arrays, iterables and maps as
+ * JSON arrays and objects. Any other object is handed to databind, which is only loaded once such
+ * a value is written.
+ *
+ * <p>Like {@link ReusableStringWriter}, each thread keeps a writer of each kind with its buffers
+ * between serializations, so writing an event doesn't allocate them. A writer goes back to its
+ * thread when it is closed.
+ */
+abstract class EmfJsonWriter implements JsonOutput {
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private static final ThreadLocal<CharWriter> CHAR_WRITERS =
+            ThreadLocal.withInitial(CharWriter::new);
+    private static final ThreadLocal<Utf8Writer> UTF8_WRITERS =
+            ThreadLocal.withInitial(Utf8Writer::new);
+
+    /** Per nesting level, whether the next member or element needs a leading comma. */
+    private boolean[] needsComma = new boolean[8];
+
+    private int depth;
+    private boolean afterFieldName;
+
+    private final char[] number = new char[DoubleFormatter.MAX_LENGTH];
+
+    private boolean inUse;
+
+    /**
+     * Get the writer of the current thread, or a new writer if the one of the current thread is in
+     * use, e.g. while a directive template is rendered in the middle of an event.
+     *
+     * @param out the writer to write to, which is not closed
+     * @return the output, to be closed after use
+     */
+    static EmfJsonWriter of(Writer out) {
+        CharWriter writer = CHAR_WRITERS.get();
+        if (!writer.open()) {
+            writer = new CharWriter();
+            writer.open();
+        }
+        writer.out = out;
+        return writer;
+    }
+
+    /**
+     * Get the UTF-8 writer of the current thread, or a new writer if the one of the current thread
+     * is in use.
+     *
+     * @param out the stream to write to, which is not closed
+     * @return the output, to be closed after use
+     */
+    static EmfJsonWriter of(OutputStream out) {
+        Utf8Writer writer = UTF8_WRITERS.get();
+        if (!writer.open()) {
+            writer = new Utf8Writer();
+            writer.open();
+        }
+        writer.out = out;
+        return writer;
+    }
+
+    /**
+     * Start a new document, discarding the state left by a failed one.
+     *
+     * @return false if the writer is in use
+     */
+    final boolean open() {
+        if (inUse) {
+            return false;
+        }
+        inUse = true;
+        depth = 0;
+        afterFieldName = false;
+        needsComma[0] = false;
+        discard();
+        return true;
+    }
+
+    /** Write a single ASCII character. */
+    abstract void writeRaw(char c) throws IOException;
+
+    /** Write a range of characters without escaping them. */
+    abstract void writeRaw(String text, int from, int to) throws IOException;
+
+    /** Write a range of ASCII characters. */
+    abstract void writeRaw(char[] chars, int from, int to) throws IOException;
+
+    void writeRaw(String text) throws IOException {
+        writeRaw(text, 0, text.length());
+    }
+
+    @Override
+    public void writeStartObject() throws IOException {
+        beforeValue();
+        writeRaw('{');
+        push();
+    }
+
+    @Override
+    public void writeEndObject() throws IOException {
+        depth--;
+        writeRaw('}');
+    }
+
+    @Override
+    public void writeStartArray() throws IOException {
+        beforeValue();
+        writeRaw('[');
+        push();
+    }
+
+    @Override
+    public void writeEndArray() throws IOException {
+        depth--;
+        writeRaw(']');
+    }
+
+    @Override
+    public void writeFieldName(String name) throws IOException {
+        if (needsComma[depth]) {
+            writeRaw(',');
+        }
+        needsComma[depth] = true;
+        writeQuoted(name);
+        writeRaw(':');
+        afterFieldName = true;
+    }
+
+    @Override
+    public void writeString(String value) throws IOException {
+        if (value == null) {
+            writeNull();
+            return;
+        }
+        beforeValue();
+        writeQuoted(value);
+    }
+
+    @Override
+    public void writeNumber(long value) throws IOException {
+        beforeValue();
+        writeRaw(Long.toString(value));
+    }
+
+    @Override
+    public void writeNumber(double value) throws IOException {
+        beforeValue();
+        if (Double.isFinite(value)) {
+            writeRaw(number, 0, DoubleFormatter.format(value, number, 0));
+        } else {
+            writeQuoted(Double.toString(value));
+        }
+    }
+
+    private void writeNumber(float value) throws IOException {
+        if (value == (long) value && Math.abs(value) < 0x1p53f) {
+            writeNumber((long) value);
+            return;
+        }
+        beforeValue();
+        if (Float.isFinite(value)) {
+            writeRaw(Float.toString(value));
+        } else {
+            writeQuoted(Float.toString(value));
+        }
+    }
+
+    @Override
+    public void writeBoolean(boolean value) throws IOException {
+        beforeValue();
+        writeRaw(value ? "true" : "false");
+    }
+
+    @Override
+    public void writeNull() throws IOException {
+        beforeValue();
+        writeRaw("null");
+    }
+
+    @Override
+    public void writeTemplate(DirectiveTemplate template) throws IOException {
+        beforeValue();
+        writeRawTemplate(template);
+    }
+
+    /** Write the rendered JSON of a template without escaping it. */
+    abstract void writeRawTemplate(DirectiveTemplate template) throws IOException;
+
+    @Override
+    public void writeObject(Object value) throws IOException {
+        if (value == null) {
+            writeNull();
+        } else if (value instanceof String) {
+            writeString((String) value);
+        } else if (value instanceof Boolean) {
+            writeBoolean((Boolean) value);
+        } else if (value instanceof Double) {
+            writeNumber((double) (Double) value);
+        } else if (value instanceof Float) {
+            writeNumber((float) (Float) value);
+        } else if (value instanceof Integer
+                || value instanceof Long
+                || value instanceof Short
+                || value instanceof Byte) {
+            writeNumber(((Number) value).longValue());
+        } else if (value instanceof BigDecimal || value instanceof BigInteger) {
+            beforeValue();
+            writeRaw(value.toString());
+        } else if (value instanceof Number) {
+            writeNumber(((Number) value).doubleValue());
+        } else if (value instanceof Enum) {
+            writeString(((Enum<?>) value).name());
+        } else if (value instanceof byte[]) {
+            writeString(Base64.getEncoder().encodeToString((byte[]) value));
+        } else if (value instanceof Map) {
+            writeStartObject();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                writeFieldName(String.valueOf(entry.getKey()));
+                writeObject(entry.getValue());
+            }
+            writeEndObject();
+        } else if (value instanceof Iterable) {
+            writeStartArray();
+            for (Object element : (Iterable<?>) value) {
+                writeObject(element);
+            }
+            writeEndArray();
+        } else if (value.getClass().isArray()) {
+            writeStartArray();
+            for (int i = 0; i < Array.getLength(value); i++) {
+                writeObject(Array.get(value, i));
+            }
+            writeEndArray();
+        } else {
+            beforeValue();
+            writeRaw(JacksonJsonOutput.OBJECT_MAPPER.writeValueAsString(value));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            detach();
+            inUse = false;
+        }
+    }
+
+    abstract void flush() throws IOException;
+
+    /** Drop the buffered output. */
+    abstract void discard();
+
+    /** Let go of the target, so a writer kept by its thread doesn't hold on to it. */
+    abstract void detach();
+
+    private void beforeValue() throws IOException {
+        if (afterFieldName) {
+            afterFieldName = false;
+        } else if (needsComma[depth]) {
+            writeRaw(',');
+        }
+        needsComma[depth] = true;
+    }
+
+    private void push() {
+        depth++;
+        if (depth == needsComma.length) {
+            needsComma = Arrays.copyOf(needsComma, depth * 2);
+        }
+        needsComma[depth] = false;
+    }
+
+    private void writeQuoted(String value) throws IOException {
+        writeRaw('"');
+        int start = 0;
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x20 || c == '"' || c == '\\') {
+                if (start < i) {
+                    writeRaw(value, start, i);
+                }
+                writeEscaped(c);
+                start = i + 1;
+            }
+        }
+        if (start < length) {
+            writeRaw(value, start, length);
+        }
+        writeRaw('"');
+    }
+
+    private void writeEscaped(char c) throws IOException {
+        writeRaw('\\');
+        switch (c) {
+            case '"':
+            case '\\':
+                writeRaw(c);
+                return;
+            case '\b':
+                writeRaw('b');
+                return;
+            case '\t':
+                writeRaw('t');
+                return;
+            case '\n':
+                writeRaw('n');
+                return;
+            case '\f':
+                writeRaw('f');
+                return;
+            case '\r':
+                writeRaw('r');
+                return;
+            default:
+                writeRaw('u');
+                writeRaw('0');
+                writeRaw('0');
+                writeRaw(HEX[c >> 4]);
+                writeRaw(HEX[c & 0xF]);
+        }
+    }
+
+    /** Writes characters to a writer through a small buffer. */
+    private static final class CharWriter extends EmfJsonWriter {
+        private Writer out;
+        private final char[] buffer = new char[2048];
+        private int position;
+
+        @Override
+        void writeRaw(char c) throws IOException {
+            if (position == buffer.length) {
+                flush();
+            }
+            buffer[position++] = c;
+        }
+
+        @Override
+        void writeRaw(String text, int from, int to) throws IOException {
+            while (from < to) {
+                if (position == buffer.length) {
+                    flush();
+                }
+                int count = Math.min(to - from, buffer.length - position);
+                text.getChars(from, from + count, buffer, position);
+                position += count;
+                from += count;
+            }
+        }
+
+        @Override
+        void writeRaw(char[] chars, int from, int to) throws IOException {
+            if (to - from > buffer.length - position) {
+                flush();
+            }
+            System.arraycopy(chars, from, buffer, position, to - from);
+            position += to - from;
+        }
+
+        @Override
+        void writeRawTemplate(DirectiveTemplate template) throws IOException {
+            writeRaw(template.getJson());
+        }
+
+        @Override
+        void flush() throws IOException {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+
+        @Override
+        void discard() {
+            position = 0;
+        }
+
+        @Override
+        void detach() {
+            out = null;
+        }
+    }
+
+    /** Encodes characters as UTF-8 to a stream through a small buffer. */
+    private static final class Utf8Writer extends EmfJsonWriter {
+        private OutputStream out;
+        private final byte[] buffer = new byte[4096];
+        private int position;
+
+        @Override
+        void writeRaw(char c) throws IOException {
+            if (position == buffer.length) {
+                flush();
+            }
+            buffer[position++] = (byte) c;
+        }
+
+        @Override
+        void writeRaw(String text, int from, int to) throws IOException {
+            for (int i = from; i < to; i++) {
+                if (buffer.length - position < 4) {
+                    flush();
+                }
+                char c = text.charAt(i);
+                if (c < 0x80) {
+                    buffer[position++] = (byte) c;
+                } else if (c < 0x800) {
+                    buffer[position++] = (byte) (0xC0 | (c >> 6));
+                    buffer[position++] = (byte) (0x80 | (c & 0x3F));
+                } else if (Character.isHighSurrogate(c)
+                        && i + 1 < to
+                        && Character.isLowSurrogate(text.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                    buffer[position++] = (byte) (0xF0 | (codePoint >> 18));
+                    buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                    buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                    buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+                } else if (Character.isSurrogate(c)) {
+                    // Unpaired surrogates are replaced, as by String.getBytes
+                    buffer[position++] = '?';
+                } else {
+                    buffer[position++] = (byte) (0xE0 | (c >> 12));
+                    buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    buffer[position++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+        }
+
+        @Override
+        void writeRaw(char[] chars, int from, int to) throws IOException {
+            if (to - from > buffer.length - position) {
+                flush();
+            }
+            for (int i = from; i < to; i++) {
+                buffer[position++] = (byte) chars[i];
+            }
+        }
+
+        @Override
+        void writeRawTemplate(DirectiveTemplate template) throws IOException {
+            byte[] json = template.getUtf8Json();
+            if (json.length > buffer.length - position) {
+                flush();
+                if (json.length > buffer.length) {
+                    out.write(json);
+                    return;
+                }
+            }
+            System.arraycopy(json, 0, buffer, position, json.length);
+            position += json.length;
+        }
+
+        @Override
+        void flush() throws IOException {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+
+        @Override
+        void discard() {
+            position = 0;
+        }
+
+        @Override
+        void detach() {
+            out = null;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ *   Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package software.amazon.cloudwatchlogs.emf.model;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+/**
+ * Writes the log events of a {@link MetricsContext}. The context drives the serializer through the
+ * {@link JsonOutput} it creates, token by token, so a serializer only decides how the tokens are
+ * encoded. Both built-in serializers write the same document for the same context: they only
+ * differ in how numbers are formatted.
+ *
+ * <ul>
+ *   <li>{@link JacksonEventSerializer} writes with a Jackson generator, and hands property values
+ *       of types other than strings, numbers and booleans to databind.
+ *   <li>{@link EmfEventSerializer} is a purpose-built writer without any dependency, which also
+ *       writes enums, arrays, collections and maps itself. It avoids loading and initializing
+ *       Jackson, which shortens cold starts, e.g. on Lambda, and only hands property values of
+ *       other types to databind.
+ * </ul>
+ *
+ * <p>Other implementations can be set on a context or on the {@link
+ * software.amazon.cloudwatchlogs.emf.config.Configuration}. A serializer is shared by every context
+ * using it, so it must be thread safe.
+ *
+ * <pre>{@code
+ * metricsContext.setEventSerializer(EventSerializer.EMF);
+ * }</pre>
+ */
+public interface EventSerializer {
+
+    /** Writes events with Jackson. */
+    EventSerializer JACKSON = new JacksonEventSerializer();
+
+    /** Writes events with the dependency-free EMF writer. */
+    EventSerializer EMF = new EmfEventSerializer();
+
+    /**
+     * Create an output writing characters to a writer.
+     *
+     * @param out the writer, which the output must not close
+     * @return the output of one event
+     * @throws IOException if the output can not be created
+     */
+    JsonOutput createOutput(Writer out) throws IOException;
+
+    /**
+     * Create an output writing UTF-8 to a stream.
+     *
+     * @param out the stream, which the output must not close
+     * @return the output of one event
+     * @throws IOException if the output can not be created
+     */
+    JsonOutput createOutput(OutputStream out) throws IOException;
+
+    /**
+     * Find a built-in serializer by its name, ignoring case.
+     *
+     * @param name the name, "Jackson" or "EMF"
+     * @return the serializer, or null if there is none of that name
+     */
+    static EventSerializer forName(String name) {
+        if (JACKSON.toString().equalsIgnoreCase(name)) {
+            return JACKSON;
+        }
+        if (EMF.toString().equalsIgnoreCase(name)) {
+            return EMF;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ *   Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package software.amazon.cloudwatchlogs.emf.model;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Estimates the size in bytes of serialized EMF documents without serializing them. Estimates are
+ * upper bounds for strings, numbers and booleans: every character that may be escaped is counted
+ * as an escape sequence, and non-integral doubles are counted at their longest representation.
+ * Other property values are estimated from their string representation.
+ */
+final class EventSizeEstimator {
+    /** The longest double written by the generator, e.g. -2.2250738585072014E-308. */
+    private static final int MAX_DOUBLE_LENGTH = 24;
+
+    private static final int MAX_LONG_LENGTH = 20;
+    private static final int MAX_INT_LENGTH = 11;
+
+    /** Syntax of a document with one directive: braces, member names, separators. */
+    private static final int DOCUMENT_SIZE =
+            "{\"_aws\":{\"Timestamp\":,\"CloudWatchMetrics\":[]}}".length() + MAX_LONG_LENGTH;
+
+    private static final int DIRECTIVE_SIZE =
+            "{\"Dimensions\":[],\"Metrics\":[],\"Namespace\":},".length();
+    private static final int DEFINITION_SIZE =
+            "{\"Name\":,\"Unit\":,\"StorageResolution\":1},".length();
+    private static final int STATISTIC_SET_SIZE =
+            "{\"Max\":,\"Min\":,\"SampleCount\":,\"Sum\":}".length()
+                    + 3 * MAX_DOUBLE_LENGTH
+                    + MAX_LONG_LENGTH;
+    private static final int VALUES_AND_COUNTS_SIZE = "{\"Values\":[],\"Counts\":[]}".length();
+
+    private EventSizeEstimator() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /** @return the estimated size of the whole root node serialized as a single event. */
+    static long estimate(RootNode node) {
+        long size = estimateWithoutMetrics(node);
+        for (MetricDirective directive : node.getAws().getCloudWatchMetrics()) {
+            for (MetricDefinition metric : directive.getMetrics().values()) {
+                size += estimateMetric(metric, 0, metric.getValueCount());
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return the estimated size of an event of the root node that holds no metrics: the metadata,
+     *     the directives without metric definitions, the properties and the dimensions.
+     */
+    static int estimateWithoutMetrics(RootNode node) {
+        return estimateWithoutMetrics(node, key -> true);
+    }
+
+    /**
+     * @return the estimated size of an event of the root node that holds no metrics and only the
+     *     properties accepted by the filter.
+     */
+    static int estimateWithoutMetrics(RootNode node, Predicate<String> properties) {
+        Metadata aws = node.getAws();
+        long size = DOCUMENT_SIZE;
+        for (MetricDirective directive : aws.getCloudWatchMetrics()) {
+            size += DIRECTIVE_SIZE + estimateString(directive.getNamespace());
+            List<DimensionSet> dimensionSets = directive.getAllDimensions();
+            for (int i = 0; i < dimensionSets.size(); i++) {
+                size += 3;
+                for (Map.Entry<String, String> dimension :
+                        dimensionSets.get(i).getDimensionRecords().entrySet()) {
+                    int keySize = estimateString(dimension.getKey());
+                    size += keySize + 1 + keySize + 2 + estimateString(dimension.getValue());
+                }
+            }
+        }
+        size += estimateMembers(aws.getCustomMetadata(), key -> true);
+        size += estimateMembers(node.getProperties(), properties);
+        return (int) Math.min(Integer.MAX_VALUE, size);
+    }
+
+    /**
+     * @return the estimated size of the data points {@code [from, to)} of a metric in an event: its
+     *     definition in the directive and its target member.
+     */
+    static int estimateMetric(MetricDefinition metric, int from, int to) {
+        Unit unit = metric.getUnit();
+        int nameSize = estimateString(metric.getName());
+        int size =
+                DEFINITION_SIZE
+                        + nameSize
+                        + (unit == null ? 4 : estimateString(unit.toString()))
+                        + nameSize
+                        + 2;
+        if (metric.getAggregationMode() == AggregationMode.STATISTIC_SET) {
+            return size + STATISTIC_SET_SIZE;
+        }
+        if (metric.hasCounts()) {
+            size += VALUES_AND_COUNTS_SIZE;
+            for (int i = from; i < to; i++) {
+                size += estimateDouble(metric.getValue(i)) + 1 + MAX_LONG_LENGTH + 1;
+            }
+            return size;
+        }
+        size += 2;
+        for (int i = from; i < to; i++) {
+            size += estimateDouble(metric.getValue(i)) + 1;
+        }
+        return size;
+    }
+
+    private static long estimateMembers(Map<String, Object> members, Predicate<String> keys) {
+        long size = 0;
+        for (Map.Entry<String, Object> member : members.entrySet()) {
+            if (keys.test(member.getKey())) {
+                size += estimateString(member.getKey()) + 2 + estimateValue(member.getValue());
+            }
+        }
+        return size;
+    }
+
+    /** @return the estimated size of a property value. */
+    static int estimateValue(Object value) {
+        if (value == null) {
+            return 4;
+        } else if (value instanceof String) {
+            return estimateString((String) value);
+        } else if (value instanceof Boolean) {
+            return 5;
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return MAX_INT_LENGTH;
+        } else if (value instanceof Long) {
+            return MAX_LONG_LENGTH;
+        } else if (value instanceof Double || value instanceof Float) {
+            return estimateDouble(((Number) value).doubleValue());
+        }
+        return estimateString(String.valueOf(value));
+    }
+
+    /** @return the estimated size of a quoted and escaped string. */
+    static int estimateString(String value) {
+        if (value == null) {
+            return 4;
+        }
+        int size = 2;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x20 || c == '"' || c == '\\') {
+                size += 6;
+            } else if (c < 0x80) {
+                size++;
+            } else {
+                size += 3;
+            }
+        }
+        return size;
+    }
+
+    /** @return the exact size of small integral values, the max size of any other double. */
+    static int estimateDouble(double value) {
+        long integral = (long) value;
+        if (integral == value && integral > -10_000_000L && integral < 10_000_000L) {
+            int size = Double.doubleToRawLongBits(value) < 0 ? 4 : 3;
+            for (long rest = Math.abs(integral) / 10; rest > 0; rest /= 10) {
+                size++;
+            }
+            return size;
+        }
+        return MAX_DOUBLE_LENGTH;
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ *   Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package software.amazon.cloudwatchlogs.emf.model;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+/**
+ * An {@link EventSerializer} writing with a Jackson generator. Property values of types other than
+ * strings, numbers and booleans are serialized by databind.
+ */
+public final class JacksonEventSerializer implements EventSerializer {
+
+    @Override
+    public JsonOutput createOutput(Writer out) throws IOException {
+        return JacksonJsonOutput.of(out);
+    }
+
+    @Override
+    public JsonOutput createOutput(OutputStream out) throws IOException {
+        return JacksonJsonOutput.of(out);
+    }
+
+    @Override
+    public String toString() {
+        return "Jackson";
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ *   Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package software.amazon.cloudwatchlogs.emf.model;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+/** A {@link JsonOutput} on a Jackson generator. Other property values go through databind. */
+final class JacksonJsonOutput implements JsonOutput {
+    /**
+     * The object mapper for EMF documents. It is created with the first Jackson output, so contexts
+     * serialized by {@link EventSerializer#EMF} never initialize databind.
+     */
+    static final ObjectMapper OBJECT_MAPPER =
+            new ObjectMapper()
+                    .addMixIn(MetricDirective.class, MetricDirectiveOrder.class)
+                    .setFilterProvider(
+                            new SimpleFilterProvider()
+                                    .addFilter("emptyMetricFilter", new EmptyMetricsFilter()));
+
+    /**
+     * Databind orders the getter properties of a directive in the order the JVM reports its
+     * methods, which is unspecified. The order is pinned to the one {@link RootNodeSerializer}
+     * writes.
+     */
+    @JsonPropertyOrder({"Namespace", "Dimensions", "Metrics"})
+    private abstract static class MetricDirectiveOrder {}
+
+    private final JsonGenerator gen;
+
+    private JacksonJsonOutput(JsonGenerator gen) {
+        this.gen = gen;
+        gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    static JacksonJsonOutput of(Writer out) throws IOException {
+        return new JacksonJsonOutput(OBJECT_MAPPER.getFactory().createGenerator(out));
+    }
+
+    static JacksonJsonOutput of(OutputStream out) throws IOException {
+        return new JacksonJsonOutput(
+                OBJECT_MAPPER.getFactory().createGenerator(out, JsonEncoding.UTF8));
+    }
+
+    @Override
+    public void writeStartObject() throws IOException {
+        gen.writeStartObject();
+    }
+
+    @Override
+    public void writeEndObject() throws IOException {
+        gen.writeEndObject();
+    }
+
+    @Override
+    public void writeStartArray() throws IOException {
+        gen.writeStartArray();
+    }
+
+    @Override
+    public void writeEndArray() throws IOException {
+        gen.writeEndArray();
+    }
+
+    @Override
+    public void writeFieldName(String name) throws IOException {
+        gen.writeFieldName(name);
+    }
+
+    @Override
+    public void writeString(String value) throws IOException {
+        gen.writeString(value);
+    }
+
+    @Override
+    public void writeNumber(long value) throws IOException {
+        gen.writeNumber(value);
+    }
+
+    @Override
+    public void writeNumber(double value) throws IOException {
+        gen.writeNumber(value);
+    }
+
+    @Override
+    public void writeBoolean(boolean value) throws IOException {
+        gen.writeBoolean(value);
+    }
+
+    @Override
+    public void writeNull() throws IOException {
+        gen.writeNull();
+    }
+
+    @Override
+    public void writeTemplate(DirectiveTemplate template) throws IOException {
+        gen.writeRawValue(template.getSerializedJson());
+    }
+
+    @Override
+    public void writeObject(Object value) throws IOException {
+        gen.writeObject(value);
+    }
+
+    @Override
+    public void close() throws IOException {
+        gen.close();
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ *   Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package software.amazon.cloudwatchlogs.emf.model;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * The JSON tokens an EMF document is written with, created by an {@link EventSerializer} for each
+ * event. Implementations place separators themselves, like a streaming generator, and need not be
+ * thread safe. Closing an output flushes it but leaves its target open.
+ */
+public interface JsonOutput extends Closeable {
+
+    void writeStartObject() throws IOException;
+
+    void writeEndObject() throws IOException;
+
+    void writeStartArray() throws IOException;
+
+    void writeEndArray() throws IOException;
+
+    void writeFieldName(String name) throws IOException;
+
+    void writeString(String value) throws IOException;
+
+    void writeNumber(long value) throws IOException;
+
+    void writeNumber(double value) throws IOException;
+
+    void writeBoolean(boolean value) throws IOException;
+
+    void writeNull() throws IOException;
+
+    /**
+     * Write a pre-rendered metric directive as a value, i.e. {@link DirectiveTemplate#getJson()}
+     * without escaping it.
+     */
+    void writeTemplate(DirectiveTemplate template) throws IOException;
+
+    /** Write a property value of a type without a dedicated method. */
+    void writeObject(Object value) throws IOException;
+}
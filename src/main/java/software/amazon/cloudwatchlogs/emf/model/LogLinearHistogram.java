@@ -0,0 +1,80 @@
+/*
+ *   Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package software.amazon.cloudwatchlogs.emf.model;
+
+/**
+ * Log-linear bucketing of metric values in the style of HdrHistogram. A value is assigned to a
+ * bucket by keeping its sign, its binary exponent and the leading {@code precisionBits} bits of its
+ * mantissa, so every power of two is split into {@code 2^precisionBits} buckets of equal width. A
+ * bucket is reported as its midpoint, which is within a relative error of {@code
+ * 2^-(precisionBits + 1)} of every value in the bucket.
+ */
+final class LogLinearHistogram {
+    static final int MAX_PRECISION_BITS = 52;
+
+    private LogLinearHistogram() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * @param relativeError the maximum relative error of a reported value
+     * @return the smallest number of mantissa bits that guarantees the relative error
+     */
+    static int precisionBitsFor(double relativeError) {
+        int precisionBits = 0;
+        while (precisionBits < MAX_PRECISION_BITS
+                && relativeErrorOf(precisionBits) > relativeError) {
+            precisionBits++;
+        }
+        return precisionBits;
+    }
+
+    /**
+     * @param precisionBits the number of mantissa bits that are kept
+     * @return the maximum relative error of a reported value
+     */
+    static double relativeErrorOf(int precisionBits) {
+        return Math.scalb(1.0, -(precisionBits + 1));
+    }
+
+    /**
+     * Map a value to the value reported for its bucket. Values that fall into the same bucket map
+     * to the same result, and the result maps to itself, so bucket values can be re-bucketed with
+     * fewer precision bits.
+     *
+     * @param value a finite value
+     * @param precisionBits the number of mantissa bits that are kept
+     * @return the midpoint of the bucket holding the value, or positive zero for either zero
+     */
+    static double bucketValue(double value, int precisionBits) {
+        if (value == 0) {
+            // -0.0 and 0.0 share a bucket, which is reported as 0.0
+            return 0.0;
+        }
+        if (precisionBits >= MAX_PRECISION_BITS) {
+            return value;
+        }
+        int shift = MAX_PRECISION_BITS - precisionBits;
+        long lowerBits = (Double.doubleToRawLongBits(value) >>> shift) << shift;
+        double lower = Double.longBitsToDouble(lowerBits);
+        double upper = Double.longBitsToDouble(lowerBits + (1L << shift));
+        if (Double.isInfinite(upper)) {
+            return lower;
+        }
+        return lower + (upper - lower) / 2;
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ *   Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package software.amazon.cloudwatchlogs.emf.model;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import software.amazon.cloudwatchlogs.emf.Constants;
+
+/**
+ * Splits the metrics of a context into the chunks of the log events it is serialized to, without
+ * copying any values. An event holds no more than {@link Constants#MAX_METRICS_PER_EVENT} metrics,
+ * each with no more than {@link Constants#MAX_DATAPOINTS_PER_METRIC} data points, and no metric
+ * twice, and its estimated size stays within the max event size unless a single metric alone
+ * exceeds it. The first event holds the first data points of the first metrics; data points beyond
+ * the limit of a metric follow in later events, after the first data points of all metrics.
+ *
+ * <p>Events after the first may hold only a subset of the properties, see {@link SplitStrategy},
+ * and their size is estimated accordingly.
+ *
+ * <p>A chunker is a cursor: {@link #next()} moves it to the next chunk, whose entries are then
+ * read by index. It is not thread-safe.
+ */
+final class MetricChunker {
+    private static final int MAX_METRICS = Constants.MAX_METRICS_PER_EVENT;
+    private static final int MAX_DATAPOINTS = Constants.MAX_DATAPOINTS_PER_METRIC;
+
+    private final int baseSize;
+    private final int laterBaseSize;
+    private final int maxEventSize;
+
+    /** The properties written to events after the first, or null to write all of them. */
+    private final Predicate<String> laterProperties;
+
+    /** The index of the current chunk, -1 before the first. */
+    private int index = -1;
+
+    /** Metrics with data points left for the current pass, compacted at the end of each pass. */
+    private final MetricDefinition[] pending;
+
+    private int pendingCount;
+    private int keptCount;
+    private int cursor;
+    private int pass;
+
+    private final MetricDefinition[] chunkMetrics = new MetricDefinition[MAX_METRICS];
+    private final int[] chunkFrom = new int[MAX_METRICS];
+    private final int[] chunkTo = new int[MAX_METRICS];
+    private final Map<String, Integer> chunkIndex = new HashMap<>();
+    private int chunkSize;
+
+    /**
+     * @param metrics the metrics to split
+     * @param baseSize the estimated size of an event without metrics, see {@link
+     *     EventSizeEstimator#estimateWithoutMetrics(RootNode)}
+     * @param maxEventSize the max estimated size of an event
+     */
+    MetricChunker(Collection<MetricDefinition> metrics, int baseSize, int maxEventSize) {
+        this(metrics, baseSize, baseSize, maxEventSize, null);
+    }
+
+    /**
+     * @param metrics the metrics to split
+     * @param baseSize the estimated size of the first event without metrics
+     * @param laterBaseSize the estimated size of later events without metrics, which hold only
+     *     the properties accepted by {@code laterProperties}
+     * @param maxEventSize the max estimated size of an event
+     * @param laterProperties the properties written to events after the first, or null to write
+     *     all of them
+     */
+    MetricChunker(
+            Collection<MetricDefinition> metrics,
+            int baseSize,
+            int laterBaseSize,
+            int maxEventSize,
+            Predicate<String> laterProperties) {
+        this.pending = metrics.toArray(new MetricDefinition[0]);
+        this.pendingCount = pending.length;
+        this.baseSize = baseSize;
+        this.laterBaseSize = laterBaseSize;
+        this.maxEventSize = maxEventSize;
+        this.laterProperties = laterProperties;
+    }
+
+    /** Copy the current chunk of another chunker. */
+    private MetricChunker(MetricChunker chunk) {
+        this.pending = new MetricDefinition[0];
+        this.baseSize = chunk.baseSize;
+        this.laterBaseSize = chunk.laterBaseSize;
+        this.maxEventSize = chunk.maxEventSize;
+        this.laterProperties = chunk.laterProperties;
+        this.index = chunk.index;
+        this.chunkSize = chunk.chunkSize;
+        System.arraycopy(chunk.chunkMetrics, 0, chunkMetrics, 0, chunkSize);
+        System.arraycopy(chunk.chunkFrom, 0, chunkFrom, 0, chunkSize);
+        System.arraycopy(chunk.chunkTo, 0, chunkTo, 0, chunkSize);
+        chunkIndex.putAll(chunk.chunkIndex);
+    }
+
+    /**
+     * @return a chunker fixed at the current chunk, which can be read while this one moves on,
+     *     e.g. to write the events of the chunks in parallel.
+     */
+    MetricChunker snapshot() {
+        return new MetricChunker(this);
+    }
+
+    /**
+     * Move to the next chunk.
+     *
+     * @return false if all data points have been visited
+     */
+    boolean next() {
+        chunkSize = 0;
+        chunkIndex.clear();
+        index++;
+        long eventSize = index == 0 ? baseSize : laterBaseSize;
+        while (pendingCount > 0) {
+            int from = pass * MAX_DATAPOINTS;
+            while (cursor < pendingCount) {
+                MetricDefinition metric = pending[cursor];
+                if (chunkSize == MAX_METRICS || chunkIndex.containsKey(metric.getName())) {
+                    return true;
+                }
+                int valueCount = metric.getValueCount();
+                int to = Math.min(valueCount, from + MAX_DATAPOINTS);
+                int size = EventSizeEstimator.estimateMetric(metric, from, to);
+                if (chunkSize > 0 && eventSize + size > maxEventSize) {
+                    return true;
+                }
+                eventSize += size;
+                chunkMetrics[chunkSize] = metric;
+                chunkFrom[chunkSize] = from;
+                chunkTo[chunkSize] = to;
+                chunkIndex.put(metric.getName(), chunkSize);
+                chunkSize++;
+                if (valueCount > to) {
+                    pending[keptCount++] = metric;
+                }
+                cursor++;
+            }
+            Arrays.fill(pending, keptCount, pendingCount, null);
+            pendingCount = keptCount;
+            keptCount = 0;
+            cursor = 0;
+            pass++;
+        }
+        return chunkSize > 0;
+    }
+
+    /** @return the number of metrics in the current chunk. */
+    int size() {
+        return chunkSize;
+    }
+
+    /** @return the metric at a position of the current chunk. */
+    MetricDefinition getMetric(int index) {
+        return chunkMetrics[index];
+    }
+
+    /** @return the first data point of the metric at a position of the current chunk. */
+    int getFrom(int index) {
+        return chunkFrom[index];
+    }
+
+    /** @return the index after the last data point of the metric at a position of the chunk. */
+    int getTo(int index) {
+        return chunkTo[index];
+    }
+
+    /** @return true if the current chunk holds a metric of that name. */
+    boolean contains(String name) {
+        return chunkIndex.containsKey(name);
+    }
+
+    /** @return the position of the metric of that name in the current chunk, or -1. */
+    int indexOf(String name) {
+        Integer position = chunkIndex.get(name);
+        return position == null ? -1 : position;
+    }
+
+    /** @return true if the event of the current chunk holds the property of that key. */
+    boolean includesProperty(String key) {
+        return index == 0 || laterProperties == null || laterProperties.test(key);
+    }
+
+    /** @return the metrics of the current chunk, as a view that changes with the chunk. */
+    List<MetricDefinition> getMetrics() {
+        return Arrays.asList(chunkMetrics).subList(0, chunkSize);
+    }
+}
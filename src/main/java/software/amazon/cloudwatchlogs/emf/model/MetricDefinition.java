@@ -21,21 +21,24 @@ import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
-import java.util.ArrayList;
+import java.util.AbstractList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
-import lombok.AllArgsConstructor;
+import java.util.Map;
 import lombok.Getter;
 import lombok.NonNull;
 import lombok.Setter;
+import software.amazon.cloudwatchlogs.emf.Constants;
 import software.amazon.cloudwatchlogs.emf.serializers.StorageResolutionFilter;
 import software.amazon.cloudwatchlogs.emf.serializers.StorageResolutionSerializer;
 import software.amazon.cloudwatchlogs.emf.serializers.UnitDeserializer;
 import software.amazon.cloudwatchlogs.emf.serializers.UnitSerializer;
 
 /** Represents the MetricDefinition of the EMF schema. */
-@AllArgsConstructor
 class MetricDefinition {
+    private static final int INITIAL_CAPACITY = 4;
+
     @NonNull
     @Getter
     @JsonProperty("Name")
@@ -57,10 +60,42 @@ class MetricDefinition {
     @JsonSerialize(using = StorageResolutionSerializer.class)
     public StorageResolution storageResolution;
 
-    @JsonIgnore @NonNull @Getter private List<Double> values;
+    /**
+     * Datapoints are kept in a growable primitive array rather than a {@code List<Double>} so that
+     * recording a value neither boxes it nor grows an {@code Object[]}. Only the first {@code
+     * valueCount} slots are in use. In {@link AggregationMode#VALUES_AND_COUNTS} mode the array
+     * holds distinct values and {@code counts} holds the number of occurrences of each. In {@link
+     * AggregationMode#HISTOGRAM} mode it holds one value per histogram bucket instead.
+     */
+    @JsonIgnore private double[] values;
+
+    @JsonIgnore private long[] counts;
+
+    @JsonIgnore private int valueCount;
+
+    /**
+     * Open-addressing index from a distinct value to its position in {@code values}, storing the
+     * position plus one so that zero marks an empty slot. Only used for counted values and built
+     * lazily on the first insert.
+     */
+    @JsonIgnore private int[] valueIndex;
+
+    /** Running statistics, only maintained in {@link AggregationMode#STATISTIC_SET} mode. */
+    @JsonIgnore private double min = Double.POSITIVE_INFINITY;
+
+    @JsonIgnore private double max = Double.NEGATIVE_INFINITY;
+
+    @JsonIgnore private double sum;
+
+    @JsonIgnore private long sampleCount;
+
+    /** Mantissa bits kept per bucket, only used in {@link AggregationMode#HISTOGRAM} mode. */
+    @JsonIgnore private int precisionBits;
+
+    @JsonIgnore @Getter private final AggregationMode aggregationMode;
 
     MetricDefinition(String name) {
-        this(name, Unit.NONE, StorageResolution.STANDARD, new ArrayList<>());
+        this(name, Unit.NONE, StorageResolution.STANDARD, new double[0], 0);
     }
 
     MetricDefinition(String name, double value) {
@@ -68,18 +103,485 @@ class MetricDefinition {
     }
 
     MetricDefinition(String name, Unit unit, double value) {
-        this(name, unit, StorageResolution.STANDARD, new ArrayList<>(Arrays.asList(value)));
+        this(name, unit, StorageResolution.STANDARD, value);
     }
 
     MetricDefinition(String name, StorageResolution storageResolution, double value) {
-        this(name, Unit.NONE, storageResolution, new ArrayList<>(Arrays.asList(value)));
+        this(name, Unit.NONE, storageResolution, value);
     }
 
     MetricDefinition(String name, Unit unit, StorageResolution storageResolution, double value) {
-        this(name, unit, storageResolution, new ArrayList<>(Arrays.asList(value)));
+        this(name, unit, storageResolution, new double[] {value}, 1);
+    }
+
+    MetricDefinition(
+            String name,
+            Unit unit,
+            StorageResolution storageResolution,
+            @NonNull List<Double> values) {
+        this(name, unit, storageResolution, toPrimitiveArray(values), values.size());
+    }
+
+    /**
+     * Create a metric definition that takes ownership of the given array.
+     *
+     * @param values the backing array, which must not be modified by the caller afterwards
+     * @param valueCount the number of leading slots of {@code values} that hold datapoints
+     */
+    MetricDefinition(
+            String name,
+            Unit unit,
+            StorageResolution storageResolution,
+            double[] values,
+            int valueCount) {
+        this(name, unit, storageResolution, AggregationMode.NONE, values, null, valueCount);
+    }
+
+    /**
+     * Create an empty metric definition that accumulates values according to the given mode.
+     *
+     * @param aggregationMode how recorded values are accumulated
+     */
+    MetricDefinition(
+            String name,
+            Unit unit,
+            StorageResolution storageResolution,
+            AggregationMode aggregationMode) {
+        this(
+                name,
+                unit,
+                storageResolution,
+                aggregationMode,
+                Constants.DEFAULT_HISTOGRAM_RELATIVE_ERROR);
+    }
+
+    /**
+     * Create an empty metric definition that accumulates values according to the given mode.
+     *
+     * @param aggregationMode how recorded values are accumulated
+     * @param histogramRelativeError the relative error of bucket values in histogram mode
+     */
+    MetricDefinition(
+            String name,
+            Unit unit,
+            StorageResolution storageResolution,
+            @NonNull AggregationMode aggregationMode,
+            double histogramRelativeError) {
+        this(
+                name,
+                unit,
+                storageResolution,
+                aggregationMode,
+                new double[0],
+                aggregationMode == AggregationMode.VALUES_AND_COUNTS
+                                || aggregationMode == AggregationMode.HISTOGRAM
+                        ? new long[0]
+                        : null,
+                0);
+        this.precisionBits = LogLinearHistogram.precisionBitsFor(histogramRelativeError);
+    }
+
+    private MetricDefinition(
+            @NonNull String name,
+            Unit unit,
+            StorageResolution storageResolution,
+            AggregationMode aggregationMode,
+            @NonNull double[] values,
+            long[] counts,
+            int valueCount) {
+        this.name = name;
+        this.unit = unit;
+        this.storageResolution = storageResolution;
+        this.aggregationMode = aggregationMode;
+        this.values = values;
+        this.counts = counts;
+        this.valueCount = valueCount;
     }
 
     void addValue(double value) {
-        values.add(value);
+        addValue(value, 1);
+    }
+
+    private void addValue(double value, long count) {
+        switch (aggregationMode) {
+            case STATISTIC_SET:
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+                sum += value * count;
+                sampleCount += count;
+                return;
+            case HISTOGRAM:
+                addCountedValue(LogLinearHistogram.bucketValue(value, precisionBits), count);
+                while (valueCount > Constants.MAX_HISTOGRAM_BUCKETS && precisionBits > 0) {
+                    coarsenHistogram();
+                }
+                if (valueCount > Constants.MAX_HISTOGRAM_BUCKETS) {
+                    mergeLowestBuckets();
+                }
+                return;
+            case VALUES_AND_COUNTS:
+                addCountedValue(value, count);
+                return;
+            default:
+                for (long i = 0; i < count; i++) {
+                    ensureCapacity();
+                    values[valueCount++] = value;
+                }
+        }
+    }
+
+    /**
+     * Merge the values of another definition of the same metric into this one. If the other
+     * definition keeps less detail, e.g. a statistic set merged into a list of values, the result
+     * is a new definition in the other definition's mode so that no datapoints are lost. The values
+     * of the other definition follow those of this one.
+     *
+     * @param other a definition of the same metric that is no longer written to
+     * @return the definition holding the values of both, which is either this or a new definition
+     */
+    MetricDefinition merge(MetricDefinition other) {
+        AggregationMode mode =
+                detailOf(other.aggregationMode) < detailOf(aggregationMode)
+                        ? other.aggregationMode
+                        : aggregationMode;
+        MetricDefinition target = this;
+        if (mode != aggregationMode) {
+            target = new MetricDefinition(name, unit, storageResolution, mode);
+            target.precisionBits = other.precisionBits;
+            target.addAll(this);
+        }
+        target.addAll(other);
+        return target;
+    }
+
+    /**
+     * Rank the modes by how much detail they keep. Merging definitions of different modes keeps
+     * the mode with the least detail, since the values of a less detailed mode cannot be turned
+     * back into the individual datapoints of a more detailed one.
+     */
+    private static int detailOf(AggregationMode mode) {
+        switch (mode) {
+            case STATISTIC_SET:
+                return 0;
+            case HISTOGRAM:
+                return 1;
+            case VALUES_AND_COUNTS:
+                return 2;
+            default:
+                return 3;
+        }
+    }
+
+    private void addAll(MetricDefinition source) {
+        if (source.aggregationMode == AggregationMode.STATISTIC_SET) {
+            if (source.sampleCount > 0) {
+                min = Math.min(min, source.min);
+                max = Math.max(max, source.max);
+                sum += source.sum;
+                sampleCount += source.sampleCount;
+            }
+            return;
+        }
+        for (int i = 0; i < source.valueCount; i++) {
+            addValue(source.values[i], source.counts == null ? 1 : source.counts[i]);
+        }
+    }
+
+    private void addCountedValue(double value, long count) {
+        if (valueIndex == null) {
+            rebuildIndex(indexCapacityFor(valueCount + 1));
+        }
+
+        int mask = valueIndex.length - 1;
+        int slot = hash(value) & mask;
+        while (valueIndex[slot] != 0) {
+            int position = valueIndex[slot] - 1;
+            if (values[position] == value) {
+                counts[position] += count;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        ensureCapacity();
+        values[valueCount] = value;
+        counts[valueCount] = count;
+        valueIndex[slot] = ++valueCount;
+
+        if (valueCount << 1 > valueIndex.length) {
+            rebuildIndex(valueIndex.length << 1);
+        }
+    }
+
+    /**
+     * Halve the number of buckets per power of two by dropping one precision bit, merging the
+     * counts of buckets that now share a bucket. This keeps the number of buckets bounded at the
+     * cost of doubling the relative error.
+     */
+    private void coarsenHistogram() {
+        precisionBits--;
+        double[] bucketValues = values;
+        long[] bucketCounts = counts;
+        int buckets = valueCount;
+
+        values = new double[bucketValues.length];
+        counts = new long[bucketCounts.length];
+        valueCount = 0;
+        valueIndex = null;
+        for (int i = 0; i < buckets; i++) {
+            double bucketValue = LogLinearHistogram.bucketValue(bucketValues[i], precisionBits);
+            addCountedValue(bucketValue, bucketCounts[i]);
+        }
+    }
+
+    /**
+     * Merge the lowest bucket into the next lowest one. With no precision bits left a bucket spans
+     * a whole power of two, so values spread over more than {@link
+     * Constants#MAX_HISTOGRAM_BUCKETS} binary exponents still need more buckets than allowed. The
+     * lowest values then give up their detail first.
+     */
+    private void mergeLowestBuckets() {
+        int lowest = 0;
+        int next = -1;
+        for (int i = 1; i < valueCount; i++) {
+            if (values[i] < values[lowest]) {
+                next = lowest;
+                lowest = i;
+            } else if (next < 0 || values[i] < values[next]) {
+                next = i;
+            }
+        }
+        counts[next] += counts[lowest];
+        int moved = valueCount - lowest - 1;
+        System.arraycopy(values, lowest + 1, values, lowest, moved);
+        System.arraycopy(counts, lowest + 1, counts, lowest, moved);
+        valueCount--;
+        rebuildIndex(valueIndex.length);
+    }
+
+    private void ensureCapacity() {
+        if (valueCount == values.length) {
+            int capacity = Math.max(INITIAL_CAPACITY, valueCount << 1);
+            values = Arrays.copyOf(values, capacity);
+            if (counts != null) {
+                counts = Arrays.copyOf(counts, capacity);
+            }
+        }
+    }
+
+    private void rebuildIndex(int capacity) {
+        valueIndex = new int[capacity];
+        int mask = capacity - 1;
+        for (int position = 0; position < valueCount; position++) {
+            int slot = hash(values[position]) & mask;
+            while (valueIndex[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            valueIndex[slot] = position + 1;
+        }
+    }
+
+    private static int indexCapacityFor(int entries) {
+        int capacity = INITIAL_CAPACITY << 1;
+        while (capacity < entries << 1) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private static int hash(double value) {
+        // 0.0 and -0.0 compare equal, so they must land in the same slot
+        long bits = value == 0 ? 0L : Double.doubleToLongBits(value);
+        int h = (int) (bits ^ (bits >>> 32)) * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * @return the number of entries that will be emitted for this metric. This is the number of
+     *     datapoints, the number of distinct values when values are counted, or one for a
+     *     non-empty statistic set.
+     */
+    int getValueCount() {
+        if (aggregationMode == AggregationMode.STATISTIC_SET) {
+            return sampleCount == 0 ? 0 : 1;
+        }
+        return valueCount;
+    }
+
+    /** @return the number of datapoints recorded for this metric. */
+    long getSampleCount() {
+        switch (aggregationMode) {
+            case STATISTIC_SET:
+                return sampleCount;
+            case VALUES_AND_COUNTS:
+            case HISTOGRAM:
+                long total = 0;
+                for (int i = 0; i < valueCount; i++) {
+                    total += counts[i];
+                }
+                return total;
+            default:
+                return valueCount;
+        }
+    }
+
+    /** @return the smallest recorded value of a statistic set. */
+    double getMin() {
+        return min;
+    }
+
+    /** @return the largest recorded value of a statistic set. */
+    double getMax() {
+        return max;
+    }
+
+    /** @return the maximum relative error of the bucket values of a histogram. */
+    double getHistogramRelativeError() {
+        return LogLinearHistogram.relativeErrorOf(precisionBits);
+    }
+
+    /** @return the sum of all recorded values of a statistic set. */
+    double getSum() {
+        return sum;
+    }
+
+    /**
+     * @param index the position of the entry, in insertion order
+     * @return the value at the given position
+     */
+    double getValue(int index) {
+        checkIndex(index);
+        return values[index];
+    }
+
+    /**
+     * @param index the position of the entry, in insertion order
+     * @return how many times the value at the given position was recorded
+     */
+    long getCount(int index) {
+        checkIndex(index);
+        return counts == null ? 1 : counts[index];
+    }
+
+    /** @return true if this metric is emitted in the {@code Values}/{@code Counts} form. */
+    boolean hasCounts() {
+        return counts != null;
+    }
+
+    /** @return a copy of all values, sized exactly to the number of entries. */
+    double[] getValueArray() {
+        return Arrays.copyOf(values, valueCount);
+    }
+
+    /** @return a copy of all counts, or null if values are not counted. */
+    long[] getCountArray() {
+        return counts == null ? null : Arrays.copyOf(counts, valueCount);
+    }
+
+    /**
+     * Return the object that is written to the target member of this metric on the root node: a
+     * single number, an array of numbers, a {@code Values}/{@code Counts} object or a statistic
+     * set.
+     *
+     * @return the serializable value of this metric
+     */
+    Object getTargetMemberValue() {
+        if (aggregationMode == AggregationMode.STATISTIC_SET) {
+            Map<String, Object> statisticSet = new LinkedHashMap<>();
+            statisticSet.put("Max", max);
+            statisticSet.put("Min", min);
+            statisticSet.put("SampleCount", sampleCount);
+            statisticSet.put("Sum", sum);
+            return statisticSet;
+        }
+        if (counts != null) {
+            Map<String, Object> valuesAndCounts = new LinkedHashMap<>();
+            valuesAndCounts.put("Values", getValueArray());
+            valuesAndCounts.put("Counts", getCountArray());
+            return valuesAndCounts;
+        }
+        return valueCount == 1 ? values[0] : getValues();
+    }
+
+    /**
+     * Create a metric definition with the same name, unit, resolution and mode that holds a copy of
+     * the entries in {@code [from, to)}.
+     *
+     * @param from the first entry to include
+     * @param to the index after the last entry to include
+     * @return a new metric definition holding the range of entries
+     */
+    MetricDefinition slice(int from, int to) {
+        int size = getValueCount();
+        if (from < 0 || to > size || from > to) {
+            throw new IndexOutOfBoundsException(
+                    "from: " + from + ", to: " + to + ", Size: " + size);
+        }
+        if (aggregationMode == AggregationMode.STATISTIC_SET) {
+            MetricDefinition copy =
+                    new MetricDefinition(name, unit, storageResolution, aggregationMode);
+            if (from < to) {
+                copy.min = min;
+                copy.max = max;
+                copy.sum = sum;
+                copy.sampleCount = sampleCount;
+            }
+            return copy;
+        }
+        MetricDefinition slice =
+                new MetricDefinition(
+                        name,
+                        unit,
+                        storageResolution,
+                        aggregationMode,
+                        Arrays.copyOfRange(values, from, to),
+                        counts == null ? null : Arrays.copyOfRange(counts, from, to),
+                        to - from);
+        slice.precisionBits = precisionBits;
+        return slice;
+    }
+
+    /**
+     * Return a boxed view of the individually stored values, which is empty for a statistic set.
+     * The view reads through to the primitive storage, so it should only be used where boxing is
+     * acceptable, e.g. in tests or diagnostics.
+     *
+     * @return a list view backed by this metric definition
+     */
+    List<Double> getValues() {
+        return new AbstractList<Double>() {
+            @Override
+            public Double get(int index) {
+                return getValue(index);
+            }
+
+            @Override
+            public Double set(int index, Double element) {
+                double previous = getValue(index);
+                values[index] = element;
+                valueIndex = null;
+                return previous;
+            }
+
+            @Override
+            public int size() {
+                return valueCount;
+            }
+        };
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= valueCount) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + valueCount);
+        }
+    }
+
+    private static double[] toPrimitiveArray(List<Double> values) {
+        double[] array = new double[values.size()];
+        int i = 0;
+        for (Double value : values) {
+            array[i++] = value;
+        }
+        return array;
     }
 }
@@ -20,50 +20,143 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 import lombok.*;
+import software.amazon.cloudwatchlogs.emf.Constants;
 import software.amazon.cloudwatchlogs.emf.exception.DimensionSetExceededException;
 
 /** Represents the MetricDirective part of the EMF schema. */
 @AllArgsConstructor
 class MetricDirective {
+    private static final int STRIPE_COUNT =
+            Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 4 - 1)
+                    << 1;
+
+    /**
+     * Assigns each thread a stripe. A thread that finds its stripe locked by another thread moves
+     * to another stripe, so threads that collide once don't keep colliding.
+     */
+    private static final ThreadLocal<int[]> PROBE =
+            ThreadLocal.withInitial(() -> new int[] {initialProbe()});
+
     @Setter
     @Getter
     @JsonProperty("Namespace")
     private String namespace;
 
-    @JsonIgnore @Setter @Getter @With private Map<String, MetricDefinition> metrics;
+    @JsonIgnore @Setter @With private Map<String, MetricDefinition> metrics;
 
-    @JsonIgnore
-    @Getter(AccessLevel.PROTECTED)
-    private List<DimensionSet> dimensions;
+    /**
+     * Per-thread write buffers for metrics, or null until the first write. Writers only lock the
+     * stripe they are assigned, so threads putting the same hot metric don't serialize on one map
+     * bin. Buffered values only reach {@code metrics} when they are merged by {@link
+     * #mergeWrites()}.
+     */
+    private volatile Stripe[] stripes;
+
+    /**
+     * Stripes released by a merged directive, shared with the copies of the directive. A logger
+     * thereby reuses the same stripes across flushes instead of allocating them for every context.
+     */
+    private AtomicReference<Stripe[]> spareStripes;
+
+    /**
+     * Custom dimension sets in insertion order, indexed by their dimension names. The sets are
+     * frozen, so their names can't change after they are indexed. Compound operations synchronize
+     * on the map.
+     */
+    @JsonIgnore private Map<DimensionKeys, DimensionSet> dimensions;
 
     @JsonIgnore
-    @Setter
     @Getter(AccessLevel.PROTECTED)
     private DimensionSet defaultDimensions;
 
+    /**
+     * Incremented whenever the custom or default dimension sets are replaced or added, so the
+     * memoized merged dimensions can be invalidated.
+     */
+    private final AtomicInteger dimensionsVersion = new AtomicInteger();
+
+    /** The result of the last {@link #getAllDimensions()}, or null if it must be recomputed. */
+    private volatile MergedDimensions mergedDimensions;
+
+    /**
+     * The rendered JSON of this directive from the last serialization, carried over to copies so a
+     * logger renders its directive only when the directive changes.
+     */
+    @JsonIgnore
+    @Getter(AccessLevel.PACKAGE)
+    @Setter(AccessLevel.PACKAGE)
+    private volatile DirectiveTemplate template;
+
     private boolean shouldUseDefaultDimension;
 
+    @JsonIgnore
+    @Setter(AccessLevel.PACKAGE)
+    @Getter(AccessLevel.PACKAGE)
+    @NonNull
+    private AggregationMode aggregationMode = AggregationMode.NONE;
+
+    @JsonIgnore
+    @Setter(AccessLevel.PACKAGE)
+    @Getter(AccessLevel.PACKAGE)
+    private double histogramRelativeError = Constants.DEFAULT_HISTOGRAM_RELATIVE_ERROR;
+
     MetricDirective() {
         namespace = "aws-embedded-metrics";
         metrics = new ConcurrentHashMap<>();
-        dimensions = Collections.synchronizedList(new ArrayList<>());
+        dimensions = Collections.synchronizedMap(new LinkedHashMap<>());
         defaultDimensions = new DimensionSet();
         shouldUseDefaultDimension = true;
+        spareStripes = new AtomicReference<>();
     }
 
     /**
-     * Adds a dimension set to the end of the collection.
+     * Adds a dimension set to the end of the collection. A mutable set is added as a frozen copy,
+     * so changing it afterwards does not change the dimensions of this directive.
      *
      * @param dimensionSet
      */
     void putDimensionSet(DimensionSet dimensionSet) {
+        putDimensionSet(dimensions, dimensionSet);
+        dimensionsVersion.incrementAndGet();
+    }
+
+    private static void putDimensionSet(
+            Map<DimensionKeys, DimensionSet> dimensions, DimensionSet dimensionSet) {
         // Duplicate dimensions sets are removed before being added to the end of the collection.
         // This ensures only latest dimension value is used as a target member on the root EMF node.
-        // This operation is O(n^2), but acceptable given sets are capped at 30 dimensions
-        dimensions.removeIf(dim -> dim.getDimensionKeys().equals(dimensionSet.getDimensionKeys()));
-        dimensions.add(dimensionSet);
+        DimensionSet frozen = dimensionSet.freeze();
+        DimensionKeys keys = frozen.getKeys();
+        synchronized (dimensions) {
+            dimensions.remove(keys);
+            dimensions.put(keys, frozen);
+        }
+    }
+
+    void setDefaultDimensions(DimensionSet defaultDimensions) {
+        this.defaultDimensions = defaultDimensions;
+        dimensionsVersion.incrementAndGet();
+    }
+
+    /** @return a snapshot of the custom dimension sets. */
+    private List<DimensionSet> getCustomDimensions() {
+        Map<DimensionKeys, DimensionSet> current = dimensions;
+        synchronized (current) {
+            return new ArrayList<>(current.values());
+        }
+    }
+
+    private static Map<DimensionKeys, DimensionSet> indexDimensions(
+            List<DimensionSet> dimensionSets) {
+        Map<DimensionKeys, DimensionSet> index = Collections.synchronizedMap(new LinkedHashMap<>());
+        for (DimensionSet dimensionSet : dimensionSets) {
+            putDimensionSet(index, dimensionSet);
+        }
+        return index;
     }
 
     // Helper method for testing putMetric()
@@ -82,20 +175,192 @@ class MetricDirective {
     }
 
     void putMetric(String key, double value, Unit unit, StorageResolution storageResolution) {
-        metrics.compute(
-                key,
-                (k, v) -> {
-                    if (v == null) return new MetricDefinition(key, unit, storageResolution, value);
-                    else {
-                        v.addValue(value);
-                        return v;
+        putMetric(key, value, unit, storageResolution, aggregationMode);
+    }
+
+    /**
+     * Record a value for a metric. The aggregation mode is only used when the metric does not
+     * exist yet; an existing metric keeps the mode it was created with. If threads create the same
+     * metric with different modes, the values are merged into the least detailed of them.
+     */
+    void putMetric(
+            String key,
+            double value,
+            Unit unit,
+            StorageResolution storageResolution,
+            AggregationMode aggregationMode) {
+        Stripe stripe = lockStripe();
+        try {
+            MetricDefinition metric = stripe.metrics.get(key);
+            if (metric == null) {
+                metric =
+                        new MetricDefinition(
+                                key,
+                                unit,
+                                storageResolution,
+                                aggregationMode,
+                                histogramRelativeError);
+                stripe.metrics.put(key, metric);
+            }
+            metric.addValue(value);
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    /**
+     * Record a value for the metric of a handle, if this thread already has a buffer for it.
+     *
+     * @return false if nothing was recorded because the metric has no buffer in this thread yet
+     */
+    boolean putMetric(MetricHandle handle, double value) {
+        Stripe stripe = lockStripe();
+        try {
+            MetricDefinition metric = stripe.get(handle);
+            if (metric == null) {
+                return false;
+            }
+            metric.addValue(value);
+            return true;
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    /** Record a value for the metric of a handle, creating the buffer of this thread if needed. */
+    void putNewMetric(MetricHandle handle, double value) {
+        Stripe stripe = lockStripe();
+        try {
+            MetricDefinition metric = stripe.get(handle);
+            if (metric == null) {
+                AggregationMode mode = handle.getAggregationMode();
+                metric =
+                        new MetricDefinition(
+                                handle.getName(),
+                                handle.getUnit(),
+                                handle.getStorageResolution(),
+                                mode != null ? mode : aggregationMode,
+                                histogramRelativeError);
+                stripe.metrics.put(handle.getName(), metric);
+                stripe.index(handle, metric);
+            }
+            metric.addValue(value);
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    /**
+     * Lock the stripe of the current thread. If the stripe is held by another thread, the thread
+     * is assigned another stripe and waits for that one instead.
+     */
+    private Stripe lockStripe() {
+        int[] probe = PROBE.get();
+        while (true) {
+            Stripe[] current = stripes();
+            Stripe stripe = current[probe[0] & (STRIPE_COUNT - 1)];
+            if (!stripe.tryLock()) {
+                probe[0] = nextProbe(probe[0]);
+                stripe = current[probe[0] & (STRIPE_COUNT - 1)];
+                stripe.lock();
+            }
+            if (stripe.owner == this) {
+                return stripe;
+            }
+            // The stripes were merged while this thread was locking, or belong to the directive
+            // this one was copied from
+            stripe.unlock();
+            synchronized (this) {
+                if (stripes == current) {
+                    stripes = null;
+                }
+            }
+        }
+    }
+
+    private Stripe[] stripes() {
+        Stripe[] current = stripes;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (stripes == null) {
+                Stripe[] taken = spareStripes.getAndSet(null);
+                if (taken == null) {
+                    taken = new Stripe[STRIPE_COUNT];
+                    for (int i = 0; i < STRIPE_COUNT; i++) {
+                        taken[i] = new Stripe();
                     }
-                });
+                }
+                for (Stripe stripe : taken) {
+                    stripe.owner = this;
+                }
+                stripes = taken;
+            }
+            return stripes;
+        }
+    }
+
+    private static int initialProbe() {
+        long id = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+        int probe = (int) (id ^ (id >>> 32));
+        return probe != 0 ? probe : 1;
+    }
+
+    private static int nextProbe(int probe) {
+        probe ^= probe << 13;
+        probe ^= probe >>> 17;
+        probe ^= probe << 5;
+        return probe;
+    }
+
+    /**
+     * Move the values buffered by writing threads into the metrics of this directive, appending
+     * the values of each stripe in stripe order. This is a step of serialization and is not done by
+     * any getter, so reads of the metrics never change them. It is meant to run once the writers of
+     * the directive are done, e.g. when a logger serializes the context it swapped out. Values
+     * written while it runs are merged by the next call.
+     */
+    void mergeWrites() {
+        Stripe[] current;
+        synchronized (this) {
+            current = stripes;
+            stripes = null;
+        }
+        if (current == null) {
+            return;
+        }
+        for (Stripe stripe : current) {
+            stripe.lock();
+            try {
+                stripe.owner = null;
+                for (MetricDefinition metric : stripe.metrics.values()) {
+                    metrics.merge(metric.getName(), metric, MetricDefinition::merge);
+                }
+                stripe.metrics.clear();
+                if (stripe.handleMetricCount > 0) {
+                    // The indexed metrics are also in the map, so they are merged already
+                    Arrays.fill(stripe.handleMetrics, null);
+                    stripe.handleMetricCount = 0;
+                }
+            } finally {
+                stripe.unlock();
+            }
+        }
+        spareStripes.set(current);
+    }
+
+    /**
+     * @return the metrics of this directive. Values still buffered by writing threads are not
+     *     included until they are merged by {@link #mergeWrites()}.
+     */
+    Map<String, MetricDefinition> getMetrics() {
+        return metrics;
     }
 
     @JsonProperty("Metrics")
     Collection<MetricDefinition> getAllMetrics() {
-        return metrics.values();
+        return getMetrics().values();
     }
 
     @JsonProperty("Dimensions")
@@ -112,7 +377,8 @@ class MetricDirective {
      */
     void setDimensions(List<DimensionSet> dimensionSets) {
         shouldUseDefaultDimension = false;
-        dimensions = Collections.synchronizedList(new ArrayList<>(dimensionSets));
+        dimensions = indexDimensions(dimensionSets);
+        dimensionsVersion.incrementAndGet();
     }
 
     /**
@@ -123,7 +389,8 @@ class MetricDirective {
      */
     void setDimensions(boolean useDefault, List<DimensionSet> dimensionSets) {
         shouldUseDefaultDimension = useDefault;
-        dimensions = Collections.synchronizedList(new ArrayList<>(dimensionSets));
+        dimensions = indexDimensions(dimensionSets);
+        dimensionsVersion.incrementAndGet();
     }
 
     /**
@@ -133,27 +400,38 @@ class MetricDirective {
      */
     void resetDimensions(boolean useDefault) {
         shouldUseDefaultDimension = useDefault;
-        dimensions = Collections.synchronizedList(new ArrayList<>());
+        dimensions = Collections.synchronizedMap(new LinkedHashMap<>());
+        dimensionsVersion.incrementAndGet();
     }
 
     /**
      * Return all the dimension sets. If there's a default dimension set, the custom dimensions are
-     * prepended with the default dimensions.
+     * prepended with the default dimensions. The merged sets are memoized until the dimensions
+     * change, and the returned list must not be modified.
      */
     List<DimensionSet> getAllDimensions() throws DimensionSetExceededException {
-        if (!shouldUseDefaultDimension) {
-            return dimensions;
-        }
-
-        if (dimensions.isEmpty()) {
-            return Arrays.asList(defaultDimensions);
+        MergedDimensions merged = mergedDimensions;
+        int version = dimensionsVersion.get();
+        if (merged != null && merged.isValid(version, defaultDimensions)) {
+            return merged.dimensions;
         }
 
-        List<DimensionSet> allDimensions = new ArrayList<>();
-        for (DimensionSet dim : dimensions) {
-            allDimensions.add(defaultDimensions.add(dim));
+        DimensionSet defaults = defaultDimensions;
+        List<DimensionSet> customDimensions = getCustomDimensions();
+        List<DimensionSet> allDimensions;
+        if (!shouldUseDefaultDimension) {
+            allDimensions = customDimensions;
+        } else if (customDimensions.isEmpty()) {
+            allDimensions = Collections.singletonList(defaults);
+        } else {
+            allDimensions = new ArrayList<>(customDimensions.size());
+            for (DimensionSet dim : customDimensions) {
+                allDimensions.add(defaults.add(dim).freeze());
+            }
         }
 
+        allDimensions = Collections.unmodifiableList(allDimensions);
+        mergedDimensions = new MergedDimensions(version, defaults, allDimensions);
         return allDimensions;
     }
 
@@ -163,7 +441,7 @@ class MetricDirective {
      * @return true if no metrics have been added, otherwise, false
      */
     boolean hasNoMetrics() {
-        return this.getMetrics().isEmpty();
+        return metrics.isEmpty();
     }
 
     /**
@@ -177,11 +455,101 @@ class MetricDirective {
         metricDirective.setDefaultDimensions(this.defaultDimensions);
         metricDirective.setNamespace(this.namespace);
         metricDirective.shouldUseDefaultDimension = this.shouldUseDefaultDimension;
+        metricDirective.aggregationMode = this.aggregationMode;
+        metricDirective.histogramRelativeError = this.histogramRelativeError;
+        metricDirective.template = this.template;
+        metricDirective.spareStripes = this.spareStripes;
 
         if (preserveDimensions) {
-            this.dimensions.forEach(metricDirective::putDimensionSet);
+            Map<DimensionKeys, DimensionSet> current = this.dimensions;
+            synchronized (current) {
+                metricDirective.dimensions.putAll(current);
+            }
         }
 
         return metricDirective;
     }
+
+    /** Merged dimension sets, with what they were computed from. */
+    private static final class MergedDimensions {
+        private final int version;
+        private final DimensionSet defaults;
+        private final int defaultsModificationCount;
+        private final List<DimensionSet> dimensions;
+
+        private MergedDimensions(
+                int version, DimensionSet defaults, List<DimensionSet> dimensions) {
+            this.version = version;
+            this.defaults = defaults;
+            this.defaultsModificationCount = defaults.getModificationCount();
+            this.dimensions = dimensions;
+        }
+
+        /**
+         * Custom sets are frozen, but the default set can still change, so its modification count
+         * is compared.
+         */
+        private boolean isValid(int currentVersion, DimensionSet currentDefaults) {
+            return version == currentVersion
+                    && defaults == currentDefaults
+                    && defaultsModificationCount == defaults.getModificationCount();
+        }
+    }
+
+    /** A write buffer, locked by the thread writing to it. */
+    private static final class Stripe extends ReentrantLock {
+        private static final MetricDefinition[] NO_METRICS = new MetricDefinition[0];
+
+        /** The directive this stripe buffers writes for, or null once it has been merged. */
+        private MetricDirective owner;
+
+        /** All metrics of the stripe by name, including those recorded through handles. */
+        private final Map<String, MetricDefinition> metrics = new HashMap<>();
+        /**
+         * The metrics of {@link #metrics} recorded through an indexed {@link MetricHandle}, by the
+         * id of the handle. The array only grows up to {@link MetricHandle#MAX_INDEXED_HANDLES}
+         * and is cleared in place when the stripe is merged.
+         */
+        private MetricDefinition[] handleMetrics = NO_METRICS;
+
+        private int handleMetricCount;
+
+        /**
+         * @return the buffer of the metric of a handle, or null if there is none yet or the metric
+         *     was put by name with another resolution, which must be rejected by validation
+         */
+        private MetricDefinition get(MetricHandle handle) {
+            int id = handle.getId();
+            if (id != MetricHandle.NOT_INDEXED && id < handleMetrics.length) {
+                MetricDefinition metric = handleMetrics[id];
+                if (metric != null) {
+                    return metric;
+                }
+            }
+            MetricDefinition metric = metrics.get(handle.getName());
+            if (metric == null
+                    || metric.getStorageResolution() != handle.getStorageResolution()) {
+                return null;
+            }
+            index(handle, metric);
+            return metric;
+        }
+
+        private void index(MetricHandle handle, MetricDefinition metric) {
+            int id = handle.getId();
+            if (id == MetricHandle.NOT_INDEXED) {
+                return;
+            }
+            if (id >= handleMetrics.length) {
+                handleMetrics =
+                        Arrays.copyOf(
+                                handleMetrics,
+                                Math.min(
+                                        MetricHandle.MAX_INDEXED_HANDLES,
+                                        Math.max(id + 1, handleMetrics.length * 2)));
+            }
+            handleMetrics[id] = metric;
+            handleMetricCount++;
+        }
+    }
 }
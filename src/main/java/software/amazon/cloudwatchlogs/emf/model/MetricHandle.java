@@ -0,0 +1,140 @@
+/*
+ *   Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package software.amazon.cloudwatchlogs.emf.model;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.AccessLevel;
+import lombok.Getter;
+import software.amazon.cloudwatchlogs.emf.exception.InvalidMetricException;
+import software.amazon.cloudwatchlogs.emf.util.Validator;
+
+/**
+ * A pre-registered metric. The name, unit and storage resolution are validated once when the
+ * handle is created, and values recorded through the handle go straight to the metric without
+ * validating or looking up the name again. Handles are meant to be created once, e.g. as constants,
+ * and can be shared between loggers and threads.
+ *
+ * <pre>{@code
+ * static final MetricHandle LATENCY = MetricHandle.of("Latency", Unit.MILLISECONDS);
+ * ...
+ * metricsLogger.putMetric(LATENCY, 100);
+ * }</pre>
+ *
+ * <p>The first {@value #MAX_INDEXED_HANDLES} handles created in a process find their metric by
+ * index. Ids are never reused, so creating handles per request instead of once exhausts them; later
+ * handles still skip validation but find their metric by name.
+ */
+public final class MetricHandle {
+    /** The max number of handles that find their metric by index, bounding the buffers by id. */
+    static final int MAX_INDEXED_HANDLES = 256;
+
+    /** The id of handles that find their metric by name. */
+    static final int NOT_INDEXED = -1;
+
+    private static final AtomicInteger NEXT_ID = new AtomicInteger();
+
+    /**
+     * Index of the metric of this handle in the per-thread metric buffers, or {@link #NOT_INDEXED}.
+     */
+    @Getter(AccessLevel.PACKAGE)
+    private final int id;
+
+    @Getter private final String name;
+    @Getter private final Unit unit;
+    @Getter private final StorageResolution storageResolution;
+
+    /**
+     * The aggregation mode of the metric, or null to use the mode of the context the metric is
+     * first recorded in.
+     */
+    @Getter private final AggregationMode aggregationMode;
+
+    private MetricHandle(
+            String name,
+            Unit unit,
+            StorageResolution storageResolution,
+            AggregationMode aggregationMode) {
+        int next = NEXT_ID.getAndUpdate(i -> i < MAX_INDEXED_HANDLES ? i + 1 : i);
+        this.id = next < MAX_INDEXED_HANDLES ? next : NOT_INDEXED;
+        this.name = name;
+        this.unit = unit;
+        this.storageResolution = storageResolution;
+        this.aggregationMode = aggregationMode;
+    }
+
+    /**
+     * Register a metric without a unit and with standard resolution.
+     *
+     * @param name Name of the metric
+     * @return the handle of the metric
+     * @throws InvalidMetricException if the metric is invalid
+     */
+    public static MetricHandle of(String name) throws InvalidMetricException {
+        return of(name, Unit.NONE, StorageResolution.STANDARD);
+    }
+
+    /**
+     * Register a metric with standard resolution.
+     *
+     * @param name Name of the metric
+     * @param unit The unit of the metric
+     * @return the handle of the metric
+     * @throws InvalidMetricException if the metric is invalid
+     */
+    public static MetricHandle of(String name, Unit unit) throws InvalidMetricException {
+        return of(name, unit, StorageResolution.STANDARD);
+    }
+
+    /**
+     * Register a metric.
+     *
+     * @param name Name of the metric
+     * @param unit The unit of the metric
+     * @param storageResolution The resolution of the metric
+     * @return the handle of the metric
+     * @throws InvalidMetricException if the metric is invalid
+     */
+    public static MetricHandle of(String name, Unit unit, StorageResolution storageResolution)
+            throws InvalidMetricException {
+        Validator.validateMetric(name, 0, unit, storageResolution, Collections.emptyMap());
+        return new MetricHandle(name, unit, storageResolution, null);
+    }
+
+    /**
+     * Register a metric with its own aggregation mode.
+     *
+     * @param name Name of the metric
+     * @param unit The unit of the metric
+     * @param storageResolution The resolution of the metric
+     * @param aggregationMode How values of the metric are accumulated
+     * @return the handle of the metric
+     * @throws InvalidMetricException if the metric is invalid
+     */
+    public static MetricHandle of(
+            String name,
+            Unit unit,
+            StorageResolution storageResolution,
+            AggregationMode aggregationMode)
+            throws InvalidMetricException {
+        Validator.validateMetric(name, 0, unit, storageResolution, Collections.emptyMap());
+        if (aggregationMode == null) {
+            throw new InvalidMetricException("Metric aggregation mode cannot be null");
+        }
+        return new MetricHandle(name, unit, storageResolution, aggregationMode);
+    }
+}
@@ -17,17 +17,25 @@
 package software.amazon.cloudwatchlogs.emf.model;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Queue;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import lombok.AccessLevel;
 import lombok.Getter;
+import lombok.NonNull;
 import software.amazon.cloudwatchlogs.emf.Constants;
+import software.amazon.cloudwatchlogs.emf.config.Configuration;
+import software.amazon.cloudwatchlogs.emf.config.EnvironmentConfigurationProvider;
 import software.amazon.cloudwatchlogs.emf.exception.DimensionSetExceededException;
 import software.amazon.cloudwatchlogs.emf.exception.InvalidDimensionException;
 import software.amazon.cloudwatchlogs.emf.exception.InvalidMetricException;
@@ -41,6 +49,34 @@ public class MetricsContext {
     @Getter private final RootNode rootNode;
 
     private MetricDirective metricDirective;
+
+    /**
+     * The max size in bytes of a serialized event. Contexts estimated to be larger are split into
+     * multiple events.
+     */
+    @Getter private int maxEventSize;
+
+    /** How events are written, see {@link #setEventSerializer(EventSerializer)}. */
+    @Getter private EventSerializer eventSerializer;
+
+    /** Which properties split events hold, see {@link #setSplitStrategy(SplitStrategy)}. */
+    @Getter private SplitStrategy splitStrategy;
+
+    /** The properties held by every split event, see {@link #setRepeatedProperties(String...)}. */
+    @Getter private Set<String> repeatedProperties = Collections.emptySet();
+
+    /** The pool split events are written on, or null, see {@link #setSerializationPool}. */
+    @Getter private ForkJoinPool serializationPool;
+
+    /**
+     * The estimated size in bytes from which split events are written in parallel, see {@link
+     * #setParallelSerializationThreshold(int)}.
+     */
+    @Getter private int parallelSerializationThreshold;
+
+    /** The output size of the last serialization, shared with copies of this context. */
+    @Getter(AccessLevel.PACKAGE)
+    private SerializedSizeHint sizeHint = new SerializedSizeHint();
     private final Map<String, StorageResolution> metricNameAndResolutionMap =
             new ConcurrentHashMap<>();
 
@@ -51,6 +87,12 @@ public class MetricsContext {
     public MetricsContext(RootNode rootNode) {
         this.rootNode = rootNode;
         metricDirective = rootNode.getAws().createMetricDirective();
+        Configuration config = EnvironmentConfigurationProvider.getConfig();
+        maxEventSize = config.getMaxEventSize();
+        eventSerializer = config.getEventSerializer();
+        splitStrategy = config.getSplitStrategy();
+        serializationPool = config.shouldSerializeInParallel() ? ForkJoinPool.commonPool() : null;
+        parallelSerializationThreshold = config.getParallelSerializationThreshold();
     }
 
     public MetricsContext(MetricDirective metricDirective) {
@@ -76,6 +118,20 @@ public class MetricsContext {
         }
     }
 
+    /** Create a context for a directive with the settings of another context. */
+    private MetricsContext(MetricsContext source, MetricDirective metricDirective) {
+        this.rootNode = new RootNode();
+        this.rootNode.getAws().setMetricDirective(metricDirective);
+        this.metricDirective = metricDirective;
+        maxEventSize = source.maxEventSize;
+        sizeHint = source.sizeHint;
+        eventSerializer = source.eventSerializer;
+        splitStrategy = source.splitStrategy;
+        repeatedProperties = source.repeatedProperties;
+        serializationPool = source.serializationPool;
+        parallelSerializationThreshold = source.parallelSerializationThreshold;
+    }
+
     /** @return the namespace. If the namespace is not set, it would return a default value. */
     public String getNamespace() {
         return metricDirective.getNamespace();
@@ -112,6 +168,119 @@ public class MetricsContext {
         return !getDefaultDimensions().getDimensionKeys().isEmpty();
     }
 
+    /** @return the aggregation mode used for metrics that are added to this context. */
+    public AggregationMode getAggregationMode() {
+        return metricDirective.getAggregationMode();
+    }
+
+    /**
+     * Set how metrics that are added to this context from now on accumulate their values. Metrics
+     * that already exist in the context keep the mode they were created with. The mode is carried
+     * over to contexts created by {@link #createCopyWithContext(boolean)}.
+     *
+     * <pre>{@code
+     * metricContext.setAggregationMode(AggregationMode.VALUES_AND_COUNTS)
+     * }</pre>
+     *
+     * @param aggregationMode the aggregation mode
+     */
+    public void setAggregationMode(AggregationMode aggregationMode) {
+        metricDirective.setAggregationMode(aggregationMode);
+    }
+
+    /** @return the maximum relative error of histogram bucket values in this context. */
+    public double getHistogramRelativeError() {
+        return metricDirective.getHistogramRelativeError();
+    }
+
+    /**
+     * Set the maximum relative error of the values reported for {@link AggregationMode#HISTOGRAM}
+     * metrics that are added to this context from now on. Smaller errors use more buckets.
+     *
+     * @param relativeError the relative error, greater than 0 and at most 0.5
+     * @throws InvalidMetricException if the relative error is out of range
+     */
+    public void setHistogramRelativeError(double relativeError) throws InvalidMetricException {
+        Validator.validateHistogramRelativeError(relativeError);
+        metricDirective.setHistogramRelativeError(relativeError);
+    }
+
+    /**
+     * Set the max size in bytes of a serialized event. When the estimated size of this context
+     * exceeds it, the context is split into multiple events, each within the limit unless a single
+     * metric alone exceeds it. The size is carried over to contexts created by {@link
+     * #createCopyWithContext(boolean)}.
+     *
+     * @param maxEventSize the max size in bytes, greater than 0
+     */
+    public void setMaxEventSize(int maxEventSize) {
+        if (maxEventSize <= 0) {
+            throw new IllegalArgumentException("Max event size must be greater than 0");
+        }
+        this.maxEventSize = maxEventSize;
+    }
+
+    /**
+     * Set how the events of this context are written. The serializer is carried over to contexts
+     * created by {@link #createCopyWithContext(boolean)}.
+     *
+     * @param eventSerializer the serializer, e.g. {@link EventSerializer#EMF}
+     */
+    public void setEventSerializer(@NonNull EventSerializer eventSerializer) {
+        this.eventSerializer = eventSerializer;
+    }
+
+    /**
+     * Set which properties are written to each event when this context is split into multiple
+     * events. The strategy is carried over to contexts created by {@link
+     * #createCopyWithContext(boolean)}.
+     *
+     * @param splitStrategy the strategy, e.g. {@link SplitStrategy#PROPERTIES_IN_FIRST_EVENT}
+     */
+    public void setSplitStrategy(@NonNull SplitStrategy splitStrategy) {
+        this.splitStrategy = splitStrategy;
+    }
+
+    /**
+     * Set the pool on which the events of a large context are written in parallel, see {@link
+     * #setParallelSerializationThreshold(int)}. The events are returned in the same order as when
+     * they are written on the calling thread. The pool is carried over to contexts created by
+     * {@link #createCopyWithContext(boolean)}.
+     *
+     * @param serializationPool the pool, or null to write all events on the calling thread
+     */
+    public void setSerializationPool(ForkJoinPool serializationPool) {
+        this.serializationPool = serializationPool;
+    }
+
+    /**
+     * Set the estimated size in bytes from which a context that is split into multiple events is
+     * written in parallel on the {@link #setSerializationPool(ForkJoinPool) serialization pool}.
+     * Smaller contexts are written on the calling thread, so they pay no scheduling overhead. The
+     * threshold is carried over to contexts created by {@link #createCopyWithContext(boolean)}.
+     *
+     * @param parallelSerializationThreshold the size in bytes, not negative
+     */
+    public void setParallelSerializationThreshold(int parallelSerializationThreshold) {
+        if (parallelSerializationThreshold < 0) {
+            throw new IllegalArgumentException(
+                    "Parallel serialization threshold cannot be negative");
+        }
+        this.parallelSerializationThreshold = parallelSerializationThreshold;
+    }
+
+    /**
+     * Set the properties that are written to every event with {@link
+     * SplitStrategy#PROPERTIES_IN_FIRST_EVENT}, e.g. a request ID to correlate the events. Other
+     * properties are only written to the first event. The keys are carried over to contexts
+     * created by {@link #createCopyWithContext(boolean)}.
+     *
+     * @param keys the keys of the properties
+     */
+    public void setRepeatedProperties(String... keys) {
+        this.repeatedProperties = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(keys)));
+    }
+
     /**
      * Add a metric measurement to the context. Multiple calls using the same key will be stored as
      * an array of scalar values.
@@ -128,10 +297,79 @@ public class MetricsContext {
      */
     public void putMetric(String key, double value, Unit unit, StorageResolution storageResolution)
             throws InvalidMetricException {
+        putMetric(key, value, unit, storageResolution, metricDirective.getAggregationMode());
+    }
+
+    /**
+     * Add a metric measurement to the context with an aggregation mode for this metric. The mode
+     * only takes effect when the metric is first added to the context; later calls for the same
+     * key accumulate into the existing metric.
+     *
+     * <pre>{@code
+     * metricContext.putMetric(
+     *         "Requests", 1, Unit.COUNT, StorageResolution.STANDARD, AggregationMode.STATISTIC_SET)
+     * }</pre>
+     *
+     * @param key Name of the metric
+     * @param value Value of the metric
+     * @param unit The unit of the metric
+     * @param storageResolution The resolution of the metric
+     * @param aggregationMode How values of the metric are accumulated
+     * @throws InvalidMetricException if the metric is invalid
+     */
+    public void putMetric(
+            String key,
+            double value,
+            Unit unit,
+            StorageResolution storageResolution,
+            AggregationMode aggregationMode)
+            throws InvalidMetricException {
         Validator.validateMetric(key, value, unit, storageResolution, metricNameAndResolutionMap);
-        metricDirective.putMetric(key, value, unit, storageResolution);
-        metricNameAndResolutionMap.put(key, storageResolution);
+        if (aggregationMode == null) {
+            throw new InvalidMetricException("Metric aggregation mode cannot be null");
+        }
+        metricDirective.putMetric(key, value, unit, storageResolution, aggregationMode);
+        // Only write on the first put of a key, so repeated puts stay read-only on this map
+        if (!metricNameAndResolutionMap.containsKey(key)) {
+            metricNameAndResolutionMap.putIfAbsent(key, storageResolution);
+        }
+    }
+
+    /**
+     * Add a metric measurement through a pre-registered handle. The name, unit and resolution of
+     * the handle were validated when it was created, so only the value is checked here.
+     *
+     * <pre>{@code
+     * metricContext.putMetric(LATENCY, 100)
+     * }</pre>
+     *
+     * @param handle The handle of the metric
+     * @param value Value of the metric
+     * @throws InvalidMetricException if the value is invalid, or the metric was already added with
+     *     another resolution
+     */
+    public void putMetric(MetricHandle handle, double value) throws InvalidMetricException {
+        if (handle == null) {
+            throw new InvalidMetricException("Metric handle cannot be null");
+        }
+        if (!Double.isFinite(value)) {
+            throw new InvalidMetricException("Metric value is not a number");
+        }
+        if (metricDirective.putMetric(handle, value)) {
+            return;
+        }
+        // First value of this handle in this thread since the last flush
+        String key = handle.getName();
+        Validator.validateMetric(
+                key,
+                value,
+                handle.getUnit(),
+                handle.getStorageResolution(),
+                metricNameAndResolutionMap);
+        metricDirective.putNewMetric(handle, value);
+        metricNameAndResolutionMap.putIfAbsent(key, handle.getStorageResolution());
     }
+
     /**
      * Add a metric measurement to the context with a storage resolution but without a unit.
      * Multiple calls using the same key will be stored as an array of scalar values.
@@ -210,7 +448,8 @@ public class MetricsContext {
      * metricContext.putDimension(DimensionSet.of("Dim", "Value" ))
      * }</pre>
      *
-     * @param dimensionSet the dimensions set to add
+     * @param dimensionSet the dimensions set to add. A mutable set is copied, so changing it
+     *     afterwards does not change the dimensions of this context.
      */
     public void putDimension(DimensionSet dimensionSet) {
         metricDirective.putDimensionSet(dimensionSet);
@@ -240,13 +479,13 @@ public class MetricsContext {
      * @throws DimensionSetExceededException if the number of dimensions exceeds the limit
      */
     public List<DimensionSet> getDimensions() throws DimensionSetExceededException {
-        return metricDirective.getAllDimensions();
+        return new ArrayList<>(metricDirective.getAllDimensions());
     }
 
     /**
      * Update the dimensions. This would override default dimensions
      *
-     * @param dimensionSets the dimensionSets to be set
+     * @param dimensionSets the dimensionSets to be set. Mutable sets are copied.
      */
     public void setDimensions(DimensionSet... dimensionSets) {
         metricDirective.setDimensions(Arrays.asList(dimensionSets));
@@ -256,7 +495,7 @@ public class MetricsContext {
      * Update the dimensions. Default dimensions are preserved optionally.
      *
      * @param useDefault indicates whether default dimensions should be used
-     * @param dimensionSets the dimensionSets to set
+     * @param dimensionSets the dimensionSets to set. Mutable sets are copied.
      */
     public void setDimensions(boolean useDefault, DimensionSet... dimensionSets) {
         metricDirective.setDimensions(useDefault, Arrays.asList(dimensionSets));
@@ -304,7 +543,7 @@ public class MetricsContext {
      * @return Creates an independently flushable context
      */
     public MetricsContext createCopyWithContext(boolean preserveDimensions) {
-        return new MetricsContext(metricDirective.copyWithoutMetrics(preserveDimensions));
+        return new MetricsContext(this, metricDirective.copyWithoutMetrics(preserveDimensions));
     }
 
     /**
@@ -314,71 +553,206 @@ public class MetricsContext {
      *
      * <p>If a metric has more than 100 data points, we also split the metric.
      *
+     * <p>Events are also split before their estimated size exceeds the {@link
+     * #setMaxEventSize(int) max event size}. Which properties each event holds depends on the
+     * {@link #setSplitStrategy(SplitStrategy) split strategy}. The events of large contexts may be
+     * written in parallel, see {@link #setSerializationPool(ForkJoinPool)}.
+     *
      * @return the serialized strings.
      * @throws JsonProcessingException if there's any object that cannot be serialized
      */
     public List<String> serialize() throws JsonProcessingException {
-        if (rootNode.metrics().size() <= Constants.MAX_METRICS_PER_EVENT
-                && !anyMetricWithTooManyDataPoints(rootNode)) {
-            return Arrays.asList(this.rootNode.serialize());
-        } else {
-            List<RootNode> nodes = new ArrayList<>();
-            Map<String, MetricDefinition> metrics = new HashMap<>();
-            Queue<MetricDefinition> metricDefinitions =
-                    new LinkedList<>(rootNode.metrics().values());
-            while (!metricDefinitions.isEmpty()) {
-                MetricDefinition metric = metricDefinitions.poll();
-
-                if (metrics.size() == Constants.MAX_METRICS_PER_EVENT
-                        || metrics.containsKey(metric.getName())) {
-                    nodes.add(buildRootNode(metrics));
-                    metrics = new HashMap<>();
-                }
-
-                if (metric.getValues().size() <= Constants.MAX_DATAPOINTS_PER_METRIC) {
-                    metrics.put(metric.getName(), metric);
-                } else {
-                    metrics.put(
-                            metric.getName(),
-                            new MetricDefinition(
-                                    metric.getName(),
-                                    metric.getUnit(),
-                                    metric.getStorageResolution(),
-                                    metric.getValues()
-                                            .subList(0, Constants.MAX_DATAPOINTS_PER_METRIC)));
-                    metricDefinitions.offer(
-                            new MetricDefinition(
-                                    metric.getName(),
-                                    metric.getUnit(),
-                                    metric.getStorageResolution(),
-                                    metric.getValues()
-                                            .subList(
-                                                    Constants.MAX_DATAPOINTS_PER_METRIC,
-                                                    metric.getValues().size())));
-                }
+        try {
+            return writeEvents();
+        } catch (IOException | DimensionSetExceededException e) {
+            return SerializationErrors.rethrow(e);
+        }
+    }
+
+    private List<String> writeEvents() throws IOException {
+        rootNode.mergeWrites();
+        int baseSize = EventSizeEstimator.estimateWithoutMetrics(rootNode);
+        long splitSize = splitSize(baseSize);
+        if (isParallel(splitSize)) {
+            return serializeInParallel(newChunker(baseSize));
+        }
+        ReusableStringWriter writer = ReusableStringWriter.acquire(sizeHint.getEventLength());
+        try {
+            if (splitSize < 0) {
+                rootNode.serialize(eventSerializer, null, writer);
+                sizeHint.setEventLength(writer.length());
+                return Collections.singletonList(writer.toString());
             }
-            if (!metrics.isEmpty()) {
-                nodes.add(buildRootNode(metrics));
+            List<String> events = new ArrayList<>();
+            int longest = 0;
+            MetricChunker chunker = newChunker(baseSize);
+            while (chunker.next()) {
+                writer.reset();
+                rootNode.serialize(eventSerializer, chunker, writer);
+                longest = Math.max(longest, writer.length());
+                events.add(writer.toString());
             }
-            List<String> strings = new ArrayList<>();
-            for (RootNode node : nodes) {
-                strings.add(node.serialize());
+            sizeHint.setEventLength(longest);
+            return events;
+        } finally {
+            writer.release();
+        }
+    }
+
+    /**
+     * Serialize the metrics in this context to UTF-8 encoded log events, split the same way as
+     * {@link #serialize()}. Each event is terminated by a newline, so it can be written to a socket
+     * as is. All events of one call share a single backing array, sized from the previous call on
+     * this context or the context it was copied from, and no intermediate strings are created.
+     * Events written in parallel have a backing array each.
+     *
+     * @return buffers holding one event each, positioned at the start of the event.
+     * @throws JsonProcessingException if there's any object that cannot be serialized
+     */
+    public List<ByteBuffer> serializeToUtf8() throws JsonProcessingException {
+        try {
+            return writeUtf8Events();
+        } catch (IOException | DimensionSetExceededException e) {
+            return SerializationErrors.rethrow(e);
+        }
+    }
+
+    private List<ByteBuffer> writeUtf8Events() throws IOException {
+        rootNode.mergeWrites();
+        int baseSize = EventSizeEstimator.estimateWithoutMetrics(rootNode);
+        long splitSize = splitSize(baseSize);
+        if (isParallel(splitSize)) {
+            return serializeToUtf8InParallel(newChunker(baseSize));
+        }
+        Utf8EventBuffer buffer = new Utf8EventBuffer(sizeHint.getBufferSize());
+        List<Integer> ends = new ArrayList<>();
+        if (splitSize < 0) {
+            rootNode.serialize(eventSerializer, null, buffer);
+            buffer.write('\n');
+            ends.add(buffer.size());
+        } else {
+            MetricChunker chunker = newChunker(baseSize);
+            while (chunker.next()) {
+                rootNode.serialize(eventSerializer, chunker, buffer);
+                buffer.write('\n');
+                ends.add(buffer.size());
             }
-            return strings;
         }
+        sizeHint.setBufferSize(buffer.size());
+        List<ByteBuffer> events = new ArrayList<>(ends.size());
+        int start = 0;
+        for (int end : ends) {
+            events.add(buffer.slice(start, end - start));
+            start = end;
+        }
+        return events;
     }
 
-    private RootNode buildRootNode(Map<String, MetricDefinition> metrics) {
-        Metadata metadata = rootNode.getAws();
-        MetricDirective md = metadata.getCloudWatchMetrics().get(0);
-        Metadata clonedMetadata =
-                metadata.withCloudWatchMetrics(Arrays.asList(md.withMetrics(metrics)));
-        return rootNode.withAws(clonedMetadata);
+    /**
+     * Estimate the size in bytes of this context serialized as a single event, ignoring splitting.
+     * The estimate is an upper bound unless properties hold values other than strings, numbers and
+     * booleans, and it is computed without serializing anything.
+     *
+     * @return the estimated size in bytes
+     */
+    public long estimateSerializedSize() {
+        rootNode.mergeWrites();
+        return EventSizeEstimator.estimate(rootNode);
     }
 
-    private boolean anyMetricWithTooManyDataPoints(RootNode node) {
-        return node.metrics().values().stream()
-                .anyMatch(
-                        metric -> metric.getValues().size() > Constants.MAX_DATAPOINTS_PER_METRIC);
+    /**
+     * Test if this context needs to be split into multiple events.
+     *
+     * @param baseSize the estimated size of the context without metrics
+     * @return the estimated size of the context as a single event if it needs to be split, the
+     *     same as {@link #estimateSerializedSize()}, or -1 if it is written as a single event
+     */
+    private long splitSize(int baseSize) {
+        Collection<MetricDefinition> metrics = rootNode.metrics().values();
+        if (metrics.isEmpty()) {
+            // Splitting moves metrics into events, so without any there is a single event,
+            // however large its properties
+            return -1;
+        }
+        boolean split = metrics.size() > Constants.MAX_METRICS_PER_EVENT;
+        long size = baseSize;
+        for (MetricDefinition metric : metrics) {
+            int valueCount = metric.getValueCount();
+            split |= valueCount > Constants.MAX_DATAPOINTS_PER_METRIC;
+            size += EventSizeEstimator.estimateMetric(metric, 0, valueCount);
+        }
+        return split || size > maxEventSize ? size : -1;
+    }
+
+    /** @return true if the events of a context of that split size are written in parallel. */
+    private boolean isParallel(long splitSize) {
+        return serializationPool != null
+                && splitSize >= 0
+                && splitSize >= parallelSerializationThreshold;
+    }
+
+    private List<String> serializeInParallel(MetricChunker chunker) throws IOException {
+        List<MetricChunker> chunks = snapshotChunks(chunker);
+        String[] events = new String[chunks.size()];
+        ParallelChunkWriter.writeAll(
+                serializationPool,
+                events.length,
+                chunk -> {
+                    ReusableStringWriter writer =
+                            ReusableStringWriter.acquire(sizeHint.getEventLength());
+                    try {
+                        rootNode.serialize(eventSerializer, chunks.get(chunk), writer);
+                        events[chunk] = writer.toString();
+                    } finally {
+                        writer.release();
+                    }
+                });
+        int longest = 0;
+        for (String event : events) {
+            longest = Math.max(longest, event.length());
+        }
+        sizeHint.setEventLength(longest);
+        return Arrays.asList(events);
+    }
+
+    private List<ByteBuffer> serializeToUtf8InParallel(MetricChunker chunker)
+            throws IOException {
+        List<MetricChunker> chunks = snapshotChunks(chunker);
+        ByteBuffer[] events = new ByteBuffer[chunks.size()];
+        int bufferSize = sizeHint.getBufferSize() / Math.max(1, events.length);
+        ParallelChunkWriter.writeAll(
+                serializationPool,
+                events.length,
+                chunk -> {
+                    Utf8EventBuffer buffer = new Utf8EventBuffer(bufferSize);
+                    rootNode.serialize(eventSerializer, chunks.get(chunk), buffer);
+                    buffer.write('\n');
+                    events[chunk] = buffer.slice(0, buffer.size());
+                });
+        int total = 0;
+        for (ByteBuffer event : events) {
+            total += event.remaining();
+        }
+        sizeHint.setBufferSize(total);
+        return Arrays.asList(events);
+    }
+
+    private static List<MetricChunker> snapshotChunks(MetricChunker chunker) {
+        List<MetricChunker> chunks = new ArrayList<>();
+        while (chunker.next()) {
+            chunks.add(chunker.snapshot());
+        }
+        return chunks;
+    }
+
+    private MetricChunker newChunker(int baseSize) {
+        Collection<MetricDefinition> metrics = rootNode.metrics().values();
+        if (splitStrategy == SplitStrategy.REPEAT_PROPERTIES) {
+            return new MetricChunker(metrics, baseSize, maxEventSize);
+        }
+        Set<String> repeated = repeatedProperties;
+        int laterBaseSize = EventSizeEstimator.estimateWithoutMetrics(rootNode, repeated::contains);
+        return new MetricChunker(
+                metrics, baseSize, laterBaseSize, maxEventSize, repeated::contains);
     }
 }
@@ -0,0 +1,88 @@
+/*
+ *   Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package software.amazon.cloudwatchlogs.emf.model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Writes the events of a split context in parallel on a {@link ForkJoinPool}. The range of chunks
+ * is halved recursively down to single chunks, and each chunk writes its event to its own slot, so
+ * the events keep the order of the chunks whichever worker writes them.
+ */
+final class ParallelChunkWriter extends RecursiveAction {
+    /** Writes the event of one chunk. */
+    @FunctionalInterface
+    interface ChunkWriter {
+        void write(int chunk) throws IOException;
+    }
+
+    private final ChunkWriter writer;
+    private final int from;
+    private final int to;
+
+    private ParallelChunkWriter(ChunkWriter writer, int from, int to) {
+        this.writer = writer;
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * Write the events of chunks {@code [0, count)} on a pool and wait for all of them.
+     *
+     * @param pool the pool to run on
+     * @param count the number of chunks
+     * @param writer writes the event of a chunk
+     * @throws IOException if writing any of the events fails
+     */
+    static void writeAll(ForkJoinPool pool, int count, ChunkWriter writer) throws IOException {
+        if (count == 0) {
+            return;
+        }
+        try {
+            pool.invoke(new ParallelChunkWriter(writer, 0, count));
+        } catch (UncheckedIOException e) {
+            // The pool may rethrow a copy of the exception with the original one as its cause
+            for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    protected void compute() {
+        if (to - from <= 1) {
+            if (to > from) {
+                try {
+                    writer.write(from);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        invokeAll(
+                new ParallelChunkWriter(writer, from, middle),
+                new ParallelChunkWriter(writer, middle, to));
+    }
+}
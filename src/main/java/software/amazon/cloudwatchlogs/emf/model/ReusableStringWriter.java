@@ -0,0 +1,120 @@
+/*
+ *   Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package software.amazon.cloudwatchlogs.emf.model;
+
+import java.io.Writer;
+
+/**
+ * A writer into a per-thread {@link StringBuilder} that is kept between serializations, so
+ * serializing an event only allocates the resulting string. The JSON generators writing into it
+ * take their own buffers from Jackson's per-thread buffer recycler.
+ *
+ * <pre>{@code
+ * ReusableStringWriter writer = ReusableStringWriter.acquire(expectedLength);
+ * try {
+ *     ...
+ * } finally {
+ *     writer.release();
+ * }
+ * }</pre>
+ */
+final class ReusableStringWriter extends Writer {
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /**
+     * Builders grown beyond this size are dropped on release, so a single huge event doesn't pin
+     * memory on every thread that ever serialized one.
+     */
+    private static final int MAX_RETAINED_CAPACITY = 1024 * 1024;
+
+    private static final ThreadLocal<ReusableStringWriter> CURRENT =
+            ThreadLocal.withInitial(ReusableStringWriter::new);
+
+    private StringBuilder builder = new StringBuilder(INITIAL_CAPACITY);
+    private boolean inUse;
+
+    private ReusableStringWriter() {}
+
+    /**
+     * Get the empty writer of the current thread, or a new writer if the one of the current thread
+     * is in use.
+     *
+     * @param capacity the expected length of the output
+     * @return the writer, to be released after use
+     */
+    static ReusableStringWriter acquire(int capacity) {
+        ReusableStringWriter writer = CURRENT.get();
+        if (writer.inUse) {
+            writer = new ReusableStringWriter();
+        }
+        writer.inUse = true;
+        writer.builder.setLength(0);
+        writer.builder.ensureCapacity(capacity);
+        return writer;
+    }
+
+    /** Return the writer to its thread. */
+    void release() {
+        inUse = false;
+        if (builder.capacity() > MAX_RETAINED_CAPACITY) {
+            builder = new StringBuilder(INITIAL_CAPACITY);
+        }
+    }
+
+    /** Discard the content, keeping the capacity. */
+    void reset() {
+        builder.setLength(0);
+    }
+
+    /** @return the number of characters written since the last reset. */
+    int length() {
+        return builder.length();
+    }
+
+    @Override
+    public void write(int c) {
+        builder.append((char) c);
+    }
+
+    @Override
+    public void write(char[] chars, int offset, int length) {
+        builder.append(chars, offset, length);
+    }
+
+    @Override
+    public void write(String str, int offset, int length) {
+        builder.append(str, offset, offset + length);
+    }
+
+    @Override
+    public Writer append(CharSequence csq) {
+        builder.append(csq);
+        return this;
+    }
+
+    @Override
+    public void flush() {}
+
+    @Override
+    public void close() {}
+
+    @Override
+    public String toString() {
+        return builder.toString();
+    }
+}
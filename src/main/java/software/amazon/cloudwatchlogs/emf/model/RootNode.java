@@ -20,10 +20,10 @@ import com.fasterxml.jackson.annotation.JsonAnyGetter;
 import com.fasterxml.jackson.annotation.JsonFilter;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import lombok.AllArgsConstructor;
@@ -41,14 +41,10 @@ class RootNode {
     private final Metadata aws;
 
     private Map<String, Object> properties;
-    private static final ObjectMapper objectMapper = new ObjectMapper();
-    private static final SimpleFilterProvider filterProvider =
-            new SimpleFilterProvider().addFilter("emptyMetricFilter", new EmptyMetricsFilter());
 
     RootNode() {
         aws = new Metadata();
         properties = new ConcurrentHashMap<>();
-        objectMapper.setFilterProvider(filterProvider);
     }
 
     public void putProperty(String key, Object value) {
@@ -67,8 +63,7 @@ class RootNode {
         targetMembers.putAll(getDimensions());
         for (MetricDirective metricDirective : aws.getCloudWatchMetrics()) {
             for (MetricDefinition metric : metricDirective.getMetrics().values()) {
-                List<Double> values = metric.getValues();
-                targetMembers.put(metric.getName(), values.size() == 1 ? values.get(0) : values);
+                targetMembers.put(metric.getName(), metric.getTargetMemberValue());
             }
         }
         return targetMembers;
@@ -85,11 +80,84 @@ class RootNode {
         return dimensions;
     }
 
+    /** Merge the values buffered by writing threads into the metric directives of this node. */
+    void mergeWrites() {
+        for (MetricDirective metricDirective : aws.getCloudWatchMetrics()) {
+            metricDirective.mergeWrites();
+        }
+    }
+
     Map<String, MetricDefinition> metrics() {
         return aws.getCloudWatchMetrics().get(0).getMetrics();
     }
 
+    /**
+     * Serialize this node with {@link RootNodeSerializer} and the Jackson serializer, which writes
+     * the document straight to a generator.
+     */
     String serialize() throws JsonProcessingException {
-        return objectMapper.writeValueAsString(this);
+        mergeWrites();
+        return serialize(EventSerializer.JACKSON, null);
+    }
+
+    /**
+     * Serialize this node, or one of the events it is split into.
+     *
+     * @param serializer the serializer to write with
+     * @param chunk the chunker positioned at the event to write, or null to write the whole node
+     */
+    String serialize(EventSerializer serializer, MetricChunker chunk)
+            throws JsonProcessingException {
+        ReusableStringWriter writer = ReusableStringWriter.acquire(0);
+        try {
+            serialize(serializer, chunk, writer);
+            return writer.toString();
+        } catch (IOException | DimensionSetExceededException e) {
+            return SerializationErrors.rethrow(e);
+        } finally {
+            writer.release();
+        }
+    }
+
+    /**
+     * Serialize this node, or one of the events it is split into, to a writer. The writer is not
+     * closed.
+     *
+     * @param serializer the serializer to write with
+     * @param chunk the chunker positioned at the event to write, or null to write the whole node
+     */
+    void serialize(EventSerializer serializer, MetricChunker chunk, Writer out)
+            throws IOException {
+        try (JsonOutput output = serializer.createOutput(out)) {
+            write(chunk, output);
+        }
+    }
+
+    /**
+     * Serialize this node, or one of the events it is split into, as UTF-8 to a stream. The stream
+     * is not closed.
+     *
+     * @param serializer the serializer to write with
+     * @param chunk the chunker positioned at the event to write, or null to write the whole node
+     */
+    void serialize(EventSerializer serializer, MetricChunker chunk, OutputStream out)
+            throws IOException {
+        try (JsonOutput output = serializer.createOutput(out)) {
+            write(chunk, output);
+        }
+    }
+
+    private void write(MetricChunker chunk, JsonOutput output) throws IOException {
+        if (chunk == null) {
+            RootNodeSerializer.write(this, output);
+        } else {
+            RootNodeSerializer.writeChunk(this, chunk, output);
+        }
+    }
+
+    /** Serialize this node through databind. The output is the same as {@link #serialize()}. */
+    String serializeWithDatabind() throws JsonProcessingException {
+        mergeWrites();
+        return JacksonJsonOutput.OBJECT_MAPPER.writeValueAsString(this);
     }
 }
@@ -0,0 +1,314 @@
+/*
+ *   Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package software.amazon.cloudwatchlogs.emf.model;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import software.amazon.cloudwatchlogs.emf.exception.DimensionSetExceededException;
+
+/**
+ * Writes a {@link RootNode} straight to a {@link JsonOutput}, without bean introspection or the
+ * intermediate target member map built for databind. With a Jackson output, the output is
+ * byte-identical to serializing the root node with databind: the same members are written in the
+ * same order, and only property and custom metadata values of types other than strings, booleans
+ * and boxed int, long and double numbers are handed to databind.
+ *
+ * <p>Target members are collected into a map the same way as {@link RootNode#getTargetMembers()},
+ * so they are written in the same order as with databind, and metrics take precedence over
+ * dimensions, and dimensions over properties. The map holds the metric definitions themselves,
+ * whose values are written without building the intermediate lists.
+ */
+final class RootNodeSerializer {
+
+    private RootNodeSerializer() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * Write the EMF document of a root node.
+     *
+     * @param node the root node
+     * @param out the output to write to
+     * @throws IOException if writing fails
+     * @throws DimensionSetExceededException if a dimension set is too large
+     */
+    static void write(RootNode node, JsonOutput out) throws IOException {
+        out.writeStartObject();
+        Metadata aws = node.getAws();
+        if (!aws.isEmpty()) {
+            out.writeFieldName("_aws");
+            writeMetadata(aws, out);
+        }
+        writeTargetMembers(node, out);
+        out.writeEndObject();
+    }
+
+    /**
+     * Write one of the events a root node is split into. The event holds the metric data points of
+     * the current chunk in place of the metrics of the first directive, and no other directives.
+     * It is the same document as the root node with a copy of the first directive holding only
+     * those data points, but no copies are made. Properties the chunk excludes are left out, see
+     * {@link MetricChunker#includesProperty(String)}.
+     *
+     * @param node the root node
+     * @param chunk the chunker, positioned at the chunk to write
+     * @param out the output to write to
+     * @throws IOException if writing fails
+     * @throws DimensionSetExceededException if a dimension set is too large
+     */
+    static void writeChunk(RootNode node, MetricChunker chunk, JsonOutput out)
+            throws IOException {
+        Metadata aws = node.getAws();
+        MetricDirective directive = aws.getCloudWatchMetrics().get(0);
+        List<DimensionSet> dimensionSets = directive.getAllDimensions();
+        out.writeStartObject();
+        out.writeFieldName("_aws");
+        writeMetadataStart(aws, out);
+        out.writeStartArray();
+        writeMetricDirective(directive.getNamespace(), dimensionSets, chunk.getMetrics(), out);
+        out.writeEndArray();
+        writeMetadataEnd(aws, out);
+
+        Map<String, Object> members = new HashMap<>(includedProperties(node, chunk));
+        for (DimensionSet dimensionSet : dimensionSets) {
+            members.putAll(dimensionSet.getDimensionRecords());
+        }
+        List<MetricDefinition> metrics = chunk.getMetrics();
+        for (int i = 0; i < metrics.size(); i++) {
+            members.put(metrics.get(i).getName(), metrics.get(i));
+        }
+        for (Map.Entry<String, Object> member : members.entrySet()) {
+            out.writeFieldName(member.getKey());
+            Object value = member.getValue();
+            if (value instanceof MetricDefinition) {
+                int i = chunk.indexOf(member.getKey());
+                writeMetricValue(chunk.getMetric(i), chunk.getFrom(i), chunk.getTo(i), out);
+            } else {
+                writeValue(value, out);
+            }
+        }
+        out.writeEndObject();
+    }
+
+    /** @return the properties of the node the chunk includes, the same map if it includes all. */
+    private static Map<String, Object> includedProperties(RootNode node, MetricChunker chunk) {
+        Map<String, Object> properties = node.getProperties();
+        for (String key : properties.keySet()) {
+            if (!chunk.includesProperty(key)) {
+                Map<String, Object> included = new HashMap<>(properties);
+                included.keySet().removeIf(k -> !chunk.includesProperty(k));
+                return included;
+            }
+        }
+        return properties;
+    }
+
+    private static void writeMetadata(Metadata aws, JsonOutput out) throws IOException {
+        writeMetadataStart(aws, out);
+        List<MetricDirective> directives = aws.getCloudWatchMetrics();
+        out.writeStartArray();
+        for (int i = 0; i < directives.size(); i++) {
+            writeMetricDirective(directives.get(i), out);
+        }
+        out.writeEndArray();
+        writeMetadataEnd(aws, out);
+    }
+
+    /** Write the metadata up to the name of the CloudWatchMetrics array. */
+    private static void writeMetadataStart(Metadata aws, JsonOutput out) throws IOException {
+        out.writeStartObject();
+        out.writeFieldName("Timestamp");
+        Instant timestamp = aws.getTimestamp();
+        if (timestamp == null) {
+            out.writeNull();
+        } else {
+            out.writeNumber(timestamp.toEpochMilli());
+        }
+        out.writeFieldName("CloudWatchMetrics");
+    }
+
+    /** Write the metadata after the CloudWatchMetrics array. */
+    private static void writeMetadataEnd(Metadata aws, JsonOutput out) throws IOException {
+        for (Map.Entry<String, Object> field : aws.getCustomMetadata().entrySet()) {
+            out.writeFieldName(field.getKey());
+            writeValue(field.getValue(), out);
+        }
+        out.writeEndObject();
+    }
+
+    /** Write a directive from its cached template, see {@link DirectiveTemplate}. */
+    private static void writeMetricDirective(MetricDirective directive, JsonOutput out)
+            throws IOException {
+        out.writeTemplate(DirectiveTemplate.of(directive));
+    }
+
+    /** Render the JSON object of a directive. Used to build its {@link DirectiveTemplate}. */
+    static void writeMetricDirective(
+            String namespace,
+            List<DimensionSet> dimensionSets,
+            Collection<MetricDefinition> metrics,
+            JsonOutput out)
+            throws IOException {
+        out.writeStartObject();
+        out.writeFieldName("Namespace");
+        writeString(namespace, out);
+        out.writeFieldName("Dimensions");
+        out.writeStartArray();
+        for (int i = 0; i < dimensionSets.size(); i++) {
+            out.writeStartArray();
+            for (String key : dimensionSets.get(i).getDimensionKeys()) {
+                out.writeString(key);
+            }
+            out.writeEndArray();
+        }
+        out.writeEndArray();
+        out.writeFieldName("Metrics");
+        out.writeStartArray();
+        for (MetricDefinition metric : metrics) {
+            writeMetricDefinition(metric, out);
+        }
+        out.writeEndArray();
+        out.writeEndObject();
+    }
+
+    private static void writeMetricDefinition(MetricDefinition metric, JsonOutput out)
+            throws IOException {
+        out.writeStartObject();
+        out.writeFieldName("Name");
+        writeString(metric.getName(), out);
+        out.writeFieldName("Unit");
+        Unit unit = metric.getUnit();
+        writeString(unit == null ? null : unit.toString(), out);
+        StorageResolution storageResolution = metric.getStorageResolution();
+        // Standard resolution is omitted, see StorageResolutionFilter
+        if (storageResolution != StorageResolution.STANDARD) {
+            out.writeFieldName("StorageResolution");
+            if (storageResolution == null) {
+                out.writeNull();
+            } else {
+                out.writeNumber(storageResolution.getValue());
+            }
+        }
+        out.writeEndObject();
+    }
+
+    private static void writeTargetMembers(RootNode node, JsonOutput out) throws IOException {
+        Map<String, Object> members = new HashMap<>();
+        members.putAll(node.getProperties());
+        members.putAll(node.getDimensions());
+        for (MetricDirective directive : node.getAws().getCloudWatchMetrics()) {
+            for (MetricDefinition metric : directive.getMetrics().values()) {
+                members.put(metric.getName(), metric);
+            }
+        }
+        for (Map.Entry<String, Object> member : members.entrySet()) {
+            out.writeFieldName(member.getKey());
+            Object value = member.getValue();
+            if (value instanceof MetricDefinition) {
+                writeMetricValue((MetricDefinition) value, out);
+            } else {
+                writeValue(value, out);
+            }
+        }
+    }
+
+    /** Write the same value as {@link MetricDefinition#getTargetMemberValue()}. */
+    private static void writeMetricValue(MetricDefinition metric, JsonOutput out)
+            throws IOException {
+        writeMetricValue(metric, 0, metric.getValueCount(), out);
+    }
+
+    /**
+     * Write the same value as {@link MetricDefinition#getTargetMemberValue()} of {@link
+     * MetricDefinition#slice(int, int)}.
+     */
+    private static void writeMetricValue(
+            MetricDefinition metric, int from, int to, JsonOutput out) throws IOException {
+        if (metric.getAggregationMode() == AggregationMode.STATISTIC_SET) {
+            out.writeStartObject();
+            out.writeFieldName("Max");
+            out.writeNumber(metric.getMax());
+            out.writeFieldName("Min");
+            out.writeNumber(metric.getMin());
+            out.writeFieldName("SampleCount");
+            out.writeNumber(metric.getSampleCount());
+            out.writeFieldName("Sum");
+            out.writeNumber(metric.getSum());
+            out.writeEndObject();
+            return;
+        }
+        if (metric.hasCounts()) {
+            out.writeStartObject();
+            out.writeFieldName("Values");
+            writeValues(metric, from, to, out);
+            out.writeFieldName("Counts");
+            out.writeStartArray();
+            for (int i = from; i < to; i++) {
+                out.writeNumber(metric.getCount(i));
+            }
+            out.writeEndArray();
+            out.writeEndObject();
+        } else if (to - from == 1) {
+            out.writeNumber(metric.getValue(from));
+        } else {
+            writeValues(metric, from, to, out);
+        }
+    }
+
+    private static void writeValues(MetricDefinition metric, int from, int to, JsonOutput out)
+            throws IOException {
+        out.writeStartArray();
+        for (int i = from; i < to; i++) {
+            out.writeNumber(metric.getValue(i));
+        }
+        out.writeEndArray();
+    }
+
+    private static void writeString(String value, JsonOutput out) throws IOException {
+        if (value == null) {
+            out.writeNull();
+        } else {
+            out.writeString(value);
+        }
+    }
+
+    /**
+     * Write a property value, falling back to {@link JsonOutput#writeObject(Object)} for types
+     * without a direct mapping.
+     */
+    private static void writeValue(Object value, JsonOutput out) throws IOException {
+        if (value == null) {
+            out.writeNull();
+        } else if (value instanceof String) {
+            out.writeString((String) value);
+        } else if (value instanceof Boolean) {
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof Integer) {
+            out.writeNumber((long) (Integer) value);
+        } else if (value instanceof Long) {
+            out.writeNumber((long) (Long) value);
+        } else if (value instanceof Double) {
+            out.writeNumber((Double) value);
+        } else {
+            out.writeObject(value);
+        }
+    }
+}
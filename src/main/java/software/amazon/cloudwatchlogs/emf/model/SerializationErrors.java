@@ -0,0 +1,56 @@
+/*
+ *   Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package software.amazon.cloudwatchlogs.emf.model;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import java.io.Closeable;
+import java.io.IOException;
+import software.amazon.cloudwatchlogs.emf.exception.DimensionSetExceededException;
+
+/**
+ * Turns serialization failures into the {@link JsonProcessingException} the public serialization
+ * methods declare. Events are written with {@link IOException}s only, and the Jackson exception
+ * types are only referenced here, so serializing with {@link EventSerializer#EMF} doesn't load
+ * Jackson until something fails.
+ */
+final class SerializationErrors {
+
+    private SerializationErrors() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * Throw a serialization failure as a {@link JsonProcessingException}. It never returns, but is
+     * typed to be used as {@code return SerializationErrors.rethrow(e);}, so callers don't throw a
+     * Jackson exception type themselves.
+     *
+     * @param e an {@link IOException} or a {@link DimensionSetExceededException}
+     * @param <T> the return type of the caller
+     * @return never
+     * @throws JsonProcessingException always
+     */
+    static <T> T rethrow(Exception e) throws JsonProcessingException {
+        if (e instanceof JsonProcessingException) {
+            throw (JsonProcessingException) e;
+        }
+        if (e instanceof IOException) {
+            throw JsonMappingException.fromUnexpectedIOE((IOException) e);
+        }
+        throw new JsonMappingException((Closeable) null, e.getMessage(), e);
+    }
+}
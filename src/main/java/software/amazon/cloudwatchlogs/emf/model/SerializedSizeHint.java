@@ -0,0 +1,34 @@
+/*
+ *   Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package software.amazon.cloudwatchlogs.emf.model;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * The output size of the last serialization of a logger's contexts. It is shared by a context and
+ * its copies, so each flush can size its output buffers from the previous one instead of growing
+ * them from scratch.
+ */
+final class SerializedSizeHint {
+    /** The length in characters of the longest event serialized to a string. */
+    @Getter @Setter private volatile int eventLength;
+
+    /** The total size in bytes of the events serialized to UTF-8. */
+    @Getter @Setter private volatile int bufferSize;
+}
@@ -0,0 +1,34 @@
+/*
+ *   Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package software.amazon.cloudwatchlogs.emf.model;
+
+/**
+ * Controls which properties are written to each event when a context is split into multiple
+ * events. Dimension target members are written to every event in either case, as each event has
+ * its own metric directive that refers to them.
+ */
+public enum SplitStrategy {
+    /** Every event holds all properties. */
+    REPEAT_PROPERTIES,
+
+    /**
+     * Only the first event holds all properties. Later events hold only the properties chosen with
+     * {@link MetricsContext#setRepeatedProperties(String...)}, e.g. a request ID to correlate the
+     * events, which cuts the size of contexts with large properties split into many events.
+     */
+    PROPERTIES_IN_FIRST_EVENT
+}
@@ -0,0 +1,39 @@
+/*
+ *   Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package software.amazon.cloudwatchlogs.emf.model;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+/** A growable byte buffer that hands out views of its content instead of copies. */
+final class Utf8EventBuffer extends ByteArrayOutputStream {
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /** @param sizeHint the expected number of bytes, e.g. the size of the previous output */
+    Utf8EventBuffer(int sizeHint) {
+        super(Math.max(INITIAL_CAPACITY, sizeHint + (sizeHint >> 3)));
+    }
+
+    /**
+     * Create a view of a range of the bytes written so far. The view stays valid when the
+     * buffer grows, since growing copies into a new array and leaves the old one untouched.
+     */
+    ByteBuffer slice(int offset, int length) {
+        return ByteBuffer.wrap(buf, offset, length).slice();
+    }
+}
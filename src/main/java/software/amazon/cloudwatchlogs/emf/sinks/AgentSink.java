@@ -17,13 +17,15 @@
 package software.amazon.cloudwatchlogs.emf.sinks;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 import java.util.function.Supplier;
-import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import software.amazon.cloudwatchlogs.emf.Constants;
 import software.amazon.cloudwatchlogs.emf.exception.EMFClientException;
@@ -31,15 +33,52 @@ import software.amazon.cloudwatchlogs.emf.model.MetricsContext;
 import software.amazon.cloudwatchlogs.emf.sinks.retry.RetryStrategy;
 import software.amazon.cloudwatchlogs.emf.util.StringUtils;
 
-/** An sink connecting to an agent over a socket. */
+/**
+ * An sink connecting to an agent over a socket.
+ *
+ * <p>Serialized events are queued in a preallocated ring buffer, which producers write to without
+ * locks, and a dedicated sender thread drains it. While the ring is full, new events are handled by
+ * an {@link OverflowPolicy}, by default dropping the oldest queued event. The numbers of dropped
+ * events and bytes can be read for every policy. The sender thread waits for new events with a
+ * {@link WaitStrategy}.
+ *
+ * <p>With a {@link SpillQueue}, an event that fails to be written is spilled to disk instead of
+ * being retried, and so are the following events until the agent can be reached again. The sender
+ * thread then replays the spilled events in order before sending new ones. Events that can still
+ * not be written at shutdown stay on disk and are replayed by the next sink using the same
+ * directory.
+ *
+ * <p>By default each event is written to the socket on its own. With batching enabled for a TCP
+ * endpoint, the sender thread instead drains queued events into one newline-delimited batch of up
+ * to a max size in bytes, waiting up to a linger time for more events to arrive, and writes the
+ * batch in a single call. The queue depth and batch counters can be read to tune both limits.
+ *
+ * <p>The sender thread is started with the first event, or right away if there are spilled events
+ * to replay, so a sink that is never written to does not keep a thread running.
+ */
 @Slf4j
 public class AgentSink implements ISink {
+    /** How long the sender thread waits for an event before checking for shutdown. */
+    private static final long POLL_MILLIS = 100;
+
     private final String logGroupName;
     private final String logStreamName;
     private final SocketClient client;
-    private final ExecutorService executor;
     private final Supplier<RetryStrategy> retryStrategyFactory;
-    private final LinkedBlockingQueue<Runnable> queue;
+    private final EventRingBuffer events;
+    private final Thread senderThread;
+    private final AtomicBoolean senderStarted = new AtomicBoolean();
+    private volatile boolean stopped;
+
+    private final LongAdder batchCount = new LongAdder();
+    private final LongAdder batchedEventCount = new LongAdder();
+    private final LongAdder batchedByteCount = new LongAdder();
+
+    /** The queue of events spilled to disk, or null if spilling is disabled. */
+    private final SpillQueue spillQueue;
+
+    private final LongAdder spillDroppedCount = new LongAdder();
+    private final LongAdder spillDroppedBytes = new LongAdder();
 
     public AgentSink(
             String logGroupName,
@@ -48,29 +87,115 @@ public class AgentSink implements ISink {
             SocketClientFactory clientFactory,
             int asyncQueueDepth,
             Supplier<RetryStrategy> retryStrategy) {
+        this(
+                logGroupName,
+                logStreamName,
+                endpoint,
+                clientFactory,
+                asyncQueueDepth,
+                retryStrategy,
+                0,
+                0);
+    }
+
+    public AgentSink(
+            String logGroupName,
+            String logStreamName,
+            Endpoint endpoint,
+            SocketClientFactory clientFactory,
+            int asyncQueueDepth,
+            Supplier<RetryStrategy> retryStrategy,
+            int maxBatchBytes,
+            long lingerMillis) {
+        this(
+                logGroupName,
+                logStreamName,
+                endpoint,
+                clientFactory,
+                asyncQueueDepth,
+                retryStrategy,
+                maxBatchBytes,
+                lingerMillis,
+                WaitStrategy.BLOCKING,
+                OverflowPolicy.dropOldest());
+    }
+
+    public AgentSink(
+            String logGroupName,
+            String logStreamName,
+            Endpoint endpoint,
+            SocketClientFactory clientFactory,
+            int asyncQueueDepth,
+            Supplier<RetryStrategy> retryStrategy,
+            int maxBatchBytes,
+            long lingerMillis,
+            WaitStrategy waitStrategy,
+            OverflowPolicy overflowPolicy) {
+        this(
+                logGroupName,
+                logStreamName,
+                endpoint,
+                clientFactory,
+                asyncQueueDepth,
+                retryStrategy,
+                maxBatchBytes,
+                lingerMillis,
+                waitStrategy,
+                overflowPolicy,
+                null);
+    }
+
+    /**
+     * @param logGroupName the log group to write to, or null to let the agent choose
+     * @param logStreamName the log stream to write to, or null to let the agent choose
+     * @param endpoint the endpoint of the agent
+     * @param clientFactory creates the client of the endpoint
+     * @param asyncQueueDepth the max number of events waiting to be sent
+     * @param retryStrategy creates the backoff of a failing event or batch
+     * @param maxBatchBytes the max size in bytes of a batch of events, or 0 to write each event on
+     *     its own. Batching only applies to TCP endpoints; a larger event is written on its own.
+     * @param lingerMillis how long to wait for more events before writing a batch that is not full
+     * @param waitStrategy how the sender thread waits for events while the queue is empty
+     * @param overflowPolicy what to do with new events while the queue is full
+     * @param spillQueue the queue to spill events to while the agent can not be reached, or null to
+     *     retry failed events in memory. The sink takes ownership of the queue and closes it on
+     *     shutdown.
+     */
+    public AgentSink(
+            String logGroupName,
+            String logStreamName,
+            Endpoint endpoint,
+            SocketClientFactory clientFactory,
+            int asyncQueueDepth,
+            Supplier<RetryStrategy> retryStrategy,
+            int maxBatchBytes,
+            long lingerMillis,
+            WaitStrategy waitStrategy,
+            OverflowPolicy overflowPolicy,
+            SpillQueue spillQueue) {
         this.logGroupName = logGroupName;
         this.logStreamName = logStreamName;
         client = clientFactory.getClient(endpoint);
-        queue = new LinkedBlockingQueue<>(asyncQueueDepth);
-        executor = createSingleThreadedExecutor();
         this.retryStrategyFactory = retryStrategy;
-    }
-
-    private ExecutorService createSingleThreadedExecutor() {
-        return new ThreadPoolExecutor(
-                1,
-                1,
-                0L,
-                TimeUnit.MILLISECONDS,
-                queue,
-                new ThreadPoolExecutor.DiscardOldestPolicy());
+        events = new EventRingBuffer(asyncQueueDepth, waitStrategy, overflowPolicy);
+        this.spillQueue = spillQueue;
+        int batchSize =
+                maxBatchBytes > 0 && endpoint.getProtocol() == Protocol.TCP ? maxBatchBytes : 0;
+        senderThread =
+                new Thread(
+                        new EventSender(batchSize, TimeUnit.MILLISECONDS.toNanos(lingerMillis)),
+                        "emf-agent-sink");
+        if (spillQueue != null && !spillQueue.isEmpty()) {
+            startSender();
+        }
     }
 
     public void accept(MetricsContext context) {
-        if (executor.isShutdown()) {
+        if (stopped) {
             throw new EMFClientException(
                     "Attempted to write data to a sink that has been previously shutdown.");
         }
+        startSender();
 
         if (!StringUtils.isNullOrEmpty(logGroupName)) {
             context.putMetadata("LogGroupName", logGroupName);
@@ -81,26 +206,78 @@ public class AgentSink implements ISink {
         }
 
         try {
-            for (String event : context.serialize()) {
-                executor.submit(new Sender(event, client, retryStrategyFactory));
+            for (ByteBuffer event : context.serializeToUtf8()) {
+                events.offer(event);
             }
         } catch (JsonProcessingException e) {
             log.error("Failed to serialize the metrics with the exception: ", e);
         }
     }
 
+    /** @return the number of events waiting in the queue. */
+    public int getQueueDepth() {
+        return events.size();
+    }
+
+    /**
+     * @return the number of events dropped by the overflow policy of a full queue, or because the
+     *     spill queue was full
+     */
+    public long getDroppedEventCount() {
+        return events.getDroppedCount() + spillDroppedCount.sum();
+    }
+
+    /** @return the number of bytes in all dropped events. */
+    public long getDroppedByteCount() {
+        return events.getDroppedBytes() + spillDroppedBytes.sum();
+    }
+
+    /** @return the number of events spilled to disk and waiting to be replayed. */
+    public long getSpilledEventCount() {
+        return spillQueue == null ? 0 : spillQueue.size();
+    }
+
+    /** @return the number of batches written, including failed ones. */
+    public long getBatchCount() {
+        return batchCount.sum();
+    }
+
+    /** @return the number of events in all batches written. */
+    public long getBatchedEventCount() {
+        return batchedEventCount.sum();
+    }
+
+    /** @return the number of bytes in all batches written. */
+    public long getBatchedByteCount() {
+        return batchedByteCount.sum();
+    }
+
+    private void startSender() {
+        if (!senderStarted.get() && senderStarted.compareAndSet(false, true)) {
+            senderThread.start();
+        }
+    }
+
     @Override
     public CompletableFuture<Void> shutdown() {
-        executor.shutdown();
+        stopped = true;
+        if (senderStarted.compareAndSet(false, true)) {
+            // Nothing was ever queued, and the sender thread will not be started anymore
+            if (spillQueue != null) {
+                spillQueue.close();
+            }
+            return CompletableFuture.completedFuture(null);
+        }
+        LockSupport.unpark(senderThread);
         return CompletableFuture.supplyAsync(
                 () -> {
                     try {
-                        while ((!executor.awaitTermination(1000, TimeUnit.MILLISECONDS))) {
-                            // we add 1 because we assume that at least one task is running if the
-                            // queue is blocked
+                        senderThread.join(1000);
+                        while (senderThread.isAlive()) {
                             log.debug(
-                                    "Waiting for graceful shutdown to complete. {} tasks pending.",
-                                    queue.size() + 1);
+                                    "Waiting for graceful shutdown to complete. {} events pending.",
+                                    getQueueDepth());
+                            senderThread.join(1000);
                         }
                     } catch (InterruptedException e) {
                         log.warn("Thread terminated while awaiting shutdown.");
@@ -109,29 +286,207 @@ public class AgentSink implements ISink {
                 });
     }
 
-    @AllArgsConstructor
-    private static class Sender implements Runnable {
-        private final String event;
-        private final SocketClient client;
-        private final Supplier<RetryStrategy> retryStrategyFactory;
+    /**
+     * Runs on the sender thread until shutdown, draining the queued events. With batching enabled,
+     * the events of a batch are handed to the client in a single call, see {@link
+     * SocketClient#sendMessages(ByteBuffer[], int, int)}. Without batching, each event is a batch
+     * of one.
+     */
+    private final class EventSender implements Runnable {
+        /** The max size in bytes of a batch, or 0 if batching is disabled. */
+        private final int maxBatchBytes;
+
+        private final long lingerNanos;
+
+        /** The events of the batch being sent, reused across batches. */
+        private ByteBuffer[] batch = new ByteBuffer[16];
+
+        /** An event that did not fit into the previous batch. */
+        private ByteBuffer next;
+
+        /** The spill queue, until it fails. */
+        private SpillQueue spill = spillQueue;
+
+        private EventSender(int maxBatchBytes, long lingerNanos) {
+            this.maxBatchBytes = maxBatchBytes;
+            this.lingerNanos = lingerNanos;
+        }
 
         @Override
         public void run() {
-            if (!StringUtils.isNullOrEmpty(event)) {
+            try {
+                while (true) {
+                    if (spill != null && !spill.isEmpty() && !replay()) {
+                        return;
+                    }
+                    ByteBuffer first = next;
+                    next = null;
+                    if (first == null) {
+                        first = events.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    }
+                    if (first == null) {
+                        if (stopped && events.isEmpty()) {
+                            return;
+                        }
+                    } else {
+                        fillAndSend(first);
+                    }
+                }
+            } catch (InterruptedException e) {
+                log.warn("Thread was interrupted while sending EMF events.");
+            } finally {
+                if (spill != null) {
+                    // Keep the events not sent yet on disk for the next sink
+                    spillQueued();
+                    spill.close();
+                }
+            }
+        }
+
+        /**
+         * Write the spilled events in order, backing off while the agent can not be reached and
+         * spilling new events meanwhile. After shutdown, an event is retried as often as it would
+         * be without spilling.
+         *
+         * @return false if the sink was shut down while the agent could not be reached
+         */
+        private boolean replay() throws InterruptedException {
+            RetryStrategy backoff = null;
+            int failures = 0;
+            while (true) {
                 try {
-                    sendMessageForMaxAttempts();
-                } catch (InterruptedException e) {
-                    log.warn("Thread was interrupted while sending EMF event.");
+                    ByteBuffer event = spill.peek();
+                    if (event == null) {
+                        return true;
+                    }
+                    client.sendMessage(event);
+                    spill.acknowledge();
+                    backoff = null;
+                    failures = 0;
+                    continue;
+                } catch (IOException e) {
+                    log.error("Failed to read the EMF spill queue. Spilling is disabled.", e);
+                    spill.close();
+                    spill = null;
+                    return true;
+                } catch (Exception e) {
+                    log.debug("Failed to write a spilled message to the socket. Backing off.", e);
+                }
+                if (stopped && ++failures >= Constants.MAX_ATTEMPTS_PER_MESSAGE) {
+                    return false;
+                }
+                backoff = backoff != null ? backoff : retryStrategyFactory.get();
+                spillQueuedFor(TimeUnit.MILLISECONDS.toNanos(backoff.next()));
+            }
+        }
+
+        /** Move the queued events to the spill queue, in order. */
+        private void spillQueued() {
+            if (next != null) {
+                spill(next);
+                next = null;
+            }
+            ByteBuffer event;
+            while ((event = events.poll()) != null) {
+                spill(event);
+            }
+        }
+
+        /** Move queued events to the spill queue until a time has passed or on shutdown. */
+        private void spillQueuedFor(long waitNanos) throws InterruptedException {
+            spillQueued();
+            long deadline = System.nanoTime() + waitNanos;
+            long wait;
+            while (!stopped && (wait = deadline - System.nanoTime()) > 0) {
+                ByteBuffer event = events.poll(wait, TimeUnit.NANOSECONDS);
+                if (event != null) {
+                    spill(event);
                 }
             }
         }
 
-        private void sendMessageForMaxAttempts() throws InterruptedException {
+        private void spill(ByteBuffer event) {
+            try {
+                if (spill.append(event)) {
+                    return;
+                }
+            } catch (IOException e) {
+                log.warn("Failed to spill an EMF event to disk.", e);
+            }
+            spillDroppedCount.increment();
+            spillDroppedBytes.add(event.remaining());
+        }
+
+        private void fillAndSend(ByteBuffer first) throws InterruptedException {
+            int count = add(first, 0);
+            int size = first.remaining();
+            long deadline = System.nanoTime() + lingerNanos;
+            while (size < maxBatchBytes) {
+                ByteBuffer event = events.poll();
+                if (event == null) {
+                    long wait = deadline - System.nanoTime();
+                    if (wait <= 0 || stopped) {
+                        break;
+                    }
+                    event = events.poll(wait, TimeUnit.NANOSECONDS);
+                    if (event == null) {
+                        break;
+                    }
+                }
+                if (event.remaining() > maxBatchBytes - size) {
+                    next = event;
+                    break;
+                }
+                count = add(event, count);
+                size += event.remaining();
+            }
+            try {
+                sendBatch(count, size);
+            } finally {
+                Arrays.fill(batch, 0, count, null);
+            }
+        }
+
+        private int add(ByteBuffer event, int count) {
+            if (count == batch.length) {
+                batch = Arrays.copyOf(batch, 2 * count);
+            }
+            batch[count] = event;
+            return count + 1;
+        }
+
+        private void sendBatch(int count, int size) throws InterruptedException {
+            if (size == 0) {
+                return;
+            }
+            if (maxBatchBytes > 0) {
+                batchCount.increment();
+                batchedEventCount.add(count);
+                batchedByteCount.add(size);
+            }
+            for (int i = 0; i < count; i++) {
+                batch[i].mark();
+            }
+            if (spill == null) {
+                sendBatchForMaxAttempts(count);
+                return;
+            }
+            try {
+                write(count);
+            } catch (Exception e) {
+                log.debug("Failed to write the message to the socket. Spilling it to disk.", e);
+                for (int i = 0; i < count; i++) {
+                    spill((ByteBuffer) batch[i].reset());
+                }
+            }
+        }
+
+        private void sendBatchForMaxAttempts(int count) throws InterruptedException {
             RetryStrategy backoff = null;
 
             for (int i = 0; i < Constants.MAX_ATTEMPTS_PER_MESSAGE; i++) {
                 try {
-                    client.sendMessage(event + "\n");
+                    write(count);
                     return;
                 } catch (Exception e) {
                     log.debug(
@@ -142,5 +497,17 @@ public class AgentSink implements ISink {
                 }
             }
         }
+
+        /** Write the events of the batch from their marked positions, which failed writes move. */
+        private void write(int count) {
+            for (int i = 0; i < count; i++) {
+                batch[i].reset();
+            }
+            if (count == 1) {
+                client.sendMessage(batch[0]);
+            } else {
+                client.sendMessages(batch, 0, count);
+            }
+        }
     }
 }
@@ -0,0 +1,289 @@
+/*
+ *   Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package software.amazon.cloudwatchlogs.emf.sinks;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded ring buffer of serialized events, written by any number of producers and read by a
+ * single consumer, in the style of a Disruptor. Slots are allocated once, and neither side blocks
+ * on a lock or allocates per event.
+ *
+ * <p>A producer claims the next sequence, then the slot of that sequence, stores its event in the
+ * slot and publishes the sequence in it. What happens while the ring is full depends on the {@link
+ * OverflowPolicy}. Overwriting policies claim the sequence with a single atomic increment, and the
+ * new event replaces the oldest unread one; the consumer skips sequences whose slot has already
+ * been overwritten. The other policies only claim a sequence while there is room, with a
+ * compare-and-set, and drop or wait otherwise.
+ *
+ * <p>A slot is claimed with a compare-and-set that marks it busy, by a producer while it stores
+ * its event and by the consumer while it takes one, so an event is only ever read under the
+ * sequence it was published with. Only producers a whole lap of the ring apart contend for a slot,
+ * and they briefly yield while it is busy. The sequence of a slot never moves back, so the
+ * consumer can not miss a lap. Evicted and rejected events are counted by the producer, so every
+ * offered event is either read once, in the order of its sequence, or counted as dropped once.
+ */
+final class EventRingBuffer {
+    /** How long a blocked producer parks before checking for room again. */
+    private static final long BLOCK_PARK_NANOS = 50_000;
+
+    private final int capacity;
+    private final AtomicReferenceArray<ByteBuffer> events;
+
+    /**
+     * Per slot, twice the last sequence claimed in it, plus one while the slot is busy, i.e. being
+     * written by the producer of that sequence or read by the consumer.
+     */
+    private final AtomicLongArray sequences;
+
+    /** The next sequence to claim. */
+    private final AtomicLong tail = new AtomicLong();
+
+    /** The next sequence to read. Only written by the consumer. */
+    private volatile long head;
+
+    private final WaitStrategy waitStrategy;
+    private final OverflowPolicy overflowPolicy;
+    private final LongAdder droppedCount = new LongAdder();
+    private final LongAdder droppedBytes = new LongAdder();
+
+    private volatile Thread consumer;
+    private volatile boolean parked;
+
+    EventRingBuffer(int capacity, WaitStrategy waitStrategy) {
+        this(capacity, waitStrategy, OverflowPolicy.dropOldest());
+    }
+
+    EventRingBuffer(int capacity, WaitStrategy waitStrategy, OverflowPolicy overflowPolicy) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Ring buffer capacity must be greater than 0");
+        }
+        this.capacity = capacity;
+        this.events = new AtomicReferenceArray<>(capacity);
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            // As if published one lap before the first sequence
+            sequences.set(i, published(i - capacity));
+        }
+        this.waitStrategy = waitStrategy;
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * Add an event, applying the {@link OverflowPolicy} if the ring is full. Only blocks with
+     * {@link OverflowPolicy.Action#BLOCK}.
+     *
+     * @param event the event
+     * @return true if the event was queued, false if it was dropped
+     */
+    boolean offer(ByteBuffer event) {
+        switch (overflowPolicy.getAction()) {
+            case DROP_NEWEST:
+                return offerIfRoom(event) || reject(event);
+            case BLOCK:
+                return offerIfRoom(event) || offerWhenRoom(event) || reject(event);
+            case SAMPLE:
+                if (offerIfRoom(event)) {
+                    return true;
+                }
+                if (ThreadLocalRandom.current().nextInt(overflowPolicy.getSampleRate()) != 0) {
+                    return reject(event);
+                }
+                publish(tail.getAndIncrement(), event);
+                return true;
+            default:
+                publish(tail.getAndIncrement(), event);
+                return true;
+        }
+    }
+
+    private boolean offerIfRoom(ByteBuffer event) {
+        long sequence;
+        do {
+            sequence = tail.get();
+            if (sequence - head >= capacity) {
+                return false;
+            }
+        } while (!tail.compareAndSet(sequence, sequence + 1));
+        publish(sequence, event);
+        return true;
+    }
+
+    private boolean offerWhenRoom(ByteBuffer event) {
+        long deadline = System.nanoTime() + overflowPolicy.getTimeoutNanos();
+        while (true) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            LockSupport.parkNanos(this, Math.min(remaining, BLOCK_PARK_NANOS));
+            if (offerIfRoom(event)) {
+                return true;
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                return false;
+            }
+        }
+    }
+
+    private boolean reject(ByteBuffer event) {
+        droppedCount.increment();
+        droppedBytes.add(event.remaining());
+        return false;
+    }
+
+    private void publish(long sequence, ByteBuffer event) {
+        int index = index(sequence);
+        while (true) {
+            long state = sequences.get(index);
+            if (state >> 1 >= sequence) {
+                // A producer a lap ahead already took the slot
+                reject(event);
+                return;
+            }
+            if (isBusy(state)) {
+                // Written by a producer a lap behind, or read by the consumer
+                Thread.yield();
+            } else if (sequences.compareAndSet(index, state, busy(sequence))) {
+                break;
+            }
+        }
+        ByteBuffer evicted = events.getAndSet(index, event);
+        if (evicted != null) {
+            // An unread event a lap behind, the consumer takes events out of their slots
+            reject(evicted);
+        }
+        sequences.set(index, published(sequence));
+        if (parked) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    /**
+     * Take the next event without waiting. Must only be called by the consumer.
+     *
+     * @return the event, or null if no event is available
+     */
+    ByteBuffer poll() {
+        while (true) {
+            long next = head;
+            int index = index(next);
+            long state = sequences.get(index);
+            if (state >> 1 > next) {
+                // Overwritten by a later sequence, whose producer counts the drop
+                head = next + 1;
+                continue;
+            }
+            if (state != published(next)) {
+                // Not published yet
+                return null;
+            }
+            if (!sequences.compareAndSet(index, state, busy(next))) {
+                // Claimed by a producer a lap ahead
+                continue;
+            }
+            ByteBuffer event = events.getAndSet(index, null);
+            sequences.set(index, state);
+            // Empty the slot before freeing it, so producers waiting for room never evict
+            head = next + 1;
+            if (event != null) {
+                return event;
+            }
+        }
+    }
+
+    /**
+     * Take the next event, waiting with the {@link WaitStrategy} up to a timeout if none is
+     * available. Must only be called by the consumer.
+     *
+     * @param timeout the max time to wait
+     * @param unit the unit of the timeout
+     * @return the event, or null if none became available in time
+     * @throws InterruptedException if the consumer is interrupted while waiting
+     */
+    ByteBuffer poll(long timeout, TimeUnit unit) throws InterruptedException {
+        consumer = Thread.currentThread();
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (int idleCount = 0; ; idleCount++) {
+            ByteBuffer event = poll();
+            if (event != null) {
+                return event;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return null;
+            }
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            waitStrategy.idle(this, idleCount, remaining);
+        }
+    }
+
+    /** Park the consumer until a producer publishes an event, see {@link WaitStrategy#BLOCKING}. */
+    void park(long nanos) {
+        parked = true;
+        // Check again after announcing the park, so a concurrent publish is not missed
+        if (sequences.get(index(head)) < published(head)) {
+            LockSupport.parkNanos(this, nanos);
+        }
+        parked = false;
+    }
+
+    /** @return the number of unread events, which may include events already overwritten. */
+    int size() {
+        return (int) Math.max(0, Math.min(capacity, tail.get() - head));
+    }
+
+    /** @return true if no events are waiting. */
+    boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /** @return the number of events evicted or rejected before they were read. */
+    long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    /** @return the number of bytes in all events evicted or rejected before they were read. */
+    long getDroppedBytes() {
+        return droppedBytes.sum();
+    }
+
+    private int index(long sequence) {
+        return (int) (sequence % capacity);
+    }
+
+    private static long published(long sequence) {
+        return sequence << 1;
+    }
+
+    private static long busy(long sequence) {
+        return (sequence << 1) | 1;
+    }
+
+    private static boolean isBusy(long state) {
+        return (state & 1) != 0;
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ *   Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package software.amazon.cloudwatchlogs.emf.sinks;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A client that would connect to a TCP socket through a non-blocking {@link SocketChannel}.
+ *
+ * <p>Messages are written straight from their buffers, and the messages of a batch are written
+ * with a single gathering write. Writes the socket does not take at once are continued once the
+ * socket is writable, timing out if the socket takes no bytes for a while. The connection disables
+ * Nagle's algorithm, since messages are already batched, and can set the size of the socket send
+ * buffer. The address of the endpoint is resolved once, and again only after a failure to connect.
+ */
+@Slf4j
+public class NioTCPClient implements SocketClient {
+    private static final long DEFAULT_TIMEOUT_MILLIS = 5000;
+
+    private final Endpoint endpoint;
+    private final int sendBufferSize;
+    private final long timeoutNanos;
+
+    private InetSocketAddress address;
+    private SocketChannel channel;
+    private Selector selector;
+    private final ByteBuffer[] single = new ByteBuffer[1];
+
+    public NioTCPClient(Endpoint endpoint) {
+        this(endpoint, 0);
+    }
+
+    /**
+     * @param endpoint the endpoint to connect to
+     * @param sendBufferSize the size in bytes of the socket send buffer, or 0 for the default
+     */
+    public NioTCPClient(Endpoint endpoint, int sendBufferSize) {
+        this(endpoint, sendBufferSize, DEFAULT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param endpoint the endpoint to connect to
+     * @param sendBufferSize the size in bytes of the socket send buffer, or 0 for the default
+     * @param timeout the max time to wait for the socket to connect or to take a write
+     * @param unit the unit of the timeout
+     */
+    public NioTCPClient(Endpoint endpoint, int sendBufferSize, long timeout, TimeUnit unit) {
+        this.endpoint = endpoint;
+        this.sendBufferSize = sendBufferSize;
+        this.timeoutNanos = unit.toNanos(timeout);
+    }
+
+    @Override
+    public void sendMessage(String message) {
+        sendMessage(ByteBuffer.wrap(message.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Override
+    public synchronized void sendMessage(ByteBuffer message) {
+        single[0] = message.duplicate();
+        try {
+            sendMessages(single, 0, 1);
+        } finally {
+            single[0] = null;
+        }
+    }
+
+    @Override
+    public synchronized void sendMessages(ByteBuffer[] messages, int offset, int length) {
+        if (channel == null || !channel.isOpen()) {
+            connect();
+        }
+
+        try {
+            write(messages, offset, length);
+        } catch (Exception e) {
+            closeQuietly();
+            throw new RuntimeException("Failed to write message to the socket.", e);
+        }
+    }
+
+    private void connect() {
+        try {
+            if (address == null) {
+                address = new InetSocketAddress(endpoint.getHost(), endpoint.getPort());
+            }
+            channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            if (sendBufferSize > 0) {
+                channel.setOption(StandardSocketOptions.SO_SNDBUF, sendBufferSize);
+            }
+            selector = Selector.open();
+            SelectionKey key = channel.register(selector, SelectionKey.OP_CONNECT);
+            if (!channel.connect(address)) {
+                long deadline = System.nanoTime() + timeoutNanos;
+                while (!channel.finishConnect()) {
+                    await(deadline);
+                }
+            }
+            key.interestOps(SelectionKey.OP_WRITE);
+        } catch (Exception e) {
+            closeQuietly();
+            // The endpoint may have moved, so resolve it again on the next attempt
+            address = null;
+            throw new RuntimeException("Failed to connect to the socket.", e);
+        }
+    }
+
+    private void write(ByteBuffer[] messages, int offset, int length) throws IOException {
+        int end = offset + length;
+        long deadline = System.nanoTime() + timeoutNanos;
+        while (true) {
+            // Skip the messages already written
+            while (offset < end && !messages[offset].hasRemaining()) {
+                offset++;
+            }
+            if (offset == end) {
+                return;
+            }
+            if (channel.write(messages, offset, end - offset) > 0) {
+                deadline = System.nanoTime() + timeoutNanos;
+            } else {
+                await(deadline);
+            }
+        }
+    }
+
+    /** Wait for the registered operation of the channel to be ready, up to a deadline. */
+    private void await(long deadline) throws IOException {
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+            throw new SocketTimeoutException("Timed out waiting for the socket.");
+        }
+        selector.select(Math.max(1, TimeUnit.NANOSECONDS.toMillis(remaining)));
+        selector.selectedKeys().clear();
+    }
+
+    private void closeQuietly() {
+        try {
+            close();
+        } catch (IOException e) {
+            log.debug("Failed to close the socket.", e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            if (selector != null) {
+                selector.close();
+            }
+        } finally {
+            selector = null;
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+        }
+    }
+}
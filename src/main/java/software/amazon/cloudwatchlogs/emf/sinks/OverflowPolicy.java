@@ -0,0 +1,102 @@
+/*
+ *   Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package software.amazon.cloudwatchlogs.emf.sinks;
+
+import java.util.concurrent.TimeUnit;
+import lombok.Getter;
+
+/**
+ * What an {@link AgentSink} does with a new event while its queue is full. Callers on latency
+ * critical paths should use a policy that never blocks, while batch jobs may block to lose no
+ * events. Dropped events and bytes are counted by the sink for every policy.
+ */
+@Getter
+public final class OverflowPolicy {
+
+    /** The kinds of overflow policy. */
+    public enum Action {
+        /** Drop the oldest queued event to make room for the new one. */
+        DROP_OLDEST,
+        /** Drop the new event. */
+        DROP_NEWEST,
+        /** Wait up to a timeout for room in the queue, then drop the new event. */
+        BLOCK,
+        /** Keep one in a number of new events, replacing the oldest queued event. */
+        SAMPLE
+    }
+
+    private static final OverflowPolicy DROP_OLDEST =
+            new OverflowPolicy(Action.DROP_OLDEST, 0, 1);
+    private static final OverflowPolicy DROP_NEWEST =
+            new OverflowPolicy(Action.DROP_NEWEST, 0, 1);
+
+    private final Action action;
+    private final long timeoutNanos;
+    private final int sampleRate;
+
+    private OverflowPolicy(Action action, long timeoutNanos, int sampleRate) {
+        this.action = action;
+        this.timeoutNanos = timeoutNanos;
+        this.sampleRate = sampleRate;
+    }
+
+    /** @return a policy dropping the oldest queued event, the default. */
+    public static OverflowPolicy dropOldest() {
+        return DROP_OLDEST;
+    }
+
+    /** @return a policy dropping the new event. */
+    public static OverflowPolicy dropNewest() {
+        return DROP_NEWEST;
+    }
+
+    /**
+     * @param timeout the max time to wait for room in the queue
+     * @param unit the unit of the timeout
+     * @return a policy blocking the caller until there is room, dropping the new event on timeout
+     */
+    public static OverflowPolicy block(long timeout, TimeUnit unit) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("Overflow timeout must not be negative");
+        }
+        return new OverflowPolicy(Action.BLOCK, unit.toNanos(timeout), 1);
+    }
+
+    /**
+     * @param rate keep one in this many new events, picked at random
+     * @return a policy that keeps a sample of the new events, each replacing the oldest queued
+     *     event, and drops the others
+     */
+    public static OverflowPolicy sample(int rate) {
+        if (rate <= 0) {
+            throw new IllegalArgumentException("Overflow sample rate must be greater than 0");
+        }
+        return new OverflowPolicy(Action.SAMPLE, 0, rate);
+    }
+
+    @Override
+    public String toString() {
+        switch (action) {
+            case BLOCK:
+                return "BLOCK(" + TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + "ms)";
+            case SAMPLE:
+                return "SAMPLE(1/" + sampleRate + ")";
+            default:
+                return action.name();
+        }
+    }
+}
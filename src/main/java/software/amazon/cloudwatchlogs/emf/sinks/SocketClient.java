@@ -17,6 +17,8 @@
 package software.amazon.cloudwatchlogs.emf.sinks;
 
 import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 
 /** An interface for clients that connect to a socket. */
 public interface SocketClient extends Closeable {
@@ -27,4 +29,38 @@ public interface SocketClient extends Closeable {
      * @param message The message to be sent
      */
     void sendMessage(String message);
+
+    /**
+     * Send a UTF-8 encoded message through the Socket Client. The bytes between the position and
+     * the limit of the buffer are sent. Clients should override this to write the bytes as they
+     * are; the default implementation decodes them and delegates to {@link #sendMessage(String)}.
+     *
+     * @param message The message to be sent
+     */
+    default void sendMessage(ByteBuffer message) {
+        sendMessage(StandardCharsets.UTF_8.decode(message.duplicate()).toString());
+    }
+
+    /**
+     * Send UTF-8 encoded messages in a single write. The bytes between the position and the limit
+     * of each buffer are sent, and the positions may be moved by the bytes written. Clients should
+     * override this to avoid copying the messages; the default implementation copies them into one
+     * buffer and delegates to {@link #sendMessage(ByteBuffer)}.
+     *
+     * @param messages The messages to be sent
+     * @param offset The index of the first message to send
+     * @param length The number of messages to send
+     */
+    default void sendMessages(ByteBuffer[] messages, int offset, int length) {
+        int size = 0;
+        for (int i = offset; i < offset + length; i++) {
+            size += messages[i].remaining();
+        }
+        ByteBuffer joined = ByteBuffer.allocate(size);
+        for (int i = offset; i < offset + length; i++) {
+            joined.put(messages[i].duplicate());
+        }
+        joined.flip();
+        sendMessage(joined);
+    }
 }
@@ -17,11 +17,31 @@
 package software.amazon.cloudwatchlogs.emf.sinks;
 
 public class SocketClientFactory {
+    private final boolean useNioClient;
+    private final int sendBufferSize;
+
+    public SocketClientFactory() {
+        this(false, 0);
+    }
+
+    /**
+     * @param useNioClient whether TCP endpoints use a {@link NioTCPClient} instead of a {@link
+     *     TCPClient}
+     * @param sendBufferSize the size in bytes of the socket send buffer of a {@link NioTCPClient},
+     *     or 0 for the system default
+     */
+    public SocketClientFactory(boolean useNioClient, int sendBufferSize) {
+        this.useNioClient = useNioClient;
+        this.sendBufferSize = sendBufferSize;
+    }
 
     public SocketClient getClient(Endpoint endpoint) {
         if (endpoint.getProtocol() == Protocol.UDP) {
             return new UDPClient(endpoint);
         }
+        if (useNioClient) {
+            return new NioTCPClient(endpoint, sendBufferSize);
+        }
         return new TCPClient(endpoint);
     }
 }
@@ -0,0 +1,330 @@
+/*
+ *   Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package software.amazon.cloudwatchlogs.emf.sinks;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A persistent FIFO queue of serialized events, written to an append-only log of memory-mapped
+ * segment files in a directory. An {@link AgentSink} spills events into it while the agent can not
+ * be reached and replays them in order once it can.
+ *
+ * <p>Each segment file has a fixed size and starts with the offset of its first unacknowledged
+ * record, followed by records of a length and the bytes of an event. A zero length ends the
+ * segment. An event is only removed by {@link #acknowledge()} once written, and a segment file is
+ * deleted as soon as all its records are acknowledged. At most the segment being read and the one
+ * being written are mapped at a time, and the total size of the segment files is capped, so new
+ * events are rejected while the queue is full. Segments left by a previous process are replayed
+ * first, and corrupt ones are deleted.
+ *
+ * <p>Segments are not unmapped explicitly, since Java 8 has no supported way to do so. Only the
+ * read and write segments are referenced, and the mapping of any other segment is released once its
+ * buffer is garbage collected. Until then, a deleted segment keeps using its disk space, or can not
+ * be deleted at all on Windows.
+ *
+ * <p>Written records are persisted by the operating system even if the process exits without
+ * closing the queue. They may be lost if the host fails before they are flushed to disk.
+ *
+ * <p>This class is not thread safe; it is only used by the sender thread of a sink.
+ */
+@Slf4j
+public class SpillQueue implements Closeable {
+    private static final String SEGMENT_PREFIX = "emf-spill-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int SEGMENT_HEADER_BYTES = Integer.BYTES;
+    private static final int RECORD_HEADER_BYTES = Integer.BYTES;
+
+    private final Path directory;
+    private final long maxBytes;
+    private final int segmentBytes;
+
+    /** The segment files, oldest first. The first is being read and the last is being written. */
+    private final Deque<Path> segments = new ArrayDeque<>();
+
+    private long nextSegmentId;
+    private MappedByteBuffer readSegment;
+    private int readPosition;
+    private Path writeFile;
+    private MappedByteBuffer writeSegment;
+    private int writePosition;
+
+    private volatile long size;
+    private volatile long byteSize;
+
+    /**
+     * Open the queue in a directory, recovering the events left there by a previous process.
+     *
+     * @param directory the directory of the segment files, which is created if it does not exist
+     * @param maxBytes the max total size in bytes of the segment files
+     * @param segmentBytes the size in bytes of a segment file, which bounds the size of an event
+     * @throws IOException if the directory or its segment files can not be read
+     */
+    public SpillQueue(Path directory, long maxBytes, int segmentBytes) throws IOException {
+        if (segmentBytes <= SEGMENT_HEADER_BYTES + RECORD_HEADER_BYTES) {
+            throw new IllegalArgumentException("Spill segment size is too small: " + segmentBytes);
+        }
+        if (maxBytes < segmentBytes) {
+            throw new IllegalArgumentException(
+                    "Spill queue max size must be at least the size of a segment");
+        }
+        this.directory = Files.createDirectories(directory);
+        this.maxBytes = maxBytes;
+        this.segmentBytes = segmentBytes;
+        recover();
+    }
+
+    /**
+     * Append an event to the queue.
+     *
+     * @param event the event, whose bytes between its position and limit are copied
+     * @return true if the event was appended, false if it does not fit into the size cap
+     * @throws IOException if a new segment file can not be created
+     */
+    public boolean append(ByteBuffer event) throws IOException {
+        int length = event.remaining();
+        int recordBytes = RECORD_HEADER_BYTES + length;
+        if (length == 0 || recordBytes > segmentBytes - SEGMENT_HEADER_BYTES) {
+            return false;
+        }
+        if (writeSegment == null || recordBytes > writeSegment.capacity() - writePosition) {
+            if ((long) (segments.size() + 1) * segmentBytes > maxBytes) {
+                return false;
+            }
+            createSegment();
+        }
+        writeSegment.position(writePosition + RECORD_HEADER_BYTES);
+        writeSegment.put(event.duplicate());
+        int end = writePosition + recordBytes;
+        if (end <= writeSegment.capacity() - RECORD_HEADER_BYTES) {
+            // A recovered segment may hold a torn record from a crashed process past the first
+            // zero length, whose bytes must not be read as the next record
+            writeSegment.putInt(end, 0);
+        }
+        // Write the length last, so a partial record is not read as a whole one
+        writeSegment.putInt(writePosition, length);
+        writePosition += recordBytes;
+        size++;
+        byteSize += length;
+        return true;
+    }
+
+    /**
+     * @return the oldest unacknowledged event, or null if the queue is empty
+     * @throws IOException if the next segment file can not be read, or the next event is missing
+     */
+    public ByteBuffer peek() throws IOException {
+        if (size == 0) {
+            return null;
+        }
+        int length = recordLength(readSegment, readPosition);
+        // Only move past segments before the one being written, which may still get more events
+        while (length == 0 && segments.size() > 1) {
+            nextReadSegment();
+            length = recordLength(readSegment, readPosition);
+        }
+        if (length == 0) {
+            throw new IOException(
+                    "Missing EMF spill record at " + readPosition + " of " + segments.peekFirst());
+        }
+        ByteBuffer record = readSegment.duplicate();
+        record.position(readPosition + RECORD_HEADER_BYTES);
+        record.limit(readPosition + RECORD_HEADER_BYTES + length);
+        return record.slice();
+    }
+
+    /**
+     * Remove the event returned by {@link #peek()} once it has been written, deleting its segment
+     * file if all of its events have been acknowledged.
+     *
+     * @throws IOException if the next segment file can not be read
+     */
+    public void acknowledge() throws IOException {
+        if (peek() == null) {
+            return;
+        }
+        int length = recordLength(readSegment, readPosition);
+        readPosition += RECORD_HEADER_BYTES + length;
+        readSegment.putInt(0, readPosition);
+        size--;
+        byteSize -= length;
+        if (readSegment != writeSegment && recordLength(readSegment, readPosition) == 0) {
+            nextReadSegment();
+        }
+    }
+
+    /** @return the number of unacknowledged events. */
+    public long size() {
+        return size;
+    }
+
+    /** @return the number of bytes in all unacknowledged events. */
+    public long byteSize() {
+        return byteSize;
+    }
+
+    /** @return true if there are no unacknowledged events. */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Flush the mapped segments to disk. The queue must not be used after closing it. The segments
+     * are unmapped once garbage collected.
+     */
+    @Override
+    public void close() {
+        if (readSegment != null) {
+            readSegment.force();
+        }
+        if (writeSegment != null && writeSegment != readSegment) {
+            writeSegment.force();
+        }
+        readSegment = null;
+        writeSegment = null;
+    }
+
+    private void recover() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream =
+                Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            stream.forEach(files::add);
+        }
+        // Segment ids are zero padded, so the names sort in the order the segments were written
+        Collections.sort(files);
+
+        for (Path file : files) {
+            nextSegmentId = Math.max(nextSegmentId, segmentId(file) + 1);
+            MappedByteBuffer segment = map(file, false);
+            int position = segment.capacity() < SEGMENT_HEADER_BYTES ? -1 : segment.getInt(0);
+            if (position < SEGMENT_HEADER_BYTES || position > segment.capacity()) {
+                log.warn("Deleting corrupt EMF spill segment {}.", file);
+                delete(file);
+                continue;
+            }
+            int start = position;
+            int length;
+            while ((length = recordLength(segment, position)) > 0) {
+                position += RECORD_HEADER_BYTES + length;
+                size++;
+                byteSize += length;
+            }
+            if (position == start) {
+                delete(file);
+                continue;
+            }
+            if (segments.isEmpty()) {
+                readSegment = segment;
+                readPosition = start;
+            }
+            segments.addLast(file);
+            // Continue writing the last segment, unless it was written with another size
+            boolean writable = segment.capacity() == segmentBytes;
+            writeFile = writable ? file : null;
+            writeSegment = writable ? segment : null;
+            writePosition = position;
+        }
+    }
+
+    private void createSegment() throws IOException {
+        Path file =
+                directory.resolve(
+                        String.format(
+                                "%s%020d%s", SEGMENT_PREFIX, nextSegmentId++, SEGMENT_SUFFIX));
+        MappedByteBuffer segment = map(file, true);
+        segment.putInt(0, SEGMENT_HEADER_BYTES);
+        segments.addLast(file);
+        writeFile = file;
+        writeSegment = segment;
+        writePosition = SEGMENT_HEADER_BYTES;
+        if (readSegment == null) {
+            readSegment = segment;
+            readPosition = SEGMENT_HEADER_BYTES;
+        }
+    }
+
+    /** Delete the fully acknowledged read segment and start reading the next one. */
+    private void nextReadSegment() throws IOException {
+        delete(segments.removeFirst());
+        Path file = segments.peekFirst();
+        if (file == null) {
+            readSegment = null;
+            return;
+        }
+        readSegment = file.equals(writeFile) ? writeSegment : map(file, false);
+        readPosition = readSegment.getInt(0);
+    }
+
+    private MappedByteBuffer map(Path file, boolean create) throws IOException {
+        try (FileChannel channel =
+                create
+                        ? FileChannel.open(
+                                file,
+                                StandardOpenOption.CREATE_NEW,
+                                StandardOpenOption.READ,
+                                StandardOpenOption.WRITE)
+                        : FileChannel.open(
+                                file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long length = create ? segmentBytes : Math.min(channel.size(), Integer.MAX_VALUE);
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+        }
+    }
+
+    /** @return the length of the record at a position, or 0 at the end of the segment. */
+    private static int recordLength(ByteBuffer segment, int position) {
+        if (position > segment.capacity() - RECORD_HEADER_BYTES) {
+            return 0;
+        }
+        int length = segment.getInt(position);
+        if (length < 0 || length > segment.capacity() - position - RECORD_HEADER_BYTES) {
+            return 0;
+        }
+        return length;
+    }
+
+    private static long segmentId(Path file) {
+        String name = file.getFileName().toString();
+        try {
+            return Long.parseLong(
+                    name.substring(
+                            SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Failed to delete EMF spill segment {}.", file, e);
+        }
+    }
+}
@@ -20,6 +20,8 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import lombok.extern.slf4j.Slf4j;
 
 /** A client that would connect to a TCP socket. */
@@ -30,6 +32,9 @@ public class TCPClient implements SocketClient {
     private Socket socket;
     private boolean shouldConnect = true;
 
+    /** Reused to join the messages of a single write. */
+    private byte[] joined = new byte[0];
+
     public TCPClient(Endpoint endpoint) {
         this.endpoint = endpoint;
     }
@@ -50,7 +55,12 @@ public class TCPClient implements SocketClient {
     }
 
     @Override
-    public synchronized void sendMessage(String message) {
+    public void sendMessage(String message) {
+        sendMessage(ByteBuffer.wrap(message.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Override
+    public synchronized void sendMessage(ByteBuffer message) {
         if (socket == null || socket.isClosed() || shouldConnect) {
             connect();
         }
@@ -65,13 +75,40 @@ public class TCPClient implements SocketClient {
         }
 
         try {
-            os.write(message.getBytes());
+            if (message.hasArray()) {
+                os.write(
+                        message.array(),
+                        message.arrayOffset() + message.position(),
+                        message.remaining());
+            } else {
+                byte[] data = new byte[message.remaining()];
+                message.duplicate().get(data);
+                os.write(data);
+            }
         } catch (Exception e) {
             shouldConnect = true;
             throw new RuntimeException("Failed to write message to the socket.", e);
         }
     }
 
+    @Override
+    public synchronized void sendMessages(ByteBuffer[] messages, int offset, int length) {
+        int size = 0;
+        for (int i = offset; i < offset + length; i++) {
+            size += messages[i].remaining();
+        }
+        if (joined.length < size) {
+            joined = new byte[size];
+        }
+        int position = 0;
+        for (int i = offset; i < offset + length; i++) {
+            int remaining = messages[i].remaining();
+            messages[i].duplicate().get(joined, position, remaining);
+            position += remaining;
+        }
+        sendMessage(ByteBuffer.wrap(joined, 0, size));
+    }
+
     @Override
     public void close() throws IOException {
         if (socket != null) {
@@ -21,6 +21,7 @@ import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetSocketAddress;
 import java.net.SocketException;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import lombok.extern.slf4j.Slf4j;
 
@@ -44,6 +45,24 @@ class UDPClient implements SocketClient {
         flush(packet);
     }
 
+    @Override
+    public void sendMessage(ByteBuffer message) {
+        final DatagramPacket packet;
+        if (message.hasArray()) {
+            packet =
+                    new DatagramPacket(
+                            message.array(),
+                            message.arrayOffset() + message.position(),
+                            message.remaining(),
+                            inetAddress);
+        } else {
+            byte[] data = new byte[message.remaining()];
+            message.duplicate().get(data);
+            packet = new DatagramPacket(data, data.length, inetAddress);
+        }
+        flush(packet);
+    }
+
     private synchronized void flush(DatagramPacket packet) {
         try {
             if (datagramSocket == null) {
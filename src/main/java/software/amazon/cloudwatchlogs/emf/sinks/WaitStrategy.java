@@ -0,0 +1,76 @@
+/*
+ *   Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package software.amazon.cloudwatchlogs.emf.sinks;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * How the sender thread of an {@link AgentSink} waits for events while its queue is empty. The
+ * strategies trade the latency of picking up a new event against the CPU spent waiting.
+ */
+public enum WaitStrategy {
+    /** Spin without pausing. Lowest latency, but keeps a core busy while idle. */
+    BUSY_SPIN {
+        @Override
+        void idle(EventRingBuffer ring, int idleCount, long remainingNanos) {}
+    },
+
+    /** Spin briefly, then yield to other threads. */
+    YIELDING {
+        @Override
+        void idle(EventRingBuffer ring, int idleCount, long remainingNanos) {
+            if (idleCount >= SPIN_TRIES) {
+                Thread.yield();
+            }
+        }
+    },
+
+    /** Spin and yield briefly, then sleep for short intervals. */
+    SLEEPING {
+        @Override
+        void idle(EventRingBuffer ring, int idleCount, long remainingNanos) {
+            if (idleCount >= 2 * SPIN_TRIES) {
+                LockSupport.parkNanos(Math.min(remainingNanos, SLEEP_NANOS));
+            } else if (idleCount >= SPIN_TRIES) {
+                Thread.yield();
+            }
+        }
+    },
+
+    /**
+     * Park until a producer publishes an event. Uses no CPU while idle, at the cost of an unpark
+     * call by the producer that wakes the sender thread.
+     */
+    BLOCKING {
+        @Override
+        void idle(EventRingBuffer ring, int idleCount, long remainingNanos) {
+            ring.park(remainingNanos);
+        }
+    };
+
+    private static final int SPIN_TRIES = 100;
+    private static final long SLEEP_NANOS = 100_000;
+
+    /**
+     * Wait once for events to become available.
+     *
+     * @param ring the ring buffer waited on
+     * @param idleCount how many times the caller has already waited for the same event
+     * @param remainingNanos the max time to wait
+     */
+    abstract void idle(EventRingBuffer ring, int idleCount, long remainingNanos);
+}
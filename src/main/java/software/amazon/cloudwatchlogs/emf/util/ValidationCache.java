@@ -0,0 +1,158 @@
+/*
+ *   Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package software.amazon.cloudwatchlogs.emf.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.Getter;
+
+/**
+ * A bounded, concurrent set of strings that already passed validation. Each string is remembered
+ * together with the kinds of validation it passed, so a dimension value is not mistaken for a
+ * valid dimension name. Once the cache is full, it starts over with a new, empty generation, so
+ * strings that are still in use are validated once more and the set never holds more than the
+ * max size, give or take strings added concurrently with the switch.
+ */
+public class ValidationCache {
+    /** The string is a valid dimension name. */
+    public static final int DIMENSION_NAME = 1;
+    /** The string is a valid dimension value. */
+    public static final int DIMENSION_VALUE = 1 << 1;
+    /** The string is a valid metric name. */
+    public static final int METRIC_NAME = 1 << 2;
+
+    private final AtomicReference<Generation> generation =
+            new AtomicReference<>(new Generation(0));
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /** The maximum number of strings kept. A size of 0 disables the cache. */
+    @Getter private final int maxSize;
+
+    public ValidationCache(int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("Validation cache size cannot be negative");
+        }
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Test if a string already passed a kind of validation, and count the probe as a hit or miss.
+     *
+     * @param value the string
+     * @param kind the kind of validation, e.g. {@link #DIMENSION_NAME}
+     * @return true if the string is known to be valid
+     */
+    public boolean isValid(String value, int kind) {
+        return count(isValid(generation.get().validated, value, kind));
+    }
+
+    /**
+     * Test if a dimension name and value both already passed validation, counted as one probe.
+     *
+     * @param name the dimension name
+     * @param value the dimension value
+     * @return true if both are known to be valid
+     */
+    public boolean isValidDimension(String name, String value) {
+        Map<String, Integer> validated = generation.get().validated;
+        return count(
+                isValid(validated, name, DIMENSION_NAME)
+                        && isValid(validated, value, DIMENSION_VALUE));
+    }
+
+    private static boolean isValid(Map<String, Integer> validated, String value, int kind) {
+        Integer kinds = value == null ? null : validated.get(value);
+        return kinds != null && (kinds & kind) != 0;
+    }
+
+    private boolean count(boolean hit) {
+        if (hit) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return hit;
+    }
+
+    /**
+     * Remember that a string passed a kind of validation.
+     *
+     * @param value the string
+     * @param kind the kind of validation, e.g. {@link #DIMENSION_NAME}
+     */
+    public void setValid(String value, int kind) {
+        if (maxSize == 0) {
+            return;
+        }
+        Generation current = generation.get();
+        Integer kinds = current.validated.putIfAbsent(value, kind);
+        if (kinds == null) {
+            if (current.size.incrementAndGet() > maxSize) {
+                // Full: start a new generation holding only this string
+                Generation next = new Generation(current.number + 1);
+                next.validated.put(value, kind);
+                next.size.set(1);
+                generation.compareAndSet(current, next);
+            }
+        } else if ((kinds & kind) != kind) {
+            current.validated.merge(value, kind, (a, b) -> a | b);
+        }
+    }
+
+    /** @return the number of strings currently kept. */
+    public int size() {
+        return generation.get().validated.size();
+    }
+
+    /** @return the number of times the cache filled up and started over. */
+    public long getGeneration() {
+        return generation.get().number;
+    }
+
+    /** @return the number of probes that found an already validated string. */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /** @return the number of probes that required a full validation. */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /** Forget all strings and reset the counters. */
+    public void clear() {
+        generation.set(new Generation(0));
+        hits.reset();
+        misses.reset();
+    }
+
+    /** The strings remembered since the cache last started over. */
+    private static final class Generation {
+        private final long number;
+        private final Map<String, Integer> validated = new ConcurrentHashMap<>();
+        /** The number of strings added, which unlike the map size is exact under contention. */
+        private final AtomicInteger size = new AtomicInteger();
+
+        private Generation(long number) {
+            this.number = number;
+        }
+    }
+}
@@ -20,16 +20,50 @@ import java.time.Instant;
 import java.util.Map;
 import org.apache.commons.lang3.StringUtils;
 import software.amazon.cloudwatchlogs.emf.Constants;
+import software.amazon.cloudwatchlogs.emf.config.EnvironmentConfigurationProvider;
 import software.amazon.cloudwatchlogs.emf.exception.*;
 import software.amazon.cloudwatchlogs.emf.model.StorageResolution;
 import software.amazon.cloudwatchlogs.emf.model.Unit;
 
 public class Validator {
+    /** Created on first use, sized from the configuration. */
+    private static volatile ValidationCache validationCache;
 
     private Validator() {
         throw new IllegalStateException("Utility class");
     }
 
+    /**
+     * @return the cache of dimension names, dimension values and metric names that already passed
+     *     validation, sized from the configured validation cache size unless it was replaced by
+     *     {@link #setValidationCacheSize(int)}
+     */
+    public static ValidationCache getValidationCache() {
+        ValidationCache cache = validationCache;
+        if (cache == null) {
+            synchronized (Validator.class) {
+                cache = validationCache;
+                if (cache == null) {
+                    int maxSize =
+                            EnvironmentConfigurationProvider.getConfig().getValidationCacheSize();
+                    cache = new ValidationCache(Math.max(0, maxSize));
+                    validationCache = cache;
+                }
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Replace the validation cache with an empty one of the given size, overriding the configured
+     * size. A size of 0 disables the cache.
+     *
+     * @param maxSize the maximum number of validated strings to keep
+     */
+    public static void setValidationCacheSize(int maxSize) {
+        validationCache = new ValidationCache(maxSize);
+    }
+
     /**
      * Validates Dimension Set.
      *
@@ -42,6 +76,10 @@ public class Validator {
      */
     public static void validateDimensionSet(String dimensionName, String dimensionValue)
             throws InvalidDimensionException {
+        ValidationCache cache = getValidationCache();
+        if (cache.isValidDimension(dimensionName, dimensionValue)) {
+            return;
+        }
 
         if (dimensionName == null || dimensionName.trim().isEmpty()) {
             throw new InvalidDimensionException("Dimension name cannot be empty");
@@ -80,6 +118,9 @@ public class Validator {
         if (dimensionName.startsWith(":")) {
             throw new InvalidDimensionException("Dimension name cannot start with ':'");
         }
+
+        cache.setValid(dimensionName, ValidationCache.DIMENSION_NAME);
+        cache.setValid(dimensionValue, ValidationCache.DIMENSION_VALUE);
     }
 
     /**
@@ -103,17 +144,24 @@ public class Validator {
             Map<String, StorageResolution> metricNameAndResolutionMap)
             throws InvalidMetricException {
 
-        if (name == null || name.trim().isEmpty()) {
-            throw new InvalidMetricException(
-                    "Metric name " + name + " must include at least one non-whitespace character");
-        }
+        ValidationCache cache = getValidationCache();
+        if (!cache.isValid(name, ValidationCache.METRIC_NAME)) {
+            if (name == null || name.trim().isEmpty()) {
+                throw new InvalidMetricException(
+                        "Metric name "
+                                + name
+                                + " must include at least one non-whitespace character");
+            }
 
-        if (name.length() > Constants.MAX_METRIC_NAME_LENGTH) {
-            throw new InvalidMetricException(
-                    "Metric name exceeds maximum length of "
-                            + Constants.MAX_METRIC_NAME_LENGTH
-                            + ": "
-                            + name);
+            if (name.length() > Constants.MAX_METRIC_NAME_LENGTH) {
+                throw new InvalidMetricException(
+                        "Metric name exceeds maximum length of "
+                                + Constants.MAX_METRIC_NAME_LENGTH
+                                + ": "
+                                + name);
+            }
+
+            cache.setValid(name, ValidationCache.METRIC_NAME);
         }
 
         if (!Double.isFinite(value)) {
@@ -138,6 +186,21 @@ public class Validator {
         }
     }
 
+    /**
+     * Validates the relative error of histogram metrics.
+     *
+     * @param relativeError the maximum relative error of histogram bucket values
+     * @throws InvalidMetricException if the relative error is not in (0, 0.5]
+     */
+    public static void validateHistogramRelativeError(double relativeError)
+            throws InvalidMetricException {
+        if (!(relativeError > 0 && relativeError <= 0.5)) {
+            throw new InvalidMetricException(
+                    "Histogram relative error must be greater than 0 and at most 0.5: "
+                            + relativeError);
+        }
+    }
+
     /**
      * Validates Namespace.
      *
@@ -23,7 +23,12 @@ import org.junit.runner.RunWith;
 import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
+import software.amazon.cloudwatchlogs.emf.Constants;
 import software.amazon.cloudwatchlogs.emf.environment.Environments;
+import software.amazon.cloudwatchlogs.emf.model.EventSerializer;
+import software.amazon.cloudwatchlogs.emf.model.SplitStrategy;
+import software.amazon.cloudwatchlogs.emf.sinks.OverflowPolicy;
+import software.amazon.cloudwatchlogs.emf.sinks.WaitStrategy;
 
 @RunWith(PowerMockRunner.class)
 @PrepareForTest({SystemWrapper.class})
@@ -41,6 +46,22 @@ public class EnvironmentConfigurationProviderTest {
         putEnv("AWS_EMF_ENVIRONMENT", "Agent");
         putEnv("AWS_EMF_ASYNC_BUFFER_SIZE", "9999");
         putEnv("AWS_EMF_WRITE_TO_STDOUT", "true");
+        putEnv("AWS_EMF_AGENT_BATCH_MAX_BYTES", "65536");
+        putEnv("AWS_EMF_AGENT_BATCH_LINGER_MILLIS", "20");
+        putEnv("AWS_EMF_AGENT_WAIT_STRATEGY", "YIELDING");
+        putEnv("AWS_EMF_AGENT_OVERFLOW_POLICY", "BLOCK");
+        putEnv("AWS_EMF_AGENT_OVERFLOW_TIMEOUT_MILLIS", "250");
+        putEnv("AWS_EMF_AGENT_OVERFLOW_SAMPLE_RATE", "4");
+        putEnv("AWS_EMF_AGENT_SPILL_DIRECTORY", "/var/spool/emf");
+        putEnv("AWS_EMF_AGENT_SPILL_MAX_BYTES", "1048576");
+        putEnv("AWS_EMF_AGENT_NIO_CLIENT", "true");
+        putEnv("AWS_EMF_AGENT_SEND_BUFFER_SIZE", "131072");
+        putEnv("AWS_EMF_MAX_EVENT_SIZE", "65536");
+        putEnv("AWS_EMF_SERIALIZER", "emf");
+        putEnv("AWS_EMF_SPLIT_STRATEGY", "PROPERTIES_IN_FIRST_EVENT");
+        putEnv("AWS_EMF_PARALLEL_SERIALIZATION", "true");
+        putEnv("AWS_EMF_PARALLEL_SERIALIZATION_THRESHOLD", "1048576");
+        putEnv("AWS_EMF_VALIDATION_CACHE_SIZE", "64");
 
         Configuration config = EnvironmentConfigurationProvider.createConfig();
 
@@ -52,6 +73,23 @@ public class EnvironmentConfigurationProviderTest {
         assertEquals(Environments.Agent, config.getEnvironmentOverride());
         assertEquals(9999, config.getAsyncBufferSize());
         assertTrue(config.shouldWriteToStdout());
+        assertEquals(65536, config.getAgentBatchMaxBytes());
+        assertEquals(20, config.getAgentBatchLingerMillis());
+        assertEquals(WaitStrategy.YIELDING, config.getAgentWaitStrategy());
+        OverflowPolicy overflowPolicy = config.getAgentOverflowPolicy();
+        assertEquals(OverflowPolicy.Action.BLOCK, overflowPolicy.getAction());
+        assertEquals(250_000_000L, overflowPolicy.getTimeoutNanos());
+        assertEquals(4, config.getAgentOverflowSampleRate());
+        assertEquals("/var/spool/emf", config.getAgentSpillDirectory().get());
+        assertEquals(1048576, config.getAgentSpillMaxBytes());
+        assertTrue(config.shouldUseAgentNioClient());
+        assertEquals(131072, config.getAgentSendBufferSize());
+        assertEquals(65536, config.getMaxEventSize());
+        assertEquals(EventSerializer.EMF, config.getEventSerializer());
+        assertEquals(SplitStrategy.PROPERTIES_IN_FIRST_EVENT, config.getSplitStrategy());
+        assertTrue(config.shouldSerializeInParallel());
+        assertEquals(1048576, config.getParallelSerializationThreshold());
+        assertEquals(64, config.getValidationCacheSize());
     }
 
     @Test
@@ -62,11 +100,32 @@ public class EnvironmentConfigurationProviderTest {
         // act
         putEnv("AWS_EMF_ASYNC_BUFFER_SIZE", "NaN");
         putEnv("AWS_EMF_WRITE_TO_STDOUT", "notABool");
+        putEnv("AWS_EMF_SERIALIZER", "unknown");
+        putEnv("AWS_EMF_SPLIT_STRATEGY", "unknown");
+        putEnv("AWS_EMF_AGENT_WAIT_STRATEGY", "unknown");
+        putEnv("AWS_EMF_AGENT_OVERFLOW_POLICY", "unknown");
 
         // assert
         Configuration config = EnvironmentConfigurationProvider.createConfig();
         assertEquals(100, config.getAsyncBufferSize());
         assertFalse(config.shouldWriteToStdout());
+        assertEquals(0, config.getAgentBatchMaxBytes());
+        assertEquals(
+                Constants.DEFAULT_AGENT_BATCH_LINGER_MILLIS, config.getAgentBatchLingerMillis());
+        assertEquals(WaitStrategy.BLOCKING, config.getAgentWaitStrategy());
+        assertEquals(
+                OverflowPolicy.Action.DROP_OLDEST, config.getAgentOverflowPolicy().getAction());
+        assertFalse(config.getAgentSpillDirectory().isPresent());
+        assertEquals(Constants.DEFAULT_AGENT_SPILL_MAX_BYTES, config.getAgentSpillMaxBytes());
+        assertFalse(config.shouldUseAgentNioClient());
+        assertEquals(0, config.getAgentSendBufferSize());
+        assertEquals(Constants.DEFAULT_MAX_EVENT_SIZE, config.getMaxEventSize());
+        assertEquals(EventSerializer.JACKSON, config.getEventSerializer());
+        assertEquals(SplitStrategy.REPEAT_PROPERTIES, config.getSplitStrategy());
+        assertFalse(config.shouldSerializeInParallel());
+        assertEquals(
+                Constants.DEFAULT_PARALLEL_SERIALIZATION_THRESHOLD,
+                config.getParallelSerializationThreshold());
     }
 
     @Test
@@ -75,6 +134,24 @@ public class EnvironmentConfigurationProviderTest {
         Configuration config = EnvironmentConfigurationProvider.createConfig();
         assertEquals(100, config.getAsyncBufferSize());
         assertFalse(config.shouldWriteToStdout());
+        assertEquals(0, config.getAgentBatchMaxBytes());
+        assertEquals(
+                Constants.DEFAULT_AGENT_BATCH_LINGER_MILLIS, config.getAgentBatchLingerMillis());
+        assertEquals(WaitStrategy.BLOCKING, config.getAgentWaitStrategy());
+        assertEquals(
+                OverflowPolicy.Action.DROP_OLDEST, config.getAgentOverflowPolicy().getAction());
+        assertFalse(config.getAgentSpillDirectory().isPresent());
+        assertEquals(Constants.DEFAULT_AGENT_SPILL_MAX_BYTES, config.getAgentSpillMaxBytes());
+        assertFalse(config.shouldUseAgentNioClient());
+        assertEquals(0, config.getAgentSendBufferSize());
+        assertEquals(Constants.DEFAULT_MAX_EVENT_SIZE, config.getMaxEventSize());
+        assertEquals(EventSerializer.JACKSON, config.getEventSerializer());
+        assertEquals(SplitStrategy.REPEAT_PROPERTIES, config.getSplitStrategy());
+        assertFalse(config.shouldSerializeInParallel());
+        assertEquals(
+                Constants.DEFAULT_PARALLEL_SERIALIZATION_THRESHOLD,
+                config.getParallelSerializationThreshold());
+        assertEquals(Constants.DEFAULT_VALIDATION_CACHE_SIZE, config.getValidationCacheSize());
     }
 
     private void putEnv(String key, String value) {
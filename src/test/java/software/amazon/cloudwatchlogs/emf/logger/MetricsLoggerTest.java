@@ -36,7 +36,9 @@ import software.amazon.cloudwatchlogs.emf.exception.InvalidDimensionException;
 import software.amazon.cloudwatchlogs.emf.exception.InvalidMetricException;
 import software.amazon.cloudwatchlogs.emf.exception.InvalidNamespaceException;
 import software.amazon.cloudwatchlogs.emf.exception.InvalidTimestampException;
+import software.amazon.cloudwatchlogs.emf.model.AggregationMode;
 import software.amazon.cloudwatchlogs.emf.model.DimensionSet;
+import software.amazon.cloudwatchlogs.emf.model.MetricHandle;
 import software.amazon.cloudwatchlogs.emf.model.MetricsContext;
 import software.amazon.cloudwatchlogs.emf.model.StorageResolution;
 import software.amazon.cloudwatchlogs.emf.model.Unit;
@@ -380,6 +382,56 @@ class MetricsLoggerTest {
                 () -> logger.putMetric("test", 1, StorageResolution.HIGH));
     }
 
+    @Test
+    void putMetric_withStatisticSet_emitsStatisticSet() throws InvalidMetricException {
+        for (int i = 1; i <= 1000; i++) {
+            logger.putMetric(
+                    "Latency",
+                    i,
+                    Unit.MILLISECONDS,
+                    StorageResolution.STANDARD,
+                    AggregationMode.STATISTIC_SET);
+        }
+        logger.putMetric("Count", 1);
+        logger.flush();
+
+        assertEquals(1, sink.getLogEvents().size());
+        String event = sink.getLogEvents().get(0);
+        assertTrue(
+                event.contains(
+                        "\"Latency\":{\"Max\":1000.0,\"Min\":1.0,\"SampleCount\":1000,\"Sum\":500500.0}"));
+        assertTrue(event.contains("\"Count\":1.0"));
+    }
+
+    @Test
+    void setAggregationMode_isPreservedAcrossFlush() throws InvalidMetricException {
+        logger.setAggregationMode(AggregationMode.VALUES_AND_COUNTS);
+        logger.flush();
+        logger.putMetric("Count", 1);
+        logger.putMetric("Count", 1);
+        logger.flush();
+
+        assertTrue(sink.getLogEvents().get(0).contains("{\"Values\":[1.0],\"Counts\":[2]}"));
+    }
+
+    @Test
+    void putMetric_withHandle_recordsAcrossFlushes() throws InvalidMetricException {
+        MetricHandle handle =
+                logger.registerMetric("Latency", Unit.MILLISECONDS, StorageResolution.HIGH);
+        logger.putMetric(handle, 1);
+        logger.putMetric(handle, 2);
+        logger.flush();
+
+        String event = sink.getLogEvents().get(0);
+        assertTrue(event.contains("\"Latency\":[1.0,2.0]"));
+        assertTrue(event.contains("\"StorageResolution\":1"));
+
+        logger.putMetric(handle, 3);
+        logger.flush();
+
+        assertTrue(sink.getLogEvents().get(0).contains("\"Latency\":3.0"));
+    }
+
     @Test
     void setNamespace_setsNamespace() throws InvalidNamespaceException {
 
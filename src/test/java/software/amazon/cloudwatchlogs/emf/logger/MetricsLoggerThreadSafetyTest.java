@@ -17,6 +17,8 @@
 package software.amazon.cloudwatchlogs.emf.logger;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -29,6 +31,8 @@ import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import com.fasterxml.jackson.databind.json.JsonMapper;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NonNull;
@@ -46,6 +50,7 @@ import software.amazon.cloudwatchlogs.emf.model.Unit;
 import software.amazon.cloudwatchlogs.emf.serializers.UnitDeserializer;
 import software.amazon.cloudwatchlogs.emf.serializers.UnitSerializer;
 import software.amazon.cloudwatchlogs.emf.sinks.GroupedSinkShunt;
+import software.amazon.cloudwatchlogs.emf.sinks.ISink;
 import software.amazon.cloudwatchlogs.emf.sinks.SinkShunt;
 
 public class MetricsLoggerThreadSafetyTest {
@@ -424,6 +429,53 @@ public class MetricsLoggerThreadSafetyTest {
         assertEquals(propertyCnt, N_THREAD * N_PUT_PROPERTY / 3);
     }
 
+    @Test
+    public void testPutMetricDoesNotWaitForFlushingSink() throws InterruptedException {
+        CountDownLatch sinkEntered = new CountDownLatch(1);
+        CountDownLatch releaseSink = new CountDownLatch(1);
+        GroupedSinkShunt groupedSink = new GroupedSinkShunt();
+        ISink blockingSink =
+                new ISink() {
+                    @Override
+                    public void accept(MetricsContext context) {
+                        sinkEntered.countDown();
+                        try {
+                            releaseSink.await();
+                        } catch (InterruptedException e) {
+                            throwable = e;
+                        }
+                        groupedSink.accept(context);
+                    }
+
+                    @Override
+                    public CompletableFuture<Void> shutdown() {
+                        return CompletableFuture.completedFuture(null);
+                    }
+                };
+        when(environment.getSink()).thenReturn(blockingSink);
+
+        logger = new MetricsLogger(envProvider);
+        logger.putMetric("Before", 1);
+        Thread flusher = new Thread(() -> logger.flush());
+        flusher.start();
+        assertTrue(sinkEntered.await(10, TimeUnit.SECONDS));
+
+        // the sink is still busy with the first context
+        logger.putMetric("After", 2);
+        logger.putProperty("Property", "value");
+
+        releaseSink.countDown();
+        flusher.join();
+        logger.flush();
+
+        List<List<String>> events = groupedSink.getLogEventList();
+        assertEquals(2, events.size());
+        assertTrue(events.get(0).get(0).contains("\"Before\""));
+        assertFalse(events.get(0).get(0).contains("\"After\""));
+        assertTrue(events.get(1).get(0).contains("\"After\""));
+        assertEquals("value", groupedSink.getContexts().get(1).getProperty("Property"));
+    }
+
     @After
     public void tearDown() throws Throwable {
         if (throwable != null) throw throwable;
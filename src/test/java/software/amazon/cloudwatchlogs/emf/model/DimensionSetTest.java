@@ -65,6 +65,33 @@ class DimensionSetTest {
         Assertions.assertTrue(actualMessage.contains(expectedMessage));
     }
 
+    @Test
+    void testFreezeDimensionSet() {
+        DimensionSet dimensionSet = DimensionSet.of("Region", "us-east-1", "Operation", "Get");
+        DimensionSet frozen = dimensionSet.freeze();
+        dimensionSet.addDimension("Instance", "inst-1");
+
+        Assertions.assertTrue(frozen.isFrozen());
+        Assertions.assertFalse(dimensionSet.isFrozen());
+        Assertions.assertSame(frozen, frozen.freeze());
+        Assertions.assertEquals(2, frozen.getDimensionKeys().size());
+        Assertions.assertEquals("Get", frozen.getDimensionValue("Operation"));
+        Assertions.assertThrows(
+                UnsupportedOperationException.class,
+                () -> frozen.addDimension("Instance", "inst-1"));
+    }
+
+    @Test
+    void testDimensionKeysIgnoreOrderAndValues() {
+        DimensionSet dimensionSet = DimensionSet.of("Region", "us-east-1", "Operation", "Get");
+        DimensionSet other = DimensionSet.of("Operation", "Put", "Region", "us-west-2").freeze();
+
+        Assertions.assertEquals(dimensionSet.getKeys(), other.getKeys());
+        Assertions.assertEquals(dimensionSet.getKeys().hashCode(), other.getKeys().hashCode());
+        Assertions.assertNotEquals(
+                dimensionSet.getKeys(), DimensionSet.of("Region", "us-east-1").getKeys());
+    }
+
     private DimensionSet generateDimensionSet(int numOfDimensions)
             throws InvalidDimensionException, DimensionSetExceededException {
         DimensionSet dimensionSet = new DimensionSet();
@@ -0,0 +1,91 @@
+/*
+ *   Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package software.amazon.cloudwatchlogs.emf.model;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import software.amazon.cloudwatchlogs.emf.exception.InvalidDimensionException;
+import software.amazon.cloudwatchlogs.emf.exception.InvalidMetricException;
+import software.amazon.cloudwatchlogs.emf.exception.InvalidNamespaceException;
+
+class DirectiveTemplateTest {
+
+    @Test
+    void testTemplateIsReusedWhileDirectiveIsUnchanged()
+            throws JsonProcessingException, InvalidMetricException {
+        MetricsContext mc = new MetricsContext();
+        mc.putMetric("Count", 1, Unit.COUNT);
+        mc.serialize();
+        DirectiveTemplate template = directive(mc).getTemplate();
+
+        mc.putMetric("Count", 2, Unit.COUNT);
+        mc.serialize();
+
+        Assertions.assertNotNull(template);
+        Assertions.assertSame(template, directive(mc).getTemplate());
+    }
+
+    @Test
+    void testTemplateIsCarriedOverToCopies()
+            throws JsonProcessingException, InvalidMetricException {
+        MetricsContext mc = new MetricsContext();
+        mc.putMetric("Count", 1, Unit.COUNT);
+        mc.serialize();
+        MetricsContext copy = mc.createCopyWithContext(true);
+        copy.putMetric("Count", 2, Unit.COUNT);
+
+        String serialized = copy.serialize().get(0);
+
+        Assertions.assertSame(directive(mc).getTemplate(), directive(copy).getTemplate());
+        Assertions.assertEquals(copy.getRootNode().serializeWithDatabind(), serialized);
+    }
+
+    @Test
+    void testTemplateIsInvalidatedByChanges()
+            throws JsonProcessingException, InvalidMetricException, InvalidDimensionException,
+                    InvalidNamespaceException {
+        MetricsContext mc = new MetricsContext();
+        mc.putMetric("Count", 1, Unit.COUNT);
+        mc.serialize();
+
+        mc.setNamespace("other-namespace");
+        assertRenderedAgain(mc);
+
+        mc.putDimension(DimensionSet.of("Region", "us-east-1"));
+        assertRenderedAgain(mc);
+
+        mc.putMetric("Latency", 10, Unit.MILLISECONDS, StorageResolution.HIGH);
+        assertRenderedAgain(mc);
+    }
+
+    private static void assertRenderedAgain(MetricsContext mc) throws JsonProcessingException {
+        DirectiveTemplate before = directive(mc).getTemplate();
+        mc.getRootNode().mergeWrites();
+        Assertions.assertFalse(before.matches(directive(mc)));
+
+        String serialized = mc.serialize().get(0);
+
+        Assertions.assertNotSame(before, directive(mc).getTemplate());
+        Assertions.assertEquals(mc.getRootNode().serializeWithDatabind(), serialized);
+    }
+
+    private static MetricDirective directive(MetricsContext mc) {
+        return mc.getRootNode().getAws().getCloudWatchMetrics().get(0);
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ *   Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package software.amazon.cloudwatchlogs.emf.model;
+
+import java.util.Random;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class DoubleFormatterTest {
+
+    @Test
+    void testIntegersHaveNoFraction() {
+        Assertions.assertEquals("0", format(0));
+        Assertions.assertEquals("-0", format(-0.0));
+        Assertions.assertEquals("1", format(1));
+        Assertions.assertEquals("42", format(42));
+        Assertions.assertEquals("-7", format(-7));
+        Assertions.assertEquals("10000", format(1e4));
+        Assertions.assertEquals("12345678", format(12345678));
+        Assertions.assertEquals("9007199254740992", format(9007199254740992.0));
+    }
+
+    @Test
+    void testIntegersBelow1E21AreNotScientific() {
+        Assertions.assertEquals("330000", format(330000));
+        Assertions.assertEquals("1000000", format(1e6));
+        Assertions.assertEquals("-10000000", format(-1e7));
+        Assertions.assertEquals("100000000000000000000", format(1e20));
+        Assertions.assertEquals("999999999999999900000", format(999999999999999900000.0));
+    }
+
+    @Test
+    void testShortestDecimal() {
+        Assertions.assertEquals("0.1", format(0.1));
+        Assertions.assertEquals("0.30000000000000004", format(0.1 + 0.2));
+        Assertions.assertEquals("123.456", format(123.456));
+        Assertions.assertEquals("0.001", format(0.001));
+        Assertions.assertEquals("2E23", format(2e23));
+        Assertions.assertEquals("282879384806159000", format(2.82879384806159E17));
+    }
+
+    @Test
+    void testScientificNotationWhenShorter() {
+        Assertions.assertEquals("1E21", format(1e21));
+        Assertions.assertEquals("2.5E-7", format(2.5e-7));
+        Assertions.assertEquals("1.7976931348623157E308", format(Double.MAX_VALUE));
+        Assertions.assertEquals("2.2250738585072014E-308", format(Double.MIN_NORMAL));
+        Assertions.assertEquals("4.9E-324", format(Double.MIN_VALUE));
+    }
+
+    @Test
+    void testRandomDoublesRoundTrip() {
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            double value = Double.longBitsToDouble(random.nextLong());
+            if (i % 2 == 0) {
+                value = random.nextDouble() * Math.pow(10, random.nextInt(40) - 20);
+            }
+            if (!Double.isFinite(value)) {
+                continue;
+            }
+
+            String text = format(value);
+
+            Assertions.assertEquals(
+                    Double.doubleToRawLongBits(value),
+                    Double.doubleToRawLongBits(Double.parseDouble(text)),
+                    text);
+            if (value != Math.rint(value) || Math.abs(value) >= 1e21) {
+                Assertions.assertTrue(text.length() <= Double.toString(value).length(), text);
+            } else {
+                Assertions.assertTrue(text.length() <= 22, text);
+            }
+        }
+    }
+
+    private static String format(double value) {
+        char[] chars = new char[DoubleFormatter.MAX_LENGTH];
+        return new String(chars, 0, DoubleFormatter.format(value, chars, 0));
+    }
+}
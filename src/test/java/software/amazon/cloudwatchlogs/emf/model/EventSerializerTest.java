@@ -0,0 +1,210 @@
+/*
+ *   Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package software.amazon.cloudwatchlogs.emf.model;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import software.amazon.cloudwatchlogs.emf.exception.InvalidDimensionException;
+import software.amazon.cloudwatchlogs.emf.exception.InvalidMetricException;
+
+class EventSerializerTest {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    @Test
+    void testEmfWriterIsEquivalentToJackson()
+            throws JsonProcessingException, InvalidMetricException, InvalidDimensionException {
+        MetricsContext mc = new MetricsContext();
+        mc.setDefaultDimensions(DimensionSet.of("Service", "Api"));
+        mc.putDimension(DimensionSet.of("Region", "us-east-1", "Stage", "prod"));
+        mc.putMetric("Latency", 0.1 + 0.2, Unit.MILLISECONDS, StorageResolution.HIGH);
+        mc.putMetric("Latency", 1e21, Unit.MILLISECONDS, StorageResolution.HIGH);
+        mc.putMetric(
+                "Size",
+                3,
+                Unit.BYTES,
+                StorageResolution.STANDARD,
+                AggregationMode.VALUES_AND_COUNTS);
+        mc.putMetric(
+                "Count", 1, Unit.COUNT, StorageResolution.STANDARD, AggregationMode.STATISTIC_SET);
+        mc.putProperty("String", "quote \" backslash \\ tab \t bell \u0007 slash /");
+        mc.putProperty("Unicode", "pr\u00f6d \uD83D\uDE80");
+        mc.putProperty("Int", -7);
+        mc.putProperty("Long", Long.MAX_VALUE);
+        mc.putProperty("Double", Double.NaN);
+        mc.putProperty("Float", 1.5f);
+        mc.putProperty("Boolean", true);
+        mc.putProperty("Null", Collections.singletonList(null));
+        mc.putProperty("Enum", Unit.SECONDS);
+        mc.putProperty("Nested", nested());
+        mc.putProperty("Array", new int[] {1, 2});
+        mc.putProperty("Bean", new Bean());
+        mc.putMetadata("Custom", Collections.singletonMap("LogGroupName", "group"));
+
+        assertEquivalentOutput(mc);
+    }
+
+    @Test
+    void testEmfWriterIsEquivalentToJacksonForSplitEvents()
+            throws JsonProcessingException, InvalidMetricException {
+        MetricsContext mc = new MetricsContext();
+        mc.putProperty("RequestId", "0f1e2d3c");
+        for (int i = 0; i < 150; i++) {
+            mc.putMetric("Metric-" + i, i / 3.0);
+        }
+        for (int i = 0; i < 150; i++) {
+            mc.putMetric("Metric-0", i);
+        }
+
+        assertEquivalentOutput(mc);
+    }
+
+    @Test
+    void testEmfWriterCompactsDoubles() throws JsonProcessingException, InvalidMetricException {
+        MetricsContext mc = new MetricsContext();
+        mc.setEventSerializer(EventSerializer.EMF);
+        mc.putMetric("Count", 1);
+        mc.putMetric("Count", 42);
+        mc.putMetric("Count", 0.1 + 0.2);
+        mc.putMetric("Count", 1e21);
+        mc.putProperty("Double", 200.0);
+        mc.putProperty("Float", 3f);
+
+        String event = mc.serialize().get(0);
+
+        Assertions.assertTrue(event.contains("\"Count\":[1,42,0.30000000000000004,1E21]"), event);
+        Assertions.assertTrue(event.contains("\"Double\":200"), event);
+        Assertions.assertTrue(event.contains("\"Float\":3"), event);
+    }
+
+    @Test
+    void testForName() {
+        Assertions.assertSame(EventSerializer.EMF, EventSerializer.forName("emf"));
+        Assertions.assertSame(EventSerializer.JACKSON, EventSerializer.forName("Jackson"));
+        Assertions.assertNull(EventSerializer.forName("Gson"));
+        Assertions.assertNull(EventSerializer.forName(null));
+    }
+
+    @Test
+    void testCustomSerializerIsUsed() throws JsonProcessingException, InvalidMetricException {
+        AtomicInteger outputs = new AtomicInteger();
+        EventSerializer custom =
+                new EventSerializer() {
+                    @Override
+                    public JsonOutput createOutput(Writer out) throws IOException {
+                        outputs.incrementAndGet();
+                        return EventSerializer.EMF.createOutput(out);
+                    }
+
+                    @Override
+                    public JsonOutput createOutput(OutputStream out) throws IOException {
+                        outputs.incrementAndGet();
+                        return EventSerializer.EMF.createOutput(out);
+                    }
+                };
+        MetricsContext mc = new MetricsContext();
+        mc.putMetric("Count", 1);
+        mc.setEventSerializer(EventSerializer.EMF);
+        String expected = mc.serialize().get(0);
+
+        mc.setEventSerializer(custom);
+
+        Assertions.assertEquals(expected, mc.serialize().get(0));
+        Assertions.assertEquals(
+                expected + "\n",
+                StandardCharsets.UTF_8.decode(mc.serializeToUtf8().get(0)).toString());
+        Assertions.assertEquals(2, outputs.get());
+    }
+
+    @Test
+    void testCopyPreservesSerializer() {
+        MetricsContext mc = new MetricsContext();
+        mc.setEventSerializer(EventSerializer.EMF);
+        Assertions.assertSame(
+                EventSerializer.EMF, mc.createCopyWithContext(true).getEventSerializer());
+    }
+
+    static class Bean {
+        public String getName() {
+            return "bean";
+        }
+
+        public List<Integer> getValues() {
+            return Arrays.asList(1, 2);
+        }
+
+        @Override
+        public String toString() {
+            return "not JSON";
+        }
+    }
+
+    private static Map<String, Object> nested() {
+        Map<String, Object> nested = new LinkedHashMap<>();
+        nested.put("List", Arrays.asList("a", 1, 2.5, false));
+        nested.put("Bytes", "emf".getBytes(StandardCharsets.UTF_8));
+        return nested;
+    }
+
+    /**
+     * Assert that both serializers write the same events, except for the formatting of numbers,
+     * and that the EMF serializer writes the same text as strings and as UTF-8.
+     */
+    private static void assertEquivalentOutput(MetricsContext mc) throws JsonProcessingException {
+        mc.setEventSerializer(EventSerializer.JACKSON);
+        List<String> expected = mc.serialize();
+
+        mc.setEventSerializer(EventSerializer.EMF);
+        List<String> actual = mc.serialize();
+        Assertions.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            JsonNode expectedNode = OBJECT_MAPPER.readTree(expected.get(i));
+            JsonNode actualNode = OBJECT_MAPPER.readTree(actual.get(i));
+            Assertions.assertTrue(
+                    expectedNode.equals(EventSerializerTest::compareNodes, actualNode),
+                    actual.get(i));
+        }
+
+        List<ByteBuffer> actualBytes = mc.serializeToUtf8();
+        for (int i = 0; i < actual.size(); i++) {
+            Assertions.assertEquals(
+                    ByteBuffer.wrap((actual.get(i) + "\n").getBytes(StandardCharsets.UTF_8)),
+                    actualBytes.get(i));
+        }
+    }
+
+    private static int compareNodes(JsonNode a, JsonNode b) {
+        if (a.isNumber() && b.isNumber()) {
+            return Double.compare(a.doubleValue(), b.doubleValue());
+        }
+        return a.equals(b) ? 0 : 1;
+    }
+}
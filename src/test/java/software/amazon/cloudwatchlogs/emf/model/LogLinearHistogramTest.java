@@ -0,0 +1,59 @@
+/*
+ *   Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package software.amazon.cloudwatchlogs.emf.model;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class LogLinearHistogramTest {
+
+    @Test
+    void testPrecisionBitsFor() {
+        Assertions.assertEquals(0, LogLinearHistogram.precisionBitsFor(0.5));
+        Assertions.assertEquals(6, LogLinearHistogram.precisionBitsFor(0.01));
+        Assertions.assertTrue(
+                LogLinearHistogram.relativeErrorOf(LogLinearHistogram.precisionBitsFor(0.01))
+                        <= 0.01);
+    }
+
+    @Test
+    void testBucketValueIsWithinRelativeError() {
+        int precisionBits = LogLinearHistogram.precisionBitsFor(0.01);
+        for (double value = 0.001; value < 1e9; value *= 1.37) {
+            double bucketValue = LogLinearHistogram.bucketValue(value, precisionBits);
+            Assertions.assertEquals(value, bucketValue, value * 0.01);
+            Assertions.assertEquals(
+                    -bucketValue, LogLinearHistogram.bucketValue(-value, precisionBits));
+        }
+    }
+
+    @Test
+    void testBucketValueIsStable() {
+        double bucketValue = LogLinearHistogram.bucketValue(123.456, 6);
+        Assertions.assertEquals(bucketValue, LogLinearHistogram.bucketValue(bucketValue, 6));
+        Assertions.assertEquals(
+                LogLinearHistogram.bucketValue(123.456, 3),
+                LogLinearHistogram.bucketValue(bucketValue, 3));
+    }
+
+    @Test
+    void testBucketValueOfZero() {
+        Assertions.assertEquals(0.0, LogLinearHistogram.bucketValue(0, 6));
+        Assertions.assertEquals(0.0, LogLinearHistogram.bucketValue(-0.0, 6));
+        Assertions.assertEquals(0.0, LogLinearHistogram.bucketValue(-0.0, 52));
+    }
+}
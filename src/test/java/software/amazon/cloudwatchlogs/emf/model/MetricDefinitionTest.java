@@ -17,12 +17,15 @@
 package software.amazon.cloudwatchlogs.emf.model;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import java.util.Arrays;
 import java.util.Collections;
 import org.junit.Test;
+import software.amazon.cloudwatchlogs.emf.Constants;
 
 public class MetricDefinitionTest {
 
@@ -92,4 +95,215 @@ public class MetricDefinitionTest {
         md.addValue(20);
         assertEquals(Arrays.asList(10d, 20d), md.getValues());
     }
+
+    @Test
+    public void testAddValueGrowsPrimitiveStorage() {
+        MetricDefinition md = new MetricDefinition("Time");
+        for (int i = 0; i < 1000; i++) {
+            md.addValue(i);
+        }
+
+        assertEquals(1000, md.getValueCount());
+        assertEquals(999d, md.getValue(999), 1e-9);
+        assertEquals(1000, md.getValueArray().length);
+    }
+
+    @Test
+    public void testSlice() {
+        MetricDefinition md = new MetricDefinition("Time", Unit.MILLISECONDS, 1);
+        md.addValue(2);
+        md.addValue(3);
+
+        MetricDefinition slice = md.slice(1, 3);
+        assertEquals("Time", slice.getName());
+        assertEquals(Unit.MILLISECONDS, slice.getUnit());
+        assertEquals(Arrays.asList(2d, 3d), slice.getValues());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testGetValueOutOfBounds() {
+        new MetricDefinition("Time", 1).getValue(1);
+    }
+
+    @Test
+    public void testAddValueWithCounts() {
+        MetricDefinition md =
+                new MetricDefinition(
+                        "Count",
+                        Unit.COUNT,
+                        StorageResolution.STANDARD,
+                        AggregationMode.VALUES_AND_COUNTS);
+        for (int i = 0; i < 100; i++) {
+            md.addValue(i % 10);
+        }
+        md.addValue(-0.0);
+
+        assertEquals(10, md.getValueCount());
+        assertEquals(0d, md.getValue(0), 1e-9);
+        assertEquals(11, md.getCount(0));
+        assertEquals(9d, md.getValue(9), 1e-9);
+        assertEquals(10, md.getCount(9));
+    }
+
+    @Test
+    public void testSliceWithCounts() {
+        MetricDefinition md =
+                new MetricDefinition(
+                        "Count",
+                        Unit.COUNT,
+                        StorageResolution.STANDARD,
+                        AggregationMode.VALUES_AND_COUNTS);
+        md.addValue(1);
+        md.addValue(2);
+        md.addValue(2);
+
+        MetricDefinition slice = md.slice(1, 2);
+        assertEquals(1, slice.getValueCount());
+        assertEquals(2d, slice.getValue(0), 1e-9);
+        assertEquals(2, slice.getCount(0));
+
+        slice.addValue(2);
+        assertEquals(3, slice.getCount(0));
+    }
+
+    @Test
+    public void testAddValueWithStatisticSet() {
+        MetricDefinition md =
+                new MetricDefinition(
+                        "Latency",
+                        Unit.MILLISECONDS,
+                        StorageResolution.STANDARD,
+                        AggregationMode.STATISTIC_SET);
+        for (int i = 1; i <= 500; i++) {
+            md.addValue(i);
+        }
+
+        assertEquals(1, md.getValueCount());
+        assertEquals(500, md.getSampleCount());
+        assertEquals(1d, md.getMin(), 1e-9);
+        assertEquals(500d, md.getMax(), 1e-9);
+        assertEquals(125250d, md.getSum(), 1e-9);
+        assertEquals(Collections.emptyList(), md.getValues());
+    }
+
+    @Test
+    public void testAddValueWithHistogram() {
+        MetricDefinition md =
+                new MetricDefinition(
+                        "Latency",
+                        Unit.MILLISECONDS,
+                        StorageResolution.STANDARD,
+                        AggregationMode.HISTOGRAM,
+                        0.01);
+        for (int i = 0; i < 10000; i++) {
+            md.addValue(100 + (i % 7) * 0.001);
+        }
+
+        assertEquals(1, md.getValueCount());
+        assertEquals(10000, md.getCount(0));
+        assertEquals(100d, md.getValue(0), 1.0);
+    }
+
+    @Test
+    public void testHistogramBucketsAreBounded() {
+        MetricDefinition md =
+                new MetricDefinition(
+                        "Latency",
+                        Unit.MILLISECONDS,
+                        StorageResolution.STANDARD,
+                        AggregationMode.HISTOGRAM,
+                        0.001);
+        for (int i = 1; i <= 1_000_000; i++) {
+            md.addValue(i);
+        }
+
+        assertTrue(md.getValueCount() <= Constants.MAX_HISTOGRAM_BUCKETS);
+        assertEquals(1_000_000, md.getSampleCount());
+        assertTrue(md.getHistogramRelativeError() > 0.001);
+    }
+
+    @Test
+    public void testHistogramBucketsAreBoundedAcrossExponents() {
+        MetricDefinition md =
+                new MetricDefinition(
+                        "Latency",
+                        Unit.MILLISECONDS,
+                        StorageResolution.STANDARD,
+                        AggregationMode.HISTOGRAM,
+                        0.01);
+        for (int exponent = -600; exponent < 600; exponent++) {
+            md.addValue(Math.scalb(1.0, exponent));
+        }
+
+        assertEquals(Constants.MAX_HISTOGRAM_BUCKETS, md.getValueCount());
+        assertEquals(1200, md.getSampleCount());
+        // the lowest exponents were merged into the lowest remaining bucket
+        double lowest = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < md.getValueCount(); i++) {
+            lowest = Math.min(lowest, md.getValue(i));
+        }
+        assertEquals(Math.scalb(1.5, 600 - Constants.MAX_HISTOGRAM_BUCKETS), lowest, 0);
+        assertEquals(Math.scalb(1.5, 599), md.getValue(md.getValueCount() - 1), 0);
+    }
+
+    @Test
+    public void testMergeSameMode() {
+        MetricDefinition md = new MetricDefinition("Time", 1);
+        MetricDefinition other = new MetricDefinition("Time", 2);
+
+        MetricDefinition merged = md.merge(other);
+        assertSame(md, merged);
+        assertEquals(Arrays.asList(1d, 2d), merged.getValues());
+    }
+
+    @Test
+    public void testMergeIntoLessDetailedMode() {
+        MetricDefinition md = new MetricDefinition("Time", 1);
+        md.addValue(5);
+        MetricDefinition other =
+                new MetricDefinition(
+                        "Time",
+                        Unit.NONE,
+                        StorageResolution.STANDARD,
+                        AggregationMode.STATISTIC_SET);
+        other.addValue(3);
+
+        MetricDefinition merged = md.merge(other);
+        assertEquals(AggregationMode.STATISTIC_SET, merged.getAggregationMode());
+        assertEquals(3, merged.getSampleCount());
+        assertEquals(1d, merged.getMin(), 1e-9);
+        assertEquals(5d, merged.getMax(), 1e-9);
+        assertEquals(9d, merged.getSum(), 1e-9);
+    }
+
+    @Test
+    public void testMergeHistogramWithValuesAndCounts() {
+        for (boolean histogramFirst : new boolean[] {true, false}) {
+            MetricDefinition histogram = definition(AggregationMode.HISTOGRAM);
+            histogram.addValue(1);
+            MetricDefinition counted = definition(AggregationMode.VALUES_AND_COUNTS);
+            counted.addValue(1);
+
+            MetricDefinition merged =
+                    histogramFirst ? histogram.merge(counted) : counted.merge(histogram);
+            assertEquals(AggregationMode.HISTOGRAM, merged.getAggregationMode());
+            assertEquals(1, merged.getValueCount());
+            assertEquals(2, merged.getCount(0));
+        }
+    }
+
+    @Test
+    public void testMergeAppendsValuesOfOther() {
+        MetricDefinition md = definition(AggregationMode.NONE);
+        MetricDefinition other = definition(AggregationMode.NONE);
+        for (int i = 0; i < 6; i++) {
+            (i % 2 == 0 ? md : other).addValue(i);
+        }
+
+        assertEquals(Arrays.asList(0d, 2d, 4d, 1d, 3d, 5d), md.merge(other).getValues());
+    }
+
+    private static MetricDefinition definition(AggregationMode mode) {
+        return new MetricDefinition("Time", Unit.NONE, StorageResolution.STANDARD, mode);
+    }
 }
@@ -21,6 +21,7 @@ import com.fasterxml.jackson.databind.MapperFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import software.amazon.cloudwatchlogs.emf.exception.DimensionSetExceededException;
@@ -56,6 +57,7 @@ class MetricDirectiveTest {
     void testPutMetric() throws JsonProcessingException {
         MetricDirective metricDirective = new MetricDirective();
         metricDirective.putMetric("Time", 10);
+        metricDirective.mergeWrites();
 
         String serializedMetricDirective = objectMapper.writeValueAsString(metricDirective);
 
@@ -69,6 +71,7 @@ class MetricDirectiveTest {
         MetricDirective metricDirective = new MetricDirective();
         metricDirective.putMetric("Time", 10);
         metricDirective.putMetric("Time", 20);
+        metricDirective.mergeWrites();
 
         Assertions.assertEquals(1, metricDirective.getAllMetrics().size());
         MetricDefinition[] mds = metricDirective.getAllMetrics().toArray(new MetricDefinition[0]);
@@ -79,6 +82,7 @@ class MetricDirectiveTest {
     void testPutMetricWithoutUnit() {
         MetricDirective metricDirective = new MetricDirective();
         metricDirective.putMetric("Time", 10);
+        metricDirective.mergeWrites();
         Assertions.assertEquals(Unit.NONE, metricDirective.getMetrics().get("Time").getUnit());
     }
 
@@ -86,6 +90,7 @@ class MetricDirectiveTest {
     void testPutMetricWithUnit() {
         MetricDirective metricDirective = new MetricDirective();
         metricDirective.putMetric("Time", 10, Unit.MILLISECONDS);
+        metricDirective.mergeWrites();
         Assertions.assertEquals(
                 Unit.MILLISECONDS, metricDirective.getMetrics().get("Time").getUnit());
     }
@@ -94,6 +99,7 @@ class MetricDirectiveTest {
     void testPutMetricWithoutStorageResolution() throws JsonProcessingException {
         MetricDirective metricDirective = new MetricDirective();
         metricDirective.putMetric("Time", 10);
+        metricDirective.mergeWrites();
 
         String serializedMetricDirective = objectMapper.writeValueAsString(metricDirective);
 
@@ -109,6 +115,7 @@ class MetricDirectiveTest {
     void testPutMetricWithStandardStorageResolution() throws JsonProcessingException {
         MetricDirective metricDirective = new MetricDirective();
         metricDirective.putMetric("Time", 10, StorageResolution.STANDARD);
+        metricDirective.mergeWrites();
 
         String serializedMetricDirective = objectMapper.writeValueAsString(metricDirective);
 
@@ -124,6 +131,7 @@ class MetricDirectiveTest {
     void testPutMetricWithHighStorageResolution() throws JsonProcessingException {
         MetricDirective metricDirective = new MetricDirective();
         metricDirective.putMetric("Time", 10, StorageResolution.HIGH);
+        metricDirective.mergeWrites();
 
         String serializedMetricDirective = objectMapper.writeValueAsString(metricDirective);
 
@@ -150,6 +158,83 @@ class MetricDirectiveTest {
                 serializedMetricDirective);
     }
 
+    @Test
+    void testPutDimensionSetReplacesSetWithSameKeys() throws DimensionSetExceededException {
+        MetricDirective metricDirective = new MetricDirective();
+        metricDirective.setDimensions(
+                true,
+                Arrays.asList(
+                        DimensionSet.of("Region", "us-east-1"),
+                        DimensionSet.of("Instance", "inst-1")));
+        DimensionSet frozen = DimensionSet.of("Region", "us-west-2").freeze();
+        metricDirective.putDimensionSet(frozen);
+
+        metricDirective.setDefaultDimensions(new DimensionSet());
+        Assertions.assertEquals(2, metricDirective.getAllDimensions().size());
+        Assertions.assertEquals(
+                "inst-1", metricDirective.getAllDimensions().get(0).getDimensionValue("Instance"));
+        Assertions.assertEquals(
+                "us-west-2", metricDirective.getAllDimensions().get(1).getDimensionValue("Region"));
+
+        MetricDirective copy = metricDirective.copyWithoutMetrics(true);
+        copy.resetDimensions(false);
+        copy.putDimensionSet(frozen);
+        Assertions.assertSame(frozen, copy.getAllDimensions().get(0));
+    }
+
+    @Test
+    void testGetAllDimensionsIsMemoizedUntilDimensionsChange()
+            throws DimensionSetExceededException {
+        MetricDirective metricDirective = new MetricDirective();
+        metricDirective.setDefaultDimensions(DimensionSet.of("Service", "Api"));
+        metricDirective.putDimensionSet(DimensionSet.of("Region", "us-east-1"));
+
+        List<DimensionSet> dimensions = metricDirective.getAllDimensions();
+        Assertions.assertSame(dimensions, metricDirective.getAllDimensions());
+        Assertions.assertEquals(2, dimensions.get(0).getDimensionKeys().size());
+
+        metricDirective.putDimensionSet(DimensionSet.of("Operation", "Get"));
+        Assertions.assertNotSame(dimensions, metricDirective.getAllDimensions());
+        Assertions.assertEquals(2, metricDirective.getAllDimensions().size());
+    }
+
+    @Test
+    void testGetAllDimensionsSeesChangesToDefaultDimensions()
+            throws DimensionSetExceededException {
+        MetricDirective metricDirective = new MetricDirective();
+        DimensionSet defaults = DimensionSet.of("Service", "Api");
+        DimensionSet custom = DimensionSet.of("Region", "us-east-1");
+        metricDirective.setDefaultDimensions(defaults);
+        metricDirective.putDimensionSet(custom);
+        metricDirective.getAllDimensions();
+
+        custom.addDimension("Operation", "Get");
+        Assertions.assertEquals(
+                2, metricDirective.getAllDimensions().get(0).getDimensionKeys().size());
+
+        defaults.addDimension("Stage", "Prod");
+        Assertions.assertEquals(
+                3, metricDirective.getAllDimensions().get(0).getDimensionKeys().size());
+    }
+
+    @Test
+    void testPutDimensionSetCopiesMutableSets() throws DimensionSetExceededException {
+        MetricDirective metricDirective = new MetricDirective();
+        metricDirective.setDefaultDimensions(new DimensionSet());
+        DimensionSet mutable = DimensionSet.of("Region", "us-east-1");
+        metricDirective.putDimensionSet(mutable);
+
+        mutable.addDimension("Operation", "Get");
+        metricDirective.putDimensionSet(DimensionSet.of("Region", "us-west-2", "Operation", "Put"));
+        metricDirective.putDimensionSet(mutable);
+
+        List<DimensionSet> dimensions = metricDirective.getAllDimensions();
+        Assertions.assertEquals(2, dimensions.size());
+        Assertions.assertEquals(
+                Collections.singleton("Region"), dimensions.get(0).getDimensionKeys());
+        Assertions.assertEquals("Get", dimensions.get(1).getDimensionValue("Operation"));
+    }
+
     @Test
     void testPutDimensionSetWhenMultipleDimensionSets()
             throws JsonProcessingException, InvalidDimensionException,
@@ -1,6 +1,7 @@
 package software.amazon.cloudwatchlogs.emf.model;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.util.Collections;
 import org.junit.After;
@@ -46,6 +47,7 @@ public class MetricDirectiveThreadSafetyTest {
         for (Thread t : threads) {
             t.join();
         }
+        metricDirective.mergeWrites();
 
         assertEquals(metricDirective.getAllMetrics().size(), N_THREAD * N_PUT_METRIC);
         for (int i = 0; i < N_THREAD * N_PUT_METRIC; i++) {
@@ -84,6 +86,7 @@ public class MetricDirectiveThreadSafetyTest {
         for (Thread t : threads) {
             t.join();
         }
+        metricDirective.mergeWrites();
 
         assertEquals(1, metricDirective.getAllMetrics().size());
         MetricDefinition md = metricDirective.getAllMetrics().toArray(new MetricDefinition[0])[0];
@@ -93,6 +96,61 @@ public class MetricDirectiveThreadSafetyTest {
         }
     }
 
+    @Test
+    public void testConcurrentDimensionChangesAreSeenByGetAllDimensions() throws Exception {
+        final int N_THREAD = 8;
+        final int N_PUT_DIMENSION = 100;
+
+        for (int round = 0; round < 20; round++) {
+            MetricDirective metricDirective = new MetricDirective();
+            metricDirective.setDefaultDimensions(new DimensionSet());
+            Thread[] threads = new Thread[N_THREAD];
+            long targetTimestampToRun = System.currentTimeMillis() + 50;
+
+            for (int i = 0; i < N_THREAD; i++) {
+                final int id = i;
+                threads[i] =
+                        new Thread(
+                                () -> {
+                                    try {
+                                        Thread.sleep(
+                                                targetTimestampToRun - System.currentTimeMillis());
+                                        for (int j = 0; j < N_PUT_DIMENSION; j++) {
+                                            int dimensionId = N_PUT_DIMENSION * id + j;
+                                            metricDirective.putDimensionSet(
+                                                    DimensionSet.of("Dim-" + dimensionId, "Value"));
+                                            metricDirective.getAllDimensions();
+                                        }
+                                    } catch (Throwable e) {
+                                        throwable = e;
+                                    }
+                                });
+                threads[i].start();
+            }
+
+            for (Thread t : threads) {
+                t.join();
+            }
+
+            assertEquals(N_THREAD * N_PUT_DIMENSION, metricDirective.getAllDimensions().size());
+
+            metricDirective.resetDimensions(true);
+            assertEquals(1, metricDirective.getAllDimensions().size());
+        }
+    }
+
+    @Test
+    public void testGettersDoNotMergeWrites() {
+        MetricDirective metricDirective = new MetricDirective();
+        metricDirective.putMetric("Metric", 1);
+
+        assertTrue(metricDirective.hasNoMetrics());
+        assertTrue(metricDirective.getMetrics().isEmpty());
+
+        metricDirective.mergeWrites();
+        assertEquals(1, metricDirective.getAllMetrics().size());
+    }
+
     @After
     public void tearDown() throws Throwable {
         if (throwable != null) throw throwable;
@@ -19,11 +19,16 @@ package software.amazon.cloudwatchlogs.emf.model;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.json.JsonMapper;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import software.amazon.cloudwatchlogs.emf.Constants;
@@ -80,6 +85,253 @@ class MetricsContextTest {
         }
     }
 
+    @Test
+    void testSerializeToUtf8MatchesSerialize()
+            throws JsonProcessingException, InvalidMetricException {
+        MetricsContext mc = new MetricsContext();
+        mc.putProperty("Greeting", "Gr\u00fc\u00dfe \u2603");
+        for (int i = 0; i < 150; i++) {
+            mc.putMetric("Metric-" + i, i);
+        }
+
+        List<String> expected = mc.serialize();
+        List<ByteBuffer> events = mc.serializeToUtf8();
+
+        Assertions.assertEquals(expected.size(), events.size());
+        for (int i = 0; i < events.size(); i++) {
+            String event = StandardCharsets.UTF_8.decode(events.get(i)).toString();
+            Assertions.assertEquals(expected.get(i) + "\n", event);
+        }
+    }
+
+    @Test
+    void testSerializeSplitsEventsByEstimatedSize()
+            throws JsonProcessingException, InvalidMetricException {
+        MetricsContext mc = new MetricsContext();
+        mc.setMaxEventSize(4096);
+        mc.putProperty("TraceId", "1-5759e988-bd862e3fe1be46a994272793");
+        int metricCount = 50;
+        for (int i = 0; i < metricCount; i++) {
+            mc.putMetric("Metric-With-A-Rather-Long-Descriptive-Name-" + i, i * 0.123456789);
+        }
+
+        List<String> events = mc.serialize();
+
+        Assertions.assertTrue(events.size() > 1);
+        List<MetricDefinition> allMetrics = new ArrayList<>();
+        for (String event : events) {
+            Assertions.assertTrue(event.getBytes(StandardCharsets.UTF_8).length <= 4096);
+            Assertions.assertTrue(event.contains("\"TraceId\""));
+            allMetrics.addAll(parseMetrics(event));
+        }
+        Assertions.assertEquals(metricCount, allMetrics.size());
+    }
+
+    @Test
+    void testSerializeLargePropertiesWithoutMetrics() throws JsonProcessingException {
+        MetricsContext mc = new MetricsContext();
+        mc.setMaxEventSize(1024);
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < 2048; i++) {
+            value.append('x');
+        }
+        mc.putProperty("Payload", value.toString());
+
+        List<String> events = mc.serialize();
+        List<ByteBuffer> utf8Events = mc.serializeToUtf8();
+
+        Assertions.assertEquals(1, events.size());
+        Assertions.assertTrue(events.get(0).contains(value));
+        Assertions.assertEquals(1, utf8Events.size());
+    }
+
+    @Test
+    void testEstimateSerializedSizeIsAnUpperBound()
+            throws JsonProcessingException, InvalidMetricException, InvalidDimensionException {
+        MetricsContext mc = new MetricsContext();
+        mc.putDimension(DimensionSet.of("Region", "us-east-1", "Stage", "prod"));
+        mc.putProperty("String", "quote\" and newline\n");
+        mc.putProperty("Unicode", "prod\u00e9 \ud83d\ude80");
+        mc.putProperty("Long", Long.MIN_VALUE);
+        mc.putProperty("Double", -0.0);
+        mc.putProperty("Boolean", false);
+        mc.putMetric("Count", 1, Unit.COUNT);
+        mc.putMetric("Count", 9999999, Unit.COUNT);
+        mc.putMetric("Latency", Math.PI, Unit.MILLISECONDS, StorageResolution.HIGH);
+        mc.putMetric(
+                "Size",
+                3,
+                Unit.BYTES,
+                StorageResolution.STANDARD,
+                AggregationMode.VALUES_AND_COUNTS);
+        mc.putMetric(
+                "Stats",
+                -1e-300,
+                Unit.NONE,
+                StorageResolution.STANDARD,
+                AggregationMode.STATISTIC_SET);
+
+        long actual = mc.serialize().get(0).getBytes(StandardCharsets.UTF_8).length;
+        long estimate = mc.estimateSerializedSize();
+
+        Assertions.assertTrue(estimate >= actual, estimate + " < " + actual);
+        Assertions.assertTrue(estimate < 2 * actual, estimate + " >= 2 * " + actual);
+    }
+
+    @Test
+    void testSetMaxEventSizeRejectsNonPositiveValues() {
+        MetricsContext mc = new MetricsContext();
+        Assertions.assertThrows(IllegalArgumentException.class, () -> mc.setMaxEventSize(0));
+    }
+
+    @Test
+    void testCopyPreservesMaxEventSize() {
+        MetricsContext mc = new MetricsContext();
+        mc.setMaxEventSize(1024);
+        Assertions.assertEquals(1024, mc.createCopyWithContext(true).getMaxEventSize());
+    }
+
+    @Test
+    void testSerializationSizeIsSharedWithCopies()
+            throws JsonProcessingException, InvalidMetricException {
+        MetricsContext mc = new MetricsContext();
+        MetricsContext copy = mc.createCopyWithContext(true);
+        mc.putMetric("Count", 1, Unit.COUNT);
+
+        String event = mc.serialize().get(0);
+        int bytes = mc.serializeToUtf8().get(0).remaining();
+
+        Assertions.assertEquals(event.length(), copy.getSizeHint().getEventLength());
+        Assertions.assertEquals(bytes, copy.getSizeHint().getBufferSize());
+        Assertions.assertEquals(event, mc.serialize().get(0));
+    }
+
+    @Test
+    void testSerializeRepeatsPropertiesByDefault()
+            throws JsonProcessingException, InvalidMetricException {
+        MetricsContext mc = new MetricsContext();
+        mc.putProperty("TraceId", "1-5759e988-bd862e3fe1be46a994272793");
+        for (int i = 0; i < 150; i++) {
+            mc.putMetric("Metric-" + i, i);
+        }
+
+        List<String> events = mc.serialize();
+
+        Assertions.assertEquals(SplitStrategy.REPEAT_PROPERTIES, mc.getSplitStrategy());
+        Assertions.assertEquals(2, events.size());
+        for (String event : events) {
+            Assertions.assertTrue(parseRootNode(event).containsKey("TraceId"));
+        }
+    }
+
+    @Test
+    void testSerializePropertiesInFirstEventOnly()
+            throws JsonProcessingException, InvalidMetricException, InvalidDimensionException {
+        MetricsContext mc = new MetricsContext();
+        mc.setSplitStrategy(SplitStrategy.PROPERTIES_IN_FIRST_EVENT);
+        mc.setRepeatedProperties("RequestId");
+        mc.putDimension(DimensionSet.of("Service", "Api"));
+        mc.putProperty("RequestId", "0f1e2d3c");
+        mc.putProperty("TraceId", "1-5759e988-bd862e3fe1be46a994272793");
+        mc.putProperty("Service", "ignored in favour of the dimension");
+        for (int i = 0; i < 250; i++) {
+            mc.putMetric("Metric-" + i, i);
+        }
+
+        List<String> events = mc.serialize();
+
+        Assertions.assertEquals(3, events.size());
+        for (int i = 0; i < events.size(); i++) {
+            Map<String, Object> rootNode = parseRootNode(events.get(i));
+            Assertions.assertEquals("0f1e2d3c", rootNode.get("RequestId"));
+            Assertions.assertEquals("Api", rootNode.get("Service"));
+            Assertions.assertEquals(i == 0, rootNode.containsKey("TraceId"));
+            Assertions.assertEquals(
+                    events.get(i),
+                    StandardCharsets.UTF_8
+                            .decode(mc.serializeToUtf8().get(i))
+                            .toString()
+                            .trim());
+        }
+    }
+
+    @Test
+    void testCopyPreservesSplitStrategy() {
+        MetricsContext mc = new MetricsContext();
+        mc.setSplitStrategy(SplitStrategy.PROPERTIES_IN_FIRST_EVENT);
+        mc.setRepeatedProperties("RequestId");
+
+        MetricsContext copy = mc.createCopyWithContext(true);
+
+        Assertions.assertEquals(SplitStrategy.PROPERTIES_IN_FIRST_EVENT, copy.getSplitStrategy());
+        Assertions.assertEquals(Collections.singleton("RequestId"), copy.getRepeatedProperties());
+    }
+
+    @Test
+    void testParallelSerializationKeepsEventOrder()
+            throws JsonProcessingException, InvalidMetricException {
+        MetricsContext mc = new MetricsContext();
+        mc.putProperty("RequestId", "0f1e2d3c");
+        for (int i = 0; i < 1000; i++) {
+            for (int j = 0; j < 3; j++) {
+                mc.putMetric("Metric-" + i, i * j / 7.0);
+            }
+        }
+        List<String> expected = mc.serialize();
+        List<ByteBuffer> expectedBytes = mc.serializeToUtf8();
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            mc.setSerializationPool(pool);
+            mc.setParallelSerializationThreshold(0);
+
+            Assertions.assertEquals(10, expected.size());
+            Assertions.assertEquals(expected, mc.serialize());
+            Assertions.assertEquals(expectedBytes, mc.serializeToUtf8());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void testParallelSerializationSkipsContextsBelowThreshold()
+            throws JsonProcessingException, InvalidMetricException {
+        MetricsContext mc = new MetricsContext();
+        for (int i = 0; i < 150; i++) {
+            mc.putMetric("Metric-" + i, i);
+        }
+        // A pool that rejects all tasks, so any attempt to use it fails
+        ForkJoinPool pool = new ForkJoinPool(1);
+        pool.shutdown();
+        mc.setSerializationPool(pool);
+        mc.setParallelSerializationThreshold(Integer.MAX_VALUE);
+
+        Assertions.assertEquals(2, mc.serialize().size());
+        Assertions.assertEquals(2, mc.serializeToUtf8().size());
+
+        mc.setParallelSerializationThreshold(0);
+        Assertions.assertThrows(RejectedExecutionException.class, mc::serialize);
+    }
+
+    @Test
+    void testSetParallelSerializationThresholdRejectsNegativeValues() {
+        MetricsContext mc = new MetricsContext();
+        Assertions.assertThrows(
+                IllegalArgumentException.class, () -> mc.setParallelSerializationThreshold(-1));
+    }
+
+    @Test
+    void testCopyPreservesSerializationPool() {
+        MetricsContext mc = new MetricsContext();
+        mc.setSerializationPool(ForkJoinPool.commonPool());
+        mc.setParallelSerializationThreshold(1024);
+
+        MetricsContext copy = mc.createCopyWithContext(true);
+
+        Assertions.assertSame(ForkJoinPool.commonPool(), copy.getSerializationPool());
+        Assertions.assertEquals(1024, copy.getParallelSerializationThreshold());
+    }
+
     @Test
     void testSerializeAMetricWith101DataPoints()
             throws JsonProcessingException, InvalidMetricException {
@@ -137,6 +389,78 @@ class MetricsContextTest {
                 Collections.singletonList(100.0), metricsFromEvent2.get(0).getValues());
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    void testSerializeValuesAndCounts() throws JsonProcessingException, InvalidMetricException {
+        MetricsContext mc = new MetricsContext();
+        mc.setAggregationMode(AggregationMode.VALUES_AND_COUNTS);
+        for (int i = 0; i < 1000; i++) {
+            mc.putMetric("Latency", i % 3, Unit.MILLISECONDS);
+        }
+
+        List<String> events = mc.serialize();
+        Assertions.assertEquals(1, events.size());
+
+        Map<String, Object> rootNode = parseRootNode(events.get(0));
+        Map<String, Object> latency = (Map<String, Object>) rootNode.get("Latency");
+        Assertions.assertEquals(Arrays.asList(0.0, 1.0, 2.0), latency.get("Values"));
+        Assertions.assertEquals(Arrays.asList(334, 333, 333), latency.get("Counts"));
+    }
+
+    @Test
+    void testSerializeValuesAndCountsSplitsByDistinctValues()
+            throws JsonProcessingException, InvalidMetricException {
+        MetricsContext mc = new MetricsContext();
+        mc.setAggregationMode(AggregationMode.VALUES_AND_COUNTS);
+        for (int i = 0; i < 10 * Constants.MAX_DATAPOINTS_PER_METRIC; i++) {
+            mc.putMetric("Latency", i % (Constants.MAX_DATAPOINTS_PER_METRIC + 1));
+        }
+
+        Assertions.assertEquals(2, mc.serialize().size());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testSerializeHistogram() throws JsonProcessingException, InvalidMetricException {
+        MetricsContext mc = new MetricsContext();
+        mc.setHistogramRelativeError(0.1);
+        for (int i = 0; i < 100_000; i++) {
+            mc.putMetric(
+                    "Latency",
+                    1 + i % 1000,
+                    Unit.MILLISECONDS,
+                    StorageResolution.STANDARD,
+                    AggregationMode.HISTOGRAM);
+        }
+
+        List<String> events = mc.serialize();
+        Assertions.assertEquals(1, events.size());
+
+        Map<String, Object> rootNode = parseRootNode(events.get(0));
+        Map<String, Object> latency = (Map<String, Object>) rootNode.get("Latency");
+        List<Integer> counts = (List<Integer>) latency.get("Counts");
+        Assertions.assertEquals(100_000, counts.stream().mapToInt(Integer::intValue).sum());
+    }
+
+    @Test
+    void testSetHistogramRelativeErrorRejectsInvalidValues() {
+        MetricsContext mc = new MetricsContext();
+        Assertions.assertThrows(
+                InvalidMetricException.class, () -> mc.setHistogramRelativeError(0));
+        Assertions.assertThrows(
+                InvalidMetricException.class, () -> mc.setHistogramRelativeError(0.6));
+    }
+
+    @Test
+    void testCopyPreservesAggregationMode() {
+        MetricsContext mc = new MetricsContext();
+        mc.setAggregationMode(AggregationMode.VALUES_AND_COUNTS);
+
+        Assertions.assertEquals(
+                AggregationMode.VALUES_AND_COUNTS,
+                mc.createCopyWithContext(true).getAggregationMode());
+    }
+
     @Test
     void testSerializeZeroMetric()
             throws JsonProcessingException, InvalidDimensionException,
@@ -186,6 +510,83 @@ class MetricsContextTest {
         Assertions.assertEquals("MetadataValue", customFields.get("Metadata"));
     }
 
+    @Test
+    void testPutMetricWithHandle() throws JsonProcessingException {
+        MetricHandle handle = MetricHandle.of("Latency", Unit.MILLISECONDS);
+        MetricsContext mc = new MetricsContext();
+        mc.putMetric(handle, 10);
+        mc.putMetric(handle, 20);
+        mc.putMetric("Latency", 30, Unit.MILLISECONDS);
+
+        List<String> events = mc.serialize();
+        Assertions.assertEquals(1, events.size());
+        ArrayList<MetricDefinition> metrics = parseMetrics(events.get(0));
+        Assertions.assertEquals(1, metrics.size());
+        Assertions.assertEquals(Unit.MILLISECONDS, metrics.get(0).getUnit());
+        Assertions.assertEquals(Arrays.asList(10d, 20d, 30d), metrics.get(0).getValues());
+    }
+
+    @Test
+    void testPutMetricWithHandleAfterCopy() throws JsonProcessingException {
+        MetricHandle handle = MetricHandle.of("Count", Unit.COUNT);
+        MetricsContext mc = new MetricsContext();
+        mc.putMetric(handle, 1);
+        mc.serialize();
+
+        MetricsContext copy = mc.createCopyWithContext(true);
+        copy.putMetric(handle, 2);
+
+        ArrayList<MetricDefinition> metrics = parseMetrics(copy.serialize().get(0));
+        Assertions.assertEquals(1, metrics.size());
+        Assertions.assertEquals(Collections.singletonList(2d), metrics.get(0).getValues());
+    }
+
+    @Test
+    void testPutMetricWithHandleBeyondIndexedHandles() throws JsonProcessingException {
+        MetricHandle handle = MetricHandle.of("Unindexed");
+        for (int i = 0; i < MetricHandle.MAX_INDEXED_HANDLES; i++) {
+            handle = MetricHandle.of("Unindexed");
+        }
+        Assertions.assertEquals(MetricHandle.NOT_INDEXED, handle.getId());
+
+        MetricsContext mc = new MetricsContext();
+        mc.putMetric(handle, 1);
+        mc.putMetric(handle, 2);
+
+        ArrayList<MetricDefinition> metrics = parseMetrics(mc.serialize().get(0));
+        Assertions.assertEquals(1, metrics.size());
+        Assertions.assertEquals(Arrays.asList(1d, 2d), metrics.get(0).getValues());
+    }
+
+    @Test
+    void testPutMetricWithHandleRejectsConflictingResolution() {
+        MetricHandle handle = MetricHandle.of("Metric", Unit.NONE, StorageResolution.HIGH);
+        MetricsContext mc = new MetricsContext();
+        mc.putMetric("Metric", 1, StorageResolution.STANDARD);
+
+        Assertions.assertThrows(InvalidMetricException.class, () -> mc.putMetric(handle, 1));
+    }
+
+    @Test
+    void testPutMetricWithHandleRejectsInvalidValue() {
+        MetricHandle handle = MetricHandle.of("Metric");
+        MetricsContext mc = new MetricsContext();
+        mc.putMetric(handle, 1);
+
+        Assertions.assertThrows(
+                InvalidMetricException.class, () -> mc.putMetric(handle, Double.NaN));
+    }
+
+    @Test
+    void testInvalidMetricHandle() {
+        Assertions.assertThrows(InvalidMetricException.class, () -> MetricHandle.of(" "));
+        Assertions.assertThrows(
+                InvalidMetricException.class, () -> MetricHandle.of("Metric", null));
+        Assertions.assertThrows(
+                InvalidMetricException.class,
+                () -> MetricHandle.of("Metric", Unit.NONE, StorageResolution.STANDARD, null));
+    }
+
     @SuppressWarnings("unchecked")
     private ArrayList<MetricDefinition> parseMetrics(String event) throws JsonProcessingException {
         Map<String, Object> rootNode = parseRootNode(event);
@@ -0,0 +1,64 @@
+/*
+ *   Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package software.amazon.cloudwatchlogs.emf.model;
+
+import java.io.IOException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class ReusableStringWriterTest {
+
+    @Test
+    void testWriterIsReusedAfterRelease() throws IOException {
+        ReusableStringWriter writer = ReusableStringWriter.acquire(16);
+        writer.write("event");
+        writer.release();
+
+        ReusableStringWriter next = ReusableStringWriter.acquire(16);
+        next.release();
+
+        Assertions.assertSame(writer, next);
+        Assertions.assertEquals(0, next.length());
+    }
+
+    @Test
+    void testWriterInUseIsNotShared() throws IOException {
+        ReusableStringWriter writer = ReusableStringWriter.acquire(16);
+        writer.write("outer");
+
+        ReusableStringWriter nested = ReusableStringWriter.acquire(16);
+        nested.write("inner");
+        nested.release();
+
+        Assertions.assertNotSame(writer, nested);
+        Assertions.assertEquals("outer", writer.toString());
+        writer.release();
+    }
+
+    @Test
+    void testResetKeepsWriting() {
+        ReusableStringWriter writer = ReusableStringWriter.acquire(0);
+        writer.write("first".toCharArray(), 0, 5);
+        writer.reset();
+        writer.write('{');
+        writer.write("abc}", 3, 1);
+
+        Assertions.assertEquals("{}", writer.toString());
+        writer.release();
+    }
+}
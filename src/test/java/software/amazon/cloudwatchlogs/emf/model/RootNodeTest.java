@@ -19,7 +19,10 @@ package software.amazon.cloudwatchlogs.emf.model;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import org.junit.jupiter.api.Assertions;
@@ -72,6 +75,7 @@ class RootNodeTest {
         mc.putDimension("Dim1", "DimVal1");
 
         mc.putProperty("Prop1", "PropValue1");
+        rootNode.mergeWrites();
 
         Assertions.assertEquals(
                 Arrays.asList(10.0, 20.0), rootNode.getTargetMembers().get("Count"));
@@ -118,4 +122,106 @@ class RootNodeTest {
 
         Assertions.assertEquals("{\"foo\":\"bar\"}", root.serialize());
     }
+
+    @Test
+    void testStreamingSerializationMatchesDatabind() throws JsonProcessingException {
+        MetricsContext mc = new MetricsContext();
+        mc.setNamespace("Namespace");
+        mc.setDefaultDimensions(DimensionSet.of("Service", "Api"));
+        mc.putDimension(DimensionSet.of("Region", "us-east-1", "Operation", "Get"));
+        mc.putDimension(DimensionSet.of("Region", "us-west-2"));
+        mc.putMetric("Count", 1);
+        mc.putMetric("Latency", 10, Unit.MILLISECONDS, StorageResolution.HIGH);
+        mc.putMetric("Latency", 20.5, Unit.MILLISECONDS, StorageResolution.HIGH);
+        mc.putMetric(
+                "Requests",
+                1,
+                Unit.COUNT,
+                StorageResolution.STANDARD,
+                AggregationMode.STATISTIC_SET);
+        mc.putMetric(
+                "Size",
+                3,
+                Unit.BYTES,
+                StorageResolution.STANDARD,
+                AggregationMode.VALUES_AND_COUNTS);
+        mc.putMetric(
+                "Size",
+                3,
+                Unit.BYTES,
+                StorageResolution.STANDARD,
+                AggregationMode.VALUES_AND_COUNTS);
+        mc.putProperty("String", "va\"lue\n");
+        mc.putProperty("Int", 1);
+        mc.putProperty("Long", 2L);
+        mc.putProperty("Double", 3.5);
+        mc.putProperty("Boolean", true);
+        mc.putProperty("List", Arrays.asList("a", 1));
+        mc.putProperty("Map", Collections.singletonMap("key", 1.5f));
+        mc.putProperty("Count", "hidden by the metric");
+        mc.putProperty("Region", "hidden by the dimension");
+        mc.putMetadata("Custom", Collections.singletonMap("LogGroupName", "group"));
+
+        RootNode rootNode = mc.getRootNode();
+        Assertions.assertEquals(rootNode.serializeWithDatabind(), rootNode.serialize());
+    }
+
+    @Test
+    void testStreamingSerializationMatchesDatabindWithoutMetrics() throws JsonProcessingException {
+        RootNode rootNode = new RootNode();
+        rootNode.putProperty("foo", "bar");
+        rootNode.getAws().createMetricDirective().putDimensionSet(DimensionSet.of("Dim", "Val"));
+
+        Assertions.assertEquals(rootNode.serializeWithDatabind(), rootNode.serialize());
+    }
+
+    @Test
+    void testChunkSerializationMatchesDatabindOfSlicedCopies()
+            throws JsonProcessingException, InvalidMetricException, InvalidDimensionException {
+        MetricsContext mc = new MetricsContext();
+        mc.putDimension(DimensionSet.of("Region", "us-east-1"));
+        mc.putProperty("Property", "value");
+        mc.putProperty("Metric-1", "hidden in events holding Metric-1");
+        for (int i = 0; i < 150; i++) {
+            mc.putMetric("Metric-" + i, i);
+        }
+        for (int i = 0; i < 250; i++) {
+            mc.putMetric("Metric-1", i);
+            mc.putMetric(
+                    "Size",
+                    i % 150,
+                    Unit.BYTES,
+                    StorageResolution.STANDARD,
+                    AggregationMode.VALUES_AND_COUNTS);
+        }
+
+        RootNode rootNode = mc.getRootNode();
+        rootNode.mergeWrites();
+        MetricDirective directive = rootNode.getAws().getCloudWatchMetrics().get(0);
+        MetricChunker chunker =
+                new MetricChunker(
+                        rootNode.metrics().values(),
+                        EventSizeEstimator.estimateWithoutMetrics(rootNode),
+                        mc.getMaxEventSize());
+        List<String> events = new ArrayList<>();
+        while (chunker.next()) {
+            Map<String, MetricDefinition> metrics = new LinkedHashMap<>();
+            for (int i = 0; i < chunker.size(); i++) {
+                MetricDefinition metric = chunker.getMetric(i);
+                metrics.put(metric.getName(), metric.slice(chunker.getFrom(i), chunker.getTo(i)));
+            }
+            RootNode copy =
+                    rootNode.withAws(
+                            rootNode.getAws()
+                                    .withCloudWatchMetrics(
+                                            Collections.singletonList(
+                                                    directive.withMetrics(metrics))));
+            String event = rootNode.serialize(EventSerializer.JACKSON, chunker);
+            Assertions.assertEquals(copy.serializeWithDatabind(), event);
+            events.add(event);
+        }
+
+        Assertions.assertTrue(events.size() >= 3);
+        Assertions.assertEquals(events, mc.serialize());
+    }
 }
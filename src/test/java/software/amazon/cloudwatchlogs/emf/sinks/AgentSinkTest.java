@@ -25,10 +25,15 @@ import static org.mockito.Mockito.when;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.locks.ReentrantLock;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import software.amazon.cloudwatchlogs.emf.Constants;
 import software.amazon.cloudwatchlogs.emf.exception.EMFClientException;
 import software.amazon.cloudwatchlogs.emf.exception.InvalidMetricException;
@@ -38,6 +43,8 @@ import software.amazon.cloudwatchlogs.emf.sinks.retry.RetryStrategy;
 @SuppressWarnings("unchecked")
 public class AgentSinkTest {
 
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
     @Test
     public void testAccept() throws JsonProcessingException, InvalidMetricException {
         // arrange
@@ -164,7 +171,7 @@ public class AgentSinkTest {
     }
 
     @Test
-    public void failedMessagesAreQueued() throws InvalidMetricException {
+    public void failedMessagesAreQueued() throws InvalidMetricException, InterruptedException {
         // arrange
         Fixture fixture = new Fixture();
         fixture.client.messagesToFail = Constants.MAX_ATTEMPTS_PER_MESSAGE * 2;
@@ -182,6 +189,8 @@ public class AgentSinkTest {
 
         // act
         sink.accept(mc);
+        // wait for the sender to take the first message off the queue
+        fixture.client.attempted.await();
         sink.accept(mc);
 
         sink.shutdown().join();
@@ -220,7 +229,7 @@ public class AgentSinkTest {
     }
 
     @Test
-    public void oldestMessagesAreDropped() throws InvalidMetricException {
+    public void oldestMessagesAreDropped() throws InvalidMetricException, InterruptedException {
         // arrange
         Fixture fixture = new Fixture();
         AgentSink sink =
@@ -245,9 +254,9 @@ public class AgentSinkTest {
 
         // act
         sink.accept(send);
-        sink.accept(
-                shouldDrop); // this goes in second because the first message will be pulled off the
-        // queue immediately
+        // the first message is pulled off the queue and blocks the sender
+        fixture.client.attempted.await();
+        sink.accept(shouldDrop);
         sink.accept(send); // this one should overwrite the previous message
         fixture.client.lock.unlock();
         sink.shutdown().join();
@@ -255,9 +264,172 @@ public class AgentSinkTest {
         // assert
         assertEquals(0, fixture.client.messagesFailed);
         assertEquals(2, fixture.client.messagesSent);
+        assertEquals(1, sink.getDroppedEventCount());
         fixture.client.messages.forEach(message -> assertFalse(message.contains("DONT_SEND")));
     }
 
+    @Test
+    public void newestMessagesAreDroppedWithDropNewestPolicy()
+            throws InvalidMetricException, InterruptedException, JsonProcessingException {
+        // arrange
+        Fixture fixture = new Fixture();
+        AgentSink sink =
+                new AgentSink(
+                        "",
+                        null,
+                        Endpoint.DEFAULT_TCP_ENDPOINT,
+                        fixture.factory,
+                        1,
+                        InstantRetryStrategy::new,
+                        0,
+                        0,
+                        WaitStrategy.BLOCKING,
+                        OverflowPolicy.dropNewest());
+        fixture.client.lock.lock();
+
+        MetricsContext send = new MetricsContext();
+        send.putMetric("SEND", 10);
+
+        MetricsContext shouldDrop = new MetricsContext();
+        shouldDrop.putMetric("DROP", 10);
+
+        // act
+        sink.accept(send);
+        fixture.client.attempted.await();
+        sink.accept(send);
+        sink.accept(shouldDrop); // the queue is full, so this one is dropped
+        fixture.client.lock.unlock();
+        sink.shutdown().join();
+
+        // assert
+        assertEquals(2, fixture.client.messagesSent);
+        fixture.client.messages.forEach(message -> assertFalse(message.contains("DROP")));
+        assertEquals(1, sink.getDroppedEventCount());
+        assertEquals(
+                shouldDrop.serializeToUtf8().get(0).remaining(), sink.getDroppedByteCount());
+    }
+
+    @Test
+    public void failedMessagesAreSpilledAndReplayedInOrder()
+            throws InvalidMetricException, IOException {
+        // arrange
+        Fixture fixture = new Fixture();
+        fixture.client.messagesToFail = 3;
+        Path directory = folder.newFolder().toPath();
+        AgentSink sink = createSpillingSink(fixture, directory);
+
+        // act
+        for (int i = 0; i < 3; i++) {
+            MetricsContext mc = new MetricsContext();
+            mc.putMetric("Metric" + i, i);
+            sink.accept(mc);
+        }
+        sink.shutdown().join();
+
+        // assert
+        assertEquals(3, fixture.client.messagesFailed);
+        assertEquals(3, fixture.client.messagesSent);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(fixture.client.getMessages().get(i).contains("Metric" + i));
+        }
+        assertEquals(0, sink.getSpilledEventCount());
+        assertEquals(0, sink.getDroppedEventCount());
+        assertTrue(new SpillQueue(directory, 1024 * 1024, 1024 * 1024).isEmpty());
+    }
+
+    @Test
+    public void spilledMessagesAreKeptOnShutdown() throws InvalidMetricException, IOException {
+        // arrange
+        Fixture fixture = new Fixture();
+        fixture.client.messagesToFail = Integer.MAX_VALUE;
+        Path directory = folder.newFolder().toPath();
+        AgentSink sink = createSpillingSink(fixture, directory);
+
+        MetricsContext mc = new MetricsContext();
+        mc.putMetric("Time", 10);
+
+        // act
+        sink.accept(mc);
+        sink.accept(mc);
+        sink.shutdown().join();
+
+        // assert
+        assertEquals(0, fixture.client.messagesSent);
+        assertEquals(2, sink.getSpilledEventCount());
+        assertEquals(2, new SpillQueue(directory, 1024 * 1024, 1024 * 1024).size());
+    }
+
+    @Test
+    public void spilledMessagesAreReplayedByTheNextSink()
+            throws InvalidMetricException, IOException {
+        // arrange
+        Fixture fixture = new Fixture();
+        fixture.client.messagesToFail = Integer.MAX_VALUE;
+        Path directory = folder.newFolder().toPath();
+        AgentSink sink = createSpillingSink(fixture, directory);
+        MetricsContext mc = new MetricsContext();
+        mc.putMetric("Time", 10);
+        sink.accept(mc);
+        sink.accept(mc);
+        sink.shutdown().join();
+        fixture.client.messagesToFail = 0;
+
+        // act
+        AgentSink nextSink = createSpillingSink(fixture, directory);
+        nextSink.shutdown().join();
+
+        // assert
+        assertEquals(2, fixture.client.messagesSent);
+        assertTrue(new SpillQueue(directory, 1024 * 1024, 1024 * 1024).isEmpty());
+    }
+
+    @Test
+    public void senderThreadIsStartedByTheFirstEvent() throws InvalidMetricException {
+        // arrange
+        Fixture fixture = new Fixture();
+        AgentSink sink =
+                new AgentSink(
+                        "",
+                        null,
+                        Endpoint.DEFAULT_TCP_ENDPOINT,
+                        fixture.factory,
+                        1,
+                        InstantRetryStrategy::new);
+        MetricsContext mc = new MetricsContext();
+        mc.putMetric("Time", 10);
+
+        // act
+        boolean startedBeforeAccept = isSenderThreadAlive();
+        sink.accept(mc);
+        boolean startedByAccept = isSenderThreadAlive();
+        sink.shutdown().join();
+
+        // assert
+        assertFalse(startedBeforeAccept);
+        assertTrue(startedByAccept);
+        assertEquals(1, fixture.client.messagesSent);
+    }
+
+    private static boolean isSenderThreadAlive() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .anyMatch(thread -> thread.getName().equals("emf-agent-sink"));
+    }
+
+    private AgentSink createSpillingSink(Fixture fixture, Path directory) throws IOException {
+        return new AgentSink(
+                "",
+                null,
+                Endpoint.DEFAULT_TCP_ENDPOINT,
+                fixture.factory,
+                10,
+                InstantRetryStrategy::new,
+                0,
+                0,
+                WaitStrategy.BLOCKING,
+                OverflowPolicy.dropOldest(),
+                new SpillQueue(directory, 1024 * 1024, 1024 * 1024));
+    }
+
     @Test
     public void cannotEnqueueDataAfterShuttingDownSink() {
         // arrange
@@ -278,6 +450,101 @@ public class AgentSinkTest {
         assertThrows(EMFClientException.class, () -> sink.accept(new MetricsContext()));
     }
 
+    @Test
+    public void testBatchesQueuedEvents() throws InvalidMetricException {
+        // arrange
+        Fixture fixture = new Fixture();
+        AgentSink sink =
+                new AgentSink(
+                        "",
+                        null,
+                        Endpoint.DEFAULT_TCP_ENDPOINT,
+                        fixture.factory,
+                        10,
+                        InstantRetryStrategy::new,
+                        64 * 1024,
+                        200);
+
+        MetricsContext mc = new MetricsContext();
+        mc.putMetric("Time", 10);
+
+        // act
+        sink.accept(mc);
+        sink.accept(mc);
+        sink.accept(mc);
+        sink.shutdown().join();
+
+        // assert
+        assertEquals(1, fixture.client.messagesSent);
+        String batch = fixture.client.getMessages().get(0);
+        assertEquals(3, batch.split("\n").length);
+        assertTrue(batch.endsWith("\n"));
+        assertEquals(1, sink.getBatchCount());
+        assertEquals(3, sink.getBatchedEventCount());
+        assertEquals(batch.length(), sink.getBatchedByteCount());
+        assertEquals(0, sink.getQueueDepth());
+    }
+
+    @Test
+    public void testBatchesAreBoundedByMaxBytes()
+            throws InvalidMetricException, JsonProcessingException {
+        // arrange
+        Fixture fixture = new Fixture();
+        MetricsContext mc = new MetricsContext();
+        mc.putMetric("Time", 10);
+        int eventSize = mc.serializeToUtf8().get(0).remaining();
+        AgentSink sink =
+                new AgentSink(
+                        "",
+                        null,
+                        Endpoint.DEFAULT_TCP_ENDPOINT,
+                        fixture.factory,
+                        10,
+                        InstantRetryStrategy::new,
+                        2 * eventSize,
+                        200);
+
+        // act
+        sink.accept(mc);
+        sink.accept(mc);
+        sink.accept(mc);
+        sink.shutdown().join();
+
+        // assert
+        assertEquals(2, fixture.client.messagesSent);
+        assertEquals(2, sink.getBatchCount());
+        assertEquals(3, sink.getBatchedEventCount());
+        assertEquals(3L * eventSize, sink.getBatchedByteCount());
+    }
+
+    @Test
+    public void testBatchingIsDisabledForUdp() throws InvalidMetricException {
+        // arrange
+        Fixture fixture = new Fixture();
+        AgentSink sink =
+                new AgentSink(
+                        "",
+                        null,
+                        new Endpoint("127.0.0.1", 25888, Protocol.UDP),
+                        fixture.factory,
+                        10,
+                        InstantRetryStrategy::new,
+                        64 * 1024,
+                        200);
+
+        MetricsContext mc = new MetricsContext();
+        mc.putMetric("Time", 10);
+
+        // act
+        sink.accept(mc);
+        sink.accept(mc);
+        sink.shutdown().join();
+
+        // assert
+        assertEquals(2, fixture.client.messagesSent);
+        assertEquals(0, sink.getBatchCount());
+    }
+
     class Fixture {
         SocketClientFactory factory;
         TestClient client;
@@ -297,12 +564,16 @@ public class AgentSinkTest {
         // to the socket
         private final ReentrantLock lock = new ReentrantLock();
 
+        // counted down when the client is first asked to send a message
+        private final CountDownLatch attempted = new CountDownLatch(1);
+
         private int messagesSent = 0;
         private int messagesFailed = 0;
         private int messagesToFail = 0;
 
         @Override
         public void sendMessage(String message) {
+            attempted.countDown();
             if (messagesToFail > messagesFailed) {
                 messagesFailed++;
                 throw new RuntimeException("Failed to send message");
@@ -0,0 +1,270 @@
+/*
+ *   Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package software.amazon.cloudwatchlogs.emf.sinks;
+
+import static junit.framework.TestCase.*;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class EventRingBufferTest {
+
+    @Test
+    public void testEventsArePolledInOrder() {
+        EventRingBuffer ring = new EventRingBuffer(4, WaitStrategy.BLOCKING);
+
+        for (int i = 0; i < 3; i++) {
+            ring.offer(event(i));
+        }
+
+        assertEquals(3, ring.size());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(i, ring.poll().getInt(0));
+        }
+        assertNull(ring.poll());
+        assertTrue(ring.isEmpty());
+        assertEquals(0, ring.getDroppedCount());
+    }
+
+    @Test
+    public void testOldestEventsAreOverwrittenWhenFull() {
+        EventRingBuffer ring = new EventRingBuffer(2, WaitStrategy.BLOCKING);
+
+        for (int i = 0; i < 5; i++) {
+            ring.offer(event(i));
+        }
+
+        assertEquals(2, ring.size());
+        assertEquals(3, ring.poll().getInt(0));
+        assertEquals(4, ring.poll().getInt(0));
+        assertNull(ring.poll());
+        assertEquals(3, ring.getDroppedCount());
+        assertEquals(12, ring.getDroppedBytes());
+    }
+
+    @Test
+    public void testNewestEventsAreDroppedWhenFull() {
+        EventRingBuffer ring =
+                new EventRingBuffer(2, WaitStrategy.BLOCKING, OverflowPolicy.dropNewest());
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals(i < 2, ring.offer(event(i)));
+        }
+
+        assertEquals(0, ring.poll().getInt(0));
+        assertEquals(1, ring.poll().getInt(0));
+        assertNull(ring.poll());
+        assertEquals(3, ring.getDroppedCount());
+        assertEquals(12, ring.getDroppedBytes());
+    }
+
+    @Test
+    public void testBlockedOfferTimesOutWhenFull() {
+        EventRingBuffer ring =
+                new EventRingBuffer(
+                        1,
+                        WaitStrategy.BLOCKING,
+                        OverflowPolicy.block(10, TimeUnit.MILLISECONDS));
+        ring.offer(event(0));
+
+        long start = System.nanoTime();
+        assertFalse(ring.offer(event(1)));
+
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(10));
+        assertEquals(1, ring.getDroppedCount());
+        assertEquals(0, ring.poll().getInt(0));
+    }
+
+    @Test
+    public void testBlockedOfferWaitsForRoom() throws InterruptedException {
+        EventRingBuffer ring =
+                new EventRingBuffer(
+                        1, WaitStrategy.BLOCKING, OverflowPolicy.block(10, TimeUnit.SECONDS));
+        ring.offer(event(0));
+        Thread consumer =
+                new Thread(
+                        () -> {
+                            sleep(20);
+                            ring.poll();
+                        });
+        consumer.start();
+
+        assertTrue(ring.offer(event(1)));
+
+        consumer.join();
+        assertEquals(1, ring.poll().getInt(0));
+        assertEquals(0, ring.getDroppedCount());
+    }
+
+    @Test
+    public void testSampledEventsReplaceTheOldest() {
+        EventRingBuffer ring =
+                new EventRingBuffer(2, WaitStrategy.BLOCKING, OverflowPolicy.sample(1));
+
+        for (int i = 0; i < 5; i++) {
+            assertTrue(ring.offer(event(i)));
+        }
+
+        assertEquals(3, ring.poll().getInt(0));
+        assertEquals(4, ring.poll().getInt(0));
+        assertEquals(3, ring.getDroppedCount());
+    }
+
+    @Test
+    public void testSampleKeepsSomeEventsWhenFull() {
+        EventRingBuffer ring =
+                new EventRingBuffer(10, WaitStrategy.BLOCKING, OverflowPolicy.sample(4));
+
+        int kept = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (ring.offer(event(i))) {
+                kept++;
+            }
+        }
+
+        // about one in four of the events past the first ten are kept, each evicting another
+        assertTrue(kept > 10 + 10_000 / 8 && kept < 10 + 10_000 / 2);
+        assertEquals(10_000 - 10, ring.getDroppedCount());
+    }
+
+    @Test
+    public void testPollTimesOutWhenEmpty() throws InterruptedException {
+        for (WaitStrategy strategy : WaitStrategy.values()) {
+            EventRingBuffer ring = new EventRingBuffer(1, strategy);
+
+            assertNull(ring.poll(1, TimeUnit.MILLISECONDS));
+        }
+    }
+
+    @Test
+    public void testPollWakesUpOnOffer() throws InterruptedException {
+        for (WaitStrategy strategy : WaitStrategy.values()) {
+            EventRingBuffer ring = new EventRingBuffer(1, strategy);
+            Thread producer =
+                    new Thread(
+                            () -> {
+                                sleep(20);
+                                ring.offer(event(7));
+                            });
+            producer.start();
+
+            ByteBuffer event = ring.poll(10, TimeUnit.SECONDS);
+
+            assertNotNull(strategy.name(), event);
+            assertEquals(7, event.getInt(0));
+            producer.join();
+        }
+    }
+
+    @Test
+    public void testConcurrentProducersLoseNoEventsUncounted() throws InterruptedException {
+        assertNoEventsLostUncounted(OverflowPolicy.dropOldest());
+        assertNoEventsLostUncounted(OverflowPolicy.dropNewest());
+        assertNoEventsLostUncounted(OverflowPolicy.sample(2));
+        assertNoEventsLostUncounted(OverflowPolicy.block(1, TimeUnit.MILLISECONDS));
+    }
+
+    private void assertNoEventsLostUncounted(OverflowPolicy overflowPolicy)
+            throws InterruptedException {
+        int producerCount = 8;
+        int eventsPerProducer = 20_000;
+        EventRingBuffer ring = new EventRingBuffer(64, WaitStrategy.YIELDING, overflowPolicy);
+        List<Thread> producers = new ArrayList<>();
+        for (int p = 0; p < producerCount; p++) {
+            int producer = p;
+            producers.add(
+                    new Thread(
+                            () -> {
+                                for (int i = 0; i < eventsPerProducer; i++) {
+                                    ring.offer(event(producer));
+                                }
+                            }));
+        }
+
+        producers.forEach(Thread::start);
+        long received = 0;
+        while (received + ring.getDroppedCount() < (long) producerCount * eventsPerProducer) {
+            ByteBuffer event = ring.poll(10, TimeUnit.SECONDS);
+            assertNotNull(event);
+            received++;
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+
+        // every event was either received or counted as dropped
+        assertNull(ring.poll());
+        assertTrue(received > 0);
+        assertEquals(0, ring.size());
+    }
+
+    @Test
+    public void testOverwrittenEventsAreReadInOrder() throws InterruptedException {
+        int producerCount = 4;
+        int eventsPerProducer = 200_000;
+        EventRingBuffer ring = new EventRingBuffer(4, WaitStrategy.YIELDING);
+        List<Thread> producers = new ArrayList<>();
+        for (int p = 0; p < producerCount; p++) {
+            int producer = p;
+            producers.add(
+                    new Thread(
+                            () -> {
+                                for (int i = 0; i < eventsPerProducer; i++) {
+                                    ring.offer(event(producer * eventsPerProducer + i));
+                                }
+                            }));
+        }
+
+        producers.forEach(Thread::start);
+        int[] lastRead = new int[producerCount];
+        Arrays.fill(lastRead, -1);
+        long received = 0;
+        while (received + ring.getDroppedCount() < (long) producerCount * eventsPerProducer) {
+            ByteBuffer event = ring.poll(10, TimeUnit.SECONDS);
+            assertNotNull(event);
+            int producer = event.getInt(0) / eventsPerProducer;
+            int index = event.getInt(0) % eventsPerProducer;
+            // the events of a producer are never read ahead of its older ones
+            assertTrue(index + " read after " + lastRead[producer], index > lastRead[producer]);
+            lastRead[producer] = index;
+            received++;
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+
+        assertNull(ring.poll());
+    }
+
+    private static ByteBuffer event(int value) {
+        ByteBuffer event = ByteBuffer.allocate(4);
+        event.putInt(0, value);
+        return event;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ *   Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package software.amazon.cloudwatchlogs.emf.sinks;
+
+import static junit.framework.TestCase.*;
+import static org.junit.Assert.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class NioTCPClientTest {
+    private ServerSocket server;
+    private Endpoint endpoint;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new ServerSocket();
+        server.bind(new InetSocketAddress("127.0.0.1", 0));
+        endpoint = new Endpoint("127.0.0.1", server.getLocalPort(), Protocol.TCP);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.close();
+    }
+
+    @Test
+    public void testSendMessage() throws Exception {
+        CompletableFuture<byte[]> received = receive();
+
+        try (NioTCPClient client = new NioTCPClient(endpoint)) {
+            client.sendMessage("Test messageé");
+        }
+
+        assertEquals("Test messageé", new String(received.get(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testSendMessagesWritesAllBuffers() throws Exception {
+        CompletableFuture<byte[]> received = receive();
+        byte[] data = "xxsecondxx".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer[] messages = {
+            ByteBuffer.wrap("skipped".getBytes(StandardCharsets.UTF_8)),
+            ByteBuffer.wrap("first\n".getBytes(StandardCharsets.UTF_8)),
+            ByteBuffer.wrap(data, 2, data.length - 4).slice(),
+            ByteBuffer.allocateDirect(6).put("third\n".getBytes(StandardCharsets.UTF_8))
+        };
+        messages[3].flip();
+
+        try (NioTCPClient client = new NioTCPClient(endpoint)) {
+            client.sendMessages(messages, 1, 3);
+        }
+
+        assertEquals("first\nsecondthird\n", new String(received.get(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testPartialWritesAreCompleted() throws Exception {
+        CompletableFuture<byte[]> received = receive();
+        byte[] data = new byte[1024 * 1024];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        ByteBuffer[] messages = new ByteBuffer[4];
+        for (int i = 0; i < messages.length; i++) {
+            int size = data.length / messages.length;
+            messages[i] = ByteBuffer.wrap(data, i * size, size);
+        }
+
+        // a small send buffer makes the socket take each write in parts
+        try (NioTCPClient client = new NioTCPClient(endpoint, 4096)) {
+            client.sendMessages(messages, 0, messages.length);
+        }
+
+        assertTrue(Arrays.equals(data, received.get()));
+    }
+
+    @Test
+    public void testConnectionFailuresThrow() throws IOException {
+        server.close();
+        NioTCPClient client = new NioTCPClient(endpoint);
+
+        assertThrows(RuntimeException.class, () -> client.sendMessage("Test message"));
+        client.close();
+    }
+
+    @Test
+    public void testFactoryCreatesNioClientForTcp() {
+        SocketClientFactory factory = new SocketClientFactory(true, 0);
+
+        assertTrue(factory.getClient(endpoint) instanceof NioTCPClient);
+        assertTrue(
+                factory.getClient(new Endpoint("127.0.0.1", 25888, Protocol.UDP))
+                        instanceof UDPClient);
+        assertTrue(new SocketClientFactory().getClient(endpoint) instanceof TCPClient);
+    }
+
+    /** Accept one connection and read it until the client closes it, slowly at first. */
+    private CompletableFuture<byte[]> receive() {
+        return CompletableFuture.supplyAsync(
+                () -> {
+                    try (Socket socket = server.accept();
+                            InputStream in = socket.getInputStream()) {
+                        ByteArrayOutputStream out = new ByteArrayOutputStream();
+                        byte[] buffer = new byte[8192];
+                        int read;
+                        while ((read = in.read(buffer)) >= 0) {
+                            out.write(buffer, 0, read);
+                            if (out.size() < 64 * 1024) {
+                                Thread.sleep(1);
+                            }
+                        }
+                        return out.toByteArray();
+                    } catch (IOException | InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                });
+    }
+}
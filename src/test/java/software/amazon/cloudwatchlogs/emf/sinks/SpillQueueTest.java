@@ -0,0 +1,197 @@
+/*
+ *   Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package software.amazon.cloudwatchlogs.emf.sinks;
+
+import static junit.framework.TestCase.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SpillQueueTest {
+    private static final int SEGMENT_BYTES = 64;
+
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = folder.newFolder().toPath();
+    }
+
+    @Test
+    public void testEventsAreReplayedInOrderAcrossSegments() throws IOException {
+        SpillQueue queue = new SpillQueue(directory, 10 * SEGMENT_BYTES, SEGMENT_BYTES);
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(queue.append(event("event-" + i)));
+        }
+
+        assertEquals(10, queue.size());
+        assertEquals(70, queue.byteSize());
+        assertTrue(segmentCount() > 1);
+        for (int i = 0; i < 10; i++) {
+            assertEquals("event-" + i, read(queue.peek()));
+            queue.acknowledge();
+        }
+        assertNull(queue.peek());
+        assertTrue(queue.isEmpty());
+        assertEquals(0, queue.byteSize());
+    }
+
+    @Test
+    public void testAcknowledgedSegmentsAreDeleted() throws IOException {
+        SpillQueue queue = new SpillQueue(directory, 10 * SEGMENT_BYTES, SEGMENT_BYTES);
+        for (int i = 0; i < 10; i++) {
+            queue.append(event("event-" + i));
+        }
+        int segments = segmentCount();
+
+        while (!queue.isEmpty()) {
+            queue.acknowledge();
+        }
+
+        assertTrue(segments > 1);
+        assertEquals(1, segmentCount());
+    }
+
+    @Test
+    public void testEventsAreRejectedWhenFull() throws IOException {
+        SpillQueue queue = new SpillQueue(directory, 2 * SEGMENT_BYTES, SEGMENT_BYTES);
+
+        int appended = 0;
+        while (queue.append(event("event-" + appended))) {
+            appended++;
+        }
+
+        assertEquals(appended, queue.size());
+        assertEquals(2, segmentCount());
+        assertFalse(queue.append(ByteBuffer.allocate(SEGMENT_BYTES)));
+
+        // acknowledging the events of the first segment makes room again
+        for (int i = 0; i < appended / 2; i++) {
+            queue.acknowledge();
+        }
+        assertTrue(queue.append(event("event-" + appended)));
+    }
+
+    @Test
+    public void testUnacknowledgedEventsAreRecovered() throws IOException {
+        SpillQueue queue = new SpillQueue(directory, 10 * SEGMENT_BYTES, SEGMENT_BYTES);
+        for (int i = 0; i < 10; i++) {
+            queue.append(event("event-" + i));
+        }
+        for (int i = 0; i < 3; i++) {
+            queue.acknowledge();
+        }
+        queue.close();
+
+        SpillQueue recovered = new SpillQueue(directory, 10 * SEGMENT_BYTES, SEGMENT_BYTES);
+        recovered.append(event("event-10"));
+
+        assertEquals(8, recovered.size());
+        for (int i = 3; i <= 10; i++) {
+            assertEquals("event-" + i, read(recovered.peek()));
+            recovered.acknowledge();
+        }
+        assertTrue(recovered.isEmpty());
+    }
+
+    @Test
+    public void testEmptyRecoveredSegmentsAreDeleted() throws IOException {
+        SpillQueue queue = new SpillQueue(directory, 10 * SEGMENT_BYTES, SEGMENT_BYTES);
+        queue.append(event("event"));
+        queue.acknowledge();
+        queue.close();
+
+        SpillQueue recovered = new SpillQueue(directory, 10 * SEGMENT_BYTES, SEGMENT_BYTES);
+
+        assertTrue(recovered.isEmpty());
+        assertEquals(0, segmentCount());
+    }
+
+    @Test
+    public void testCorruptRecoveredSegmentsAreDeleted() throws IOException {
+        SpillQueue queue = new SpillQueue(directory, 10 * SEGMENT_BYTES, SEGMENT_BYTES);
+        queue.append(event("event"));
+        queue.close();
+        // a segment whose header points before the first record
+        Files.write(
+                directory.resolve("emf-spill-00000000000000000001.log"),
+                new byte[SEGMENT_BYTES]);
+
+        SpillQueue recovered = new SpillQueue(directory, 10 * SEGMENT_BYTES, SEGMENT_BYTES);
+
+        assertEquals(1, recovered.size());
+        assertEquals(1, segmentCount());
+        assertEquals("event", read(recovered.peek()));
+    }
+
+    @Test
+    public void testShorterRecordAfterTornRecordIsTerminated() throws IOException {
+        SpillQueue queue = new SpillQueue(directory, 10 * SEGMENT_BYTES, SEGMENT_BYTES);
+        queue.append(event("event-1"));
+        queue.close();
+        // A process crashed while appending a longer record after "event-1": its bytes were
+        // written, its length was not. Its bytes past a record of "ab" read as a record of "xyz".
+        Path segment = directory.resolve("emf-spill-00000000000000000000.log");
+        byte[] bytes = Files.readAllBytes(segment);
+        ByteBuffer torn = ByteBuffer.wrap(bytes);
+        torn.position(4 + (4 + 7) + (4 + 2));
+        torn.putInt(3).put("xyz".getBytes(StandardCharsets.UTF_8));
+        Files.write(segment, bytes);
+
+        SpillQueue recovered = new SpillQueue(directory, 10 * SEGMENT_BYTES, SEGMENT_BYTES);
+        assertEquals(1, recovered.size());
+        recovered.append(event("ab"));
+        recovered.close();
+
+        SpillQueue next = new SpillQueue(directory, 10 * SEGMENT_BYTES, SEGMENT_BYTES);
+        assertEquals(2, next.size());
+        assertEquals("event-1", read(next.peek()));
+        next.acknowledge();
+        assertEquals("ab", read(next.peek()));
+        next.acknowledge();
+        assertNull(next.peek());
+    }
+
+    private int segmentCount() throws IOException {
+        int count = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path ignored : files) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static ByteBuffer event(String value) {
+        return ByteBuffer.wrap(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String read(ByteBuffer event) {
+        return StandardCharsets.UTF_8.decode(event).toString();
+    }
+}
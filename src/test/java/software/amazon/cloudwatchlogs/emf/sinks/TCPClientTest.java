@@ -23,6 +23,8 @@ import static org.mockito.Mockito.*;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import org.junit.Test;
 
 public class TCPClientTest {
@@ -48,4 +50,50 @@ public class TCPClientTest {
 
         assertEquals(bos.toString(), message);
     }
+
+    @Test
+    public void testSendMessageBytes() throws IOException {
+        Socket socket = mock(Socket.class);
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        when(socket.getOutputStream()).thenReturn(bos);
+        doNothing().when(socket).connect(any());
+
+        TCPClient client =
+                new TCPClient(Endpoint.DEFAULT_TCP_ENDPOINT) {
+                    @Override
+                    protected Socket createSocket() {
+                        return socket;
+                    }
+                };
+
+        byte[] data = "xxTest message\u00e9xx".getBytes(StandardCharsets.UTF_8);
+        client.sendMessage(ByteBuffer.wrap(data, 2, data.length - 4).slice());
+
+        assertEquals("Test message\u00e9", new String(bos.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testSendMessagesWritesOnce() throws IOException {
+        Socket socket = mock(Socket.class);
+        ByteArrayOutputStream bos = spy(new ByteArrayOutputStream());
+        when(socket.getOutputStream()).thenReturn(bos);
+        doNothing().when(socket).connect(any());
+
+        TCPClient client =
+                new TCPClient(Endpoint.DEFAULT_TCP_ENDPOINT) {
+                    @Override
+                    protected Socket createSocket() {
+                        return socket;
+                    }
+                };
+
+        ByteBuffer[] messages = {
+            ByteBuffer.wrap("first\n".getBytes(StandardCharsets.UTF_8)),
+            ByteBuffer.wrap("second\n".getBytes(StandardCharsets.UTF_8))
+        };
+        client.sendMessages(messages, 0, messages.length);
+
+        assertEquals("first\nsecond\n", bos.toString());
+        verify(bos, times(1)).write(any(byte[].class), anyInt(), anyInt());
+    }
 }
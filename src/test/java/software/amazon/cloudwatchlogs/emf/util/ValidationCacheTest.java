@@ -0,0 +1,128 @@
+/*
+ *   Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package software.amazon.cloudwatchlogs.emf.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Test;
+import software.amazon.cloudwatchlogs.emf.Constants;
+import software.amazon.cloudwatchlogs.emf.exception.InvalidDimensionException;
+
+public class ValidationCacheTest {
+
+    @After
+    public void tearDown() {
+        Validator.setValidationCacheSize(Constants.DEFAULT_VALIDATION_CACHE_SIZE);
+    }
+
+    @Test
+    public void testCountsHitsAndMisses() {
+        ValidationCache cache = new ValidationCache(10);
+
+        assertFalse(cache.isValid("Operation", ValidationCache.DIMENSION_NAME));
+        cache.setValid("Operation", ValidationCache.DIMENSION_NAME);
+        assertTrue(cache.isValid("Operation", ValidationCache.DIMENSION_NAME));
+
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testRemembersKindOfValidation() {
+        ValidationCache cache = new ValidationCache(10);
+        cache.setValid(":value", ValidationCache.DIMENSION_VALUE);
+
+        assertTrue(cache.isValid(":value", ValidationCache.DIMENSION_VALUE));
+        assertFalse(cache.isValid(":value", ValidationCache.DIMENSION_NAME));
+    }
+
+    @Test
+    public void testIsBounded() {
+        ValidationCache cache = new ValidationCache(3);
+        for (int i = 0; i < 10; i++) {
+            cache.setValid("Value-" + i, ValidationCache.DIMENSION_VALUE);
+        }
+
+        assertTrue(cache.size() <= 3);
+        assertTrue(cache.isValid("Value-9", ValidationCache.DIMENSION_VALUE));
+    }
+
+    @Test
+    public void testStartsOverWhenFull() {
+        ValidationCache cache = new ValidationCache(3);
+        for (int i = 0; i < 3; i++) {
+            cache.setValid("Value-" + i, ValidationCache.DIMENSION_VALUE);
+        }
+        assertEquals(0, cache.getGeneration());
+
+        cache.setValid("Value-3", ValidationCache.DIMENSION_VALUE);
+
+        assertEquals(1, cache.getGeneration());
+        assertEquals(1, cache.size());
+        assertTrue(cache.isValid("Value-3", ValidationCache.DIMENSION_VALUE));
+        assertFalse(cache.isValid("Value-0", ValidationCache.DIMENSION_VALUE));
+    }
+
+    @Test
+    public void testAddingAKindDoesNotCountAsNewString() {
+        ValidationCache cache = new ValidationCache(1);
+        cache.setValid("Operation", ValidationCache.DIMENSION_NAME);
+        cache.setValid("Operation", ValidationCache.DIMENSION_VALUE);
+
+        assertEquals(0, cache.getGeneration());
+        assertTrue(cache.isValidDimension("Operation", "Operation"));
+    }
+
+    @Test
+    public void testZeroSizeDisablesCache() {
+        ValidationCache cache = new ValidationCache(0);
+        cache.setValid("Operation", ValidationCache.DIMENSION_NAME);
+
+        assertEquals(0, cache.size());
+        assertFalse(cache.isValid("Operation", ValidationCache.DIMENSION_NAME));
+    }
+
+    @Test
+    public void testValidatorUsesCache() {
+        Validator.setValidationCacheSize(10);
+        ValidationCache cache = Validator.getValidationCache();
+
+        Validator.validateDimensionSet("Operation", "GetItem");
+        Validator.validateDimensionSet("Operation", "GetItem");
+
+        // One probe for the name and value together
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testValidatorDoesNotCacheInvalidStrings() {
+        Validator.setValidationCacheSize(10);
+
+        assertThrows(
+                InvalidDimensionException.class,
+                () -> Validator.validateDimensionSet(":Operation", "GetItem"));
+        assertThrows(
+                InvalidDimensionException.class,
+                () -> Validator.validateDimensionSet(":Operation", "GetItem"));
+        assertEquals(0, Validator.getValidationCache().size());
+    }
+}